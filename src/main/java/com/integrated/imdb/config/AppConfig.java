@@ -1,14 +1,41 @@
 package com.integrated.imdb.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.web.client.RestClient;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
 
 @Configuration
+@EnableScheduling
 public class AppConfig {
 
+    /**
+     * HTTP client dedicated to OMDb. The JDK client keeps connections alive in its own pool,
+     * negotiates HTTP/2 where the server supports it and applies the configured timeouts.
+     * Built from Spring's RestClient.Builder so calls are recorded as http.client.requests.
+     */
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestClient omdbRestClient(RestClient.Builder builder,
+                                     @Value("${app.omdb.api.url:https://www.omdbapi.com/}") String baseUrl,
+                                     @Value("${app.omdb.api.connect-timeout:2000}") long connectTimeoutMs,
+                                     @Value("${app.omdb.api.timeout:5000}") long readTimeoutMs) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+
+        return builder
+                .baseUrl(baseUrl)
+                .requestFactory(requestFactory)
+                .build();
     }
 }
@@ -0,0 +1,101 @@
+package com.integrated.imdb.controller;
+
+import com.integrated.imdb.model.DatasetLoadProgress;
+import com.integrated.imdb.model.ImdbDataset;
+import com.integrated.imdb.service.ImdbDatasetLoader;
+import io.swagger.v3.oas.annotations.Hidden;
+import io.swagger.v3.oas.annotations.Operation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Admin endpoints for loading the IMDb datasets. A load truncates the tables and locks them for
+ * the whole COPY, so the controller only exists with {@code app.imdb.loader.admin.enabled} and
+ * every call must carry the configured token in the {@value #TOKEN_HEADER} header. It is left
+ * out of the public API documentation.
+ */
+@Hidden
+@RestController
+@RequestMapping("/admin/datasets")
+@ConditionalOnProperty(name = "app.imdb.loader.admin.enabled", havingValue = "true")
+public class DatasetController {
+
+    private static final Logger log = LoggerFactory.getLogger(DatasetController.class);
+    static final String TOKEN_HEADER = "X-Admin-Token";
+
+    private final ImdbDatasetLoader datasetLoader;
+    private final byte[] adminToken;
+
+    public DatasetController(ImdbDatasetLoader datasetLoader,
+                             @Value("${app.imdb.loader.admin.token:}") String adminToken) {
+        if (adminToken.isBlank()) {
+            throw new IllegalStateException("app.imdb.loader.admin.token must be set when the dataset admin endpoints are enabled");
+        }
+        this.datasetLoader = datasetLoader;
+        this.adminToken = adminToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @PostMapping("/load")
+    @Operation(summary = "Load IMDb datasets",
+              description = "Starts a background load of the given tables from the .tsv.gz dumps. "
+                      + "mode=full reloads the tables (all if omitted); mode=delta applies only changed rows "
+                      + "(all delta-capable tables if omitted)")
+    public ResponseEntity<List<DatasetLoadProgress>> load(
+            @RequestHeader(value = TOKEN_HEADER, required = false) String token,
+            @RequestParam(required = false) List<String> tables,
+            @RequestParam(defaultValue = "full") String mode) {
+        if (!authorized(token)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        ImdbDatasetLoader.Mode loadMode;
+        try {
+            loadMode = ImdbDatasetLoader.Mode.valueOf(mode.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warn("Unknown IMDb load mode requested: {}", mode);
+            return ResponseEntity.badRequest().build();
+        }
+        Set<ImdbDataset> datasets = EnumSet.noneOf(ImdbDataset.class);
+        if (tables != null) {
+            for (String table : tables) {
+                try {
+                    datasets.add(ImdbDataset.valueOf(table.trim().toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    log.warn("Unknown IMDb table requested: {}", table);
+                    return ResponseEntity.badRequest().build();
+                }
+            }
+        }
+        log.info("Requested IMDb dataset load ({}): {}", loadMode, datasets.isEmpty() ? "all" : datasets);
+        if (!datasetLoader.startLoad(datasets, loadMode)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(datasetLoader.getProgress());
+        }
+        return ResponseEntity.accepted().body(datasetLoader.getProgress());
+    }
+
+    @GetMapping("/load")
+    @Operation(summary = "Get dataset load progress",
+              description = "Returns rows loaded and throughput per table for the current or last load")
+    public ResponseEntity<List<DatasetLoadProgress>> progress(
+            @RequestHeader(value = TOKEN_HEADER, required = false) String token) {
+        if (!authorized(token)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok(datasetLoader.getProgress());
+    }
+
+    private boolean authorized(String token) {
+        // Constant-time comparison, so the token cannot be guessed from response times
+        return token != null && MessageDigest.isEqual(adminToken, token.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,12 +1,18 @@
 package com.integrated.imdb.controller;
 
+import com.integrated.imdb.dto.AutocompleteSuggestion;
 import com.integrated.imdb.dto.MovieDto;
+import com.integrated.imdb.dto.MoviePage;
+import com.integrated.imdb.dto.MovieView;
+import com.integrated.imdb.dto.SearchMode;
 import com.integrated.imdb.dto.StartRequest;
 import com.integrated.imdb.dto.FeedbackRequest;
 import com.integrated.imdb.dto.SuggestResponse;
+import com.integrated.imdb.service.AutocompleteService;
 import com.integrated.imdb.service.MovieService;
 import com.integrated.imdb.service.SuggestService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,46 +28,96 @@ import java.util.Map;
 public class MovieController {
 
     private static final Logger log = LoggerFactory.getLogger(MovieController.class);
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int MAX_SUGGESTIONS = 50;
+    private static final int MAX_BATCH_IDS = 100;
     private final MovieService movieService;
     private final SuggestService suggestService;
+    private final AutocompleteService autocompleteService;
 
-    public MovieController(MovieService movieService, SuggestService suggestService) {
+    public MovieController(MovieService movieService, SuggestService suggestService,
+                           AutocompleteService autocompleteService) {
         this.movieService = movieService;
         this.suggestService = suggestService;
+        this.autocompleteService = autocompleteService;
     }
 
     @GetMapping("/top-by-actor")
     @Operation(summary = "Get top movies by actor", 
-              description = "Returns top rated movies for a specific actor")
+              description = "Returns top rated movies for a specific actor. "
+                      + "view=compact returns only tconst, title, year and rating without OMDb enrichment")
     public ResponseEntity<List<MovieDto>> getTopMoviesByActor(
             @RequestParam String actor,
-            @RequestParam(defaultValue = "10") int limit) {
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(defaultValue = "full") String view) {
         log.info("Fetching top {} movies for actor: {}", limit, actor);
-        return ResponseEntity.ok(movieService.getTopMoviesByActor(actor, limit));
+        return ResponseEntity.ok(movieService.getTopMoviesByActor(actor, limit, MovieView.fromParam(view)));
     }
 
     @GetMapping
     @Operation(summary = "Search movies", 
-              description = "Searches movies by title with pagination support")
+              description = "Searches movies by title, or lists top rated movies without a title. "
+                      + "Pass the X-Next-Cursor response header back as cursor to get the next page; "
+                      + "the header is absent on the last page. page is deprecated and ignored. "
+                      + "view=compact returns only tconst, title, year and rating without OMDb enrichment")
     public ResponseEntity<List<MovieDto>> searchMoviesPaginated(
             @RequestParam(required = false) String title,
-            @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
-        log.info("Searching movies with title: {}, page: {}, size: {}", title, page, size);
-        if (title == null || title.trim().isEmpty()) {
-            return ResponseEntity.ok(movieService.getTopRatedMovies(size));
+            @Parameter(deprecated = true, description = "Ignored; use cursor") @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "full") String view) {
+        log.info("Searching movies with title: {}, size: {}, cursor: {}", title, size, cursor);
+        if (page != 0) {
+            log.debug("Ignoring deprecated page parameter {}; use cursor instead", page);
         }
-        return ResponseEntity.ok(movieService.searchMoviesByTitle(title, size));
+        return pageResponse(title, cursor, size, view);
     }
 
     @GetMapping("/search")
     @Operation(summary = "Search movies by title", 
-              description = "Searches movies by title with partial matching")
+              description = "Searches movies by title. mode=ilike (default) matches substrings and is paged: "
+                      + "pass the X-Next-Cursor response header back as cursor to get the next page. "
+                      + "mode=fulltext ranks by weighted full-text relevance, mode=trigram by fuzzy title similarity, "
+                      + "and mode=auto picks one from the query shape; these return a single relevance-ranked page. "
+                      + "view=compact returns only tconst, title, year and rating without OMDb enrichment")
     public ResponseEntity<List<MovieDto>> searchMovies(
             @RequestParam String query,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "ilike") String mode,
+            @RequestParam(defaultValue = "full") String view) {
+        log.info("Searching movies with query: {}, mode: {}, cursor: {}", query, mode, cursor);
+        SearchMode searchMode = SearchMode.fromParam(mode).resolve(query);
+        if (searchMode == SearchMode.ILIKE) {
+            return pageResponse(query, cursor, limit, view);
+        }
+        return ResponseEntity.ok(movieService.searchMoviesByTitle(query, limit, MovieView.fromParam(view),
+                SearchMode.fromParam(mode)));
+    }
+
+    private ResponseEntity<List<MovieDto>> pageResponse(String title, String cursor, int size, String view) {
+        MoviePage moviePage;
+        try {
+            moviePage = movieService.getMoviesPage(title, cursor, size, MovieView.fromParam(view));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid movie cursor: {}", cursor);
+            return ResponseEntity.badRequest().build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (moviePage.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, moviePage.nextCursor());
+        }
+        return response.body(moviePage.movies());
+    }
+
+    @GetMapping("/suggest-as-you-type")
+    @Operation(summary = "Autocomplete titles and actors", 
+              description = "Returns the most voted movies and actors with a word starting with the typed text, "
+                      + "served from an in-memory index")
+    public ResponseEntity<List<AutocompleteSuggestion>> suggestAsYouType(
+            @RequestParam String q,
             @RequestParam(defaultValue = "10") int limit) {
-        log.info("Searching movies with query: {}", query);
-        return ResponseEntity.ok(movieService.searchMoviesByTitle(query, limit));
+        return ResponseEntity.ok(autocompleteService.suggest(q, Math.min(limit, MAX_SUGGESTIONS)));
     }
 
     @GetMapping("/top")
@@ -82,6 +138,18 @@ public class MovieController {
         return ResponseEntity.ok(movieService.getTopRatedMovies(limit));
     }
 
+    @GetMapping("/batch")
+    @Operation(summary = "Get several movies", 
+              description = "Returns detailed information about up to " + MAX_BATCH_IDS + " movies in the order "
+                      + "requested, resolved with one query and one OMDb enrichment pass. Unknown IDs are left out")
+    public ResponseEntity<List<MovieDto>> getMoviesBatch(@RequestParam List<String> ids) {
+        log.info("Fetching details for {} movies", ids.size());
+        if (ids.size() > MAX_BATCH_IDS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(movieService.getMoviesByIds(ids.stream().map(String::trim).toList()));
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Get movie details", 
               description = "Returns detailed information about a specific movie")
@@ -96,16 +164,19 @@ public class MovieController {
 
     @GetMapping("/filter")
     @Operation(summary = "Filter movies", 
-              description = "Filters movies by multiple criteria")
+              description = "Filters movies by multiple criteria. "
+                      + "view=compact returns only tconst, title, year and rating without OMDb enrichment")
     public ResponseEntity<List<MovieDto>> filterMovies(
             @RequestParam(required = false) String actor,
             @RequestParam(required = false) String genre,
             @RequestParam(required = false) String fromYear,
             @RequestParam(required = false) String toYear,
-            @RequestParam(defaultValue = "20") int limit) {
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(defaultValue = "full") String view) {
         log.info("Filtering movies with criteria - actor: {}, genre: {}, years: {}-{}", 
                 actor, genre, fromYear, toYear);
-        return ResponseEntity.ok(movieService.filterMovies(actor, genre, fromYear, toYear, limit));
+        return ResponseEntity.ok(movieService.filterMovies(actor, genre, fromYear, toYear, limit,
+                MovieView.fromParam(view)));
     }
 
     @PostMapping("/suggest/start")
@@ -121,7 +192,12 @@ public class MovieController {
               description = "Submits user feedback on recommended movies")
     public ResponseEntity<SuggestResponse> submitFeedback(@RequestBody FeedbackRequest request) {
         log.info("Processing feedback for user: {}", request.getUserId());
-        return ResponseEntity.ok(suggestService.recordFeedback(request));
+        try {
+            return ResponseEntity.ok(suggestService.recordFeedback(request));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid feedback: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @GetMapping("/suggest/{userId}")
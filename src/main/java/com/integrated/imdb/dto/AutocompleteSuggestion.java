@@ -0,0 +1,16 @@
+package com.integrated.imdb.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One as-you-type suggestion.
+ *
+ * @param id tconst for movies, nconst for actors
+ * @param label Movie title or actor name
+ * @param type "movie" or "actor"
+ * @param year Release year for movies, otherwise null
+ * @param weight Popularity used for ranking (number of votes)
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record AutocompleteSuggestion(String id, String label, String type, Integer year, int weight) {
+}
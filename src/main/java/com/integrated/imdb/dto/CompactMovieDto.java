@@ -0,0 +1,20 @@
+package com.integrated.imdb.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A movie as returned by the {@link MovieView#COMPACT} projection: tconst, title, year and
+ * rating. The fields the projection does not set, and the runtime, are left out of the JSON.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties("runtimeInMinutes")
+public class CompactMovieDto extends MovieDto {
+
+    public CompactMovieDto(String tconst, String primaryTitle, String startYear, Double averageRating) {
+        setTconst(tconst);
+        setPrimaryTitle(primaryTitle);
+        setStartYear(startYear);
+        setAverageRating(averageRating);
+    }
+}
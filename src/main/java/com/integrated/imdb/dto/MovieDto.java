@@ -1,10 +1,13 @@
 package com.integrated.imdb.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.Objects;
 
 /**
  * Data Transfer Object for Movie information.
  * Contains both basic movie details and enriched data from OMDb.
+ * {@link CompactMovieDto} is the compact projection of it.
  */
 public class MovieDto {
     // Basic movie information
@@ -19,11 +22,14 @@ public class MovieDto {
     private String plot;             // Movie plot/summary
     private String poster;           // URL to the movie poster
     private String runtime;          // Runtime in minutes (as string for display)
+    private int runtimeMinutes;      // Runtime in minutes, 0 if unknown
     private String director;         // Movie director(s)
     private String cast;             // Main cast members
     
     // Additional fields for internal use
     private String actorName;        // Primary actor name (for search results)
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean partiallyEnriched; // True if OMDb data was not fetched before the request deadline
     
     /**
      * Sets the runtime from an integer value (in minutes).
@@ -33,25 +39,35 @@ public class MovieDto {
      */
     public void setRuntimeFromMinutes(int minutes) {
         this.runtime = minutes > 0 ? minutes + " min" : "N/A";
+        this.runtimeMinutes = Math.max(minutes, 0);
     }
     
     /**
      * Gets the runtime as an integer (in minutes).
-     * Extracts the numeric part from the runtime string.
      * 
      * @return Runtime in minutes, or 0 if not available
      */
     public int getRuntimeInMinutes() {
-        if (runtime == null || runtime.isEmpty()) {
+        return runtimeMinutes;
+    }
+
+    /**
+     * Parses the first run of digits in a display runtime such as "142 min".
+     */
+    private static int parseMinutes(String runtime) {
+        if (runtime == null) {
             return 0;
         }
-        try {
-            // Extract first sequence of digits
-            String numStr = runtime.replaceAll("^\\D*(\\d+).*$", "$1");
-            return Integer.parseInt(numStr);
-        } catch (NumberFormatException e) {
-            return 0;
+        int i = 0;
+        int length = runtime.length();
+        while (i < length && !Character.isDigit(runtime.charAt(i))) {
+            i++;
         }
+        int minutes = 0;
+        for (int digits = 0; i < length && digits < 9 && Character.isDigit(runtime.charAt(i)); i++, digits++) {
+            minutes = minutes * 10 + Character.digit(runtime.charAt(i), 10);
+        }
+        return minutes;
     }
     
     /**
@@ -135,6 +151,7 @@ public class MovieDto {
 
     public void setRuntime(String runtime) {
         this.runtime = runtime;
+        this.runtimeMinutes = parseMinutes(runtime);
     }
 
     public String getDirector() {
@@ -161,6 +178,14 @@ public class MovieDto {
         this.actorName = actorName;
     }
 
+    public boolean isPartiallyEnriched() {
+        return partiallyEnriched;
+    }
+
+    public void setPartiallyEnriched(boolean partiallyEnriched) {
+        this.partiallyEnriched = partiallyEnriched;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -177,12 +202,13 @@ public class MovieDto {
                Objects.equals(runtime, movieDto.runtime) &&
                Objects.equals(director, movieDto.director) &&
                Objects.equals(cast, movieDto.cast) &&
-               Objects.equals(actorName, movieDto.actorName);
+               Objects.equals(actorName, movieDto.actorName) &&
+               partiallyEnriched == movieDto.partiallyEnriched;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(tconst, primaryTitle, startYear, genres, averageRating, numVotes, plot, poster, runtime, director, cast, actorName);
+        return Objects.hash(tconst, primaryTitle, startYear, genres, averageRating, numVotes, plot, poster, runtime, director, cast, actorName, partiallyEnriched);
     }
 
     @Override
@@ -200,6 +226,7 @@ public class MovieDto {
                ", director='" + director + '\'' +
                ", cast='" + cast + '\'' +
                ", actorName='" + actorName + '\'' +
+               ", partiallyEnriched=" + partiallyEnriched +
                '}';
     }
 
@@ -217,8 +244,32 @@ public class MovieDto {
         this.plot = plot;
         this.poster = poster;
         this.runtime = runtime;
+        this.runtimeMinutes = parseMinutes(runtime);
         this.director = director;
         this.cast = cast;
         this.actorName = actorName;
     }
+
+    /**
+     * Copies every field of another movie, so a shared instance can be handed out without
+     * exposing it to the caller's changes.
+     *
+     * @param other The movie to copy
+     */
+    public MovieDto(MovieDto other) {
+        this.tconst = other.tconst;
+        this.primaryTitle = other.primaryTitle;
+        this.startYear = other.startYear;
+        this.genres = other.genres;
+        this.averageRating = other.averageRating;
+        this.numVotes = other.numVotes;
+        this.plot = other.plot;
+        this.poster = other.poster;
+        this.runtime = other.runtime;
+        this.runtimeMinutes = other.runtimeMinutes;
+        this.director = other.director;
+        this.cast = other.cast;
+        this.actorName = other.actorName;
+        this.partiallyEnriched = other.partiallyEnriched;
+    }
 }
@@ -0,0 +1,12 @@
+package com.integrated.imdb.dto;
+
+import java.util.List;
+
+/**
+ * One page of a movie listing.
+ *
+ * @param movies The movies on this page
+ * @param nextCursor Opaque cursor for the next page, or null if this is the last page
+ */
+public record MoviePage(List<MovieDto> movies, String nextCursor) {
+}
@@ -0,0 +1,27 @@
+package com.integrated.imdb.dto;
+
+/**
+ * Projection requested by list endpoints through the {@code view} parameter.
+ */
+public enum MovieView {
+
+    /**
+     * tconst, title, year and rating only, read straight from the database with no OMDb enrichment.
+     */
+    COMPACT,
+
+    /**
+     * All fields, including cast, crew and OMDb enrichment.
+     */
+    FULL;
+
+    /**
+     * Parses a request parameter value, case-insensitively. Unknown or missing values mean FULL.
+     *
+     * @param value The parameter value
+     * @return The matching view
+     */
+    public static MovieView fromParam(String value) {
+        return "compact".equalsIgnoreCase(value != null ? value.trim() : null) ? COMPACT : FULL;
+    }
+}
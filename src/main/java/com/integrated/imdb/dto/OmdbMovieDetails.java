@@ -0,0 +1,57 @@
+package com.integrated.imdb.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Subset of an OMDb "by ID" response that the application uses.
+ * Property names follow the OMDb JSON so the same shape is stored in the omdb_cache table.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record OmdbMovieDetails(
+        @JsonProperty("Title") String title,
+        @JsonProperty("Year") String year,
+        @JsonProperty("Runtime") String runtime,
+        @JsonProperty("Genre") String genre,
+        @JsonProperty("Director") String director,
+        @JsonProperty("Actors") String actors,
+        @JsonProperty("Plot") String plot,
+        @JsonProperty("Poster") String poster,
+        @JsonProperty("imdbRating") String imdbRating,
+        @JsonProperty("Response") String response,
+        @JsonProperty("Error") String error) {
+
+    /**
+     * @return true if OMDb found the title
+     */
+    @JsonIgnore
+    public boolean isFound() {
+        return "True".equals(response);
+    }
+
+    /**
+     * @return true if OMDb answered that it has no such title, as opposed to rejecting the
+     *         request, e.g. because the daily request limit was reached
+     */
+    @JsonIgnore
+    public boolean isNotFound() {
+        return "False".equals(response) && error != null
+                && (error.equals("Movie not found!") || error.startsWith("Incorrect IMDb ID"));
+    }
+
+    /**
+     * Approximate heap size in bytes, used to weigh cache entries.
+     */
+    @JsonIgnore
+    public int estimatedSize() {
+        int chars = length(title) + length(year) + length(runtime) + length(genre) + length(director)
+                + length(actors) + length(plot) + length(poster) + length(imdbRating)
+                + length(response) + length(error);
+        return chars * 2 + 11 * 40;
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+}
@@ -0,0 +1,67 @@
+package com.integrated.imdb.dto;
+
+/**
+ * Title search strategy requested through the {@code mode} parameter.
+ */
+public enum SearchMode {
+
+    /**
+     * Substring match ordered by rating; the only mode that supports cursor pagination.
+     */
+    ILIKE,
+
+    /**
+     * Weighted full-text match on {@code movie_search}, ordered by relevance.
+     */
+    FULLTEXT,
+
+    /**
+     * Fuzzy trigram word similarity on the title, ordered by similarity.
+     */
+    TRIGRAM,
+
+    /**
+     * Picks one of the other modes from the shape of the query.
+     */
+    AUTO;
+
+    /**
+     * Shortest query that trigram matching can do anything useful with.
+     */
+    private static final int MIN_TRIGRAM_LENGTH = 3;
+
+    /**
+     * Parses a request parameter value, case-insensitively. Unknown or missing values mean ILIKE.
+     *
+     * @param value The parameter value
+     * @return The matching mode
+     */
+    public static SearchMode fromParam(String value) {
+        if (value != null) {
+            for (SearchMode mode : values()) {
+                if (mode.name().equalsIgnoreCase(value.trim())) {
+                    return mode;
+                }
+            }
+        }
+        return ILIKE;
+    }
+
+    /**
+     * Resolves AUTO for a query: several words go to full-text ranking, a single word of at
+     * least three characters to trigram similarity, anything shorter to a substring match.
+     *
+     * @param query The search query
+     * @return This mode, or the concrete mode AUTO stands for
+     */
+    public SearchMode resolve(String query) {
+        if (this != AUTO) {
+            return this;
+        }
+        String trimmed = query == null ? "" : query.trim();
+        if (trimmed.indexOf(' ') > 0) {
+            return FULLTEXT;
+        }
+        return trimmed.length() >= MIN_TRIGRAM_LENGTH ? TRIGRAM : ILIKE;
+    }
+}
@@ -0,0 +1,81 @@
+package com.integrated.imdb.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live progress of loading one IMDb dataset. Updated by the loader thread, read by the
+ * status endpoint and the metrics gauges.
+ */
+public class DatasetLoadProgress {
+
+    public enum State {
+        PENDING, RUNNING, COMPLETED, FAILED, SKIPPED
+    }
+
+    private final ImdbDataset dataset;
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+    private volatile State state = State.PENDING;
+    private volatile long startedAtMillis;
+    private volatile long finishedAtMillis;
+    private volatile String message;
+
+    public DatasetLoadProgress(ImdbDataset dataset) {
+        this.dataset = dataset;
+    }
+
+    public void start() {
+        startedAtMillis = System.currentTimeMillis();
+        state = State.RUNNING;
+    }
+
+    public void finish(State finalState, String message) {
+        this.finishedAtMillis = System.currentTimeMillis();
+        this.message = message;
+        this.state = finalState;
+    }
+
+    public void addRows(long count) {
+        rows.addAndGet(count);
+    }
+
+    public void addCompressedBytes(long count) {
+        compressedBytes.addAndGet(count);
+    }
+
+    public ImdbDataset getDataset() {
+        return dataset;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getRows() {
+        return rows.get();
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes.get();
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public long getElapsedMillis() {
+        if (startedAtMillis == 0) {
+            return 0;
+        }
+        long end = finishedAtMillis != 0 ? finishedAtMillis : System.currentTimeMillis();
+        return end - startedAtMillis;
+    }
+
+    /**
+     * @return Average rows per second since the load of this dataset started
+     */
+    public double getRowsPerSecond() {
+        long elapsed = getElapsedMillis();
+        return elapsed > 0 ? rows.get() * 1000d / elapsed : 0;
+    }
+}
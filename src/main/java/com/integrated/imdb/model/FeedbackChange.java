@@ -0,0 +1,19 @@
+package com.integrated.imdb.model;
+
+/**
+ * A rating stored by a feedback upsert, with the rating it replaced.
+ *
+ * @param userId The ID of the user
+ * @param movieId The rated movie ID
+ * @param previous Whether the movie was liked before, null if it was not rated
+ * @param liked Whether the movie is liked now
+ */
+public record FeedbackChange(String userId, String movieId, Boolean previous, boolean liked) {
+
+    /**
+     * @return false if the movie was already rated the same way
+     */
+    public boolean changed() {
+        return previous == null || previous != liked;
+    }
+}
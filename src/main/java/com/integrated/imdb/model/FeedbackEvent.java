@@ -0,0 +1,14 @@
+package com.integrated.imdb.model;
+
+import java.util.List;
+
+/**
+ * One feedback submission of a user. When a movie appears more than once, the last
+ * occurrence wins.
+ *
+ * @param userId The ID of the user
+ * @param movieIds The rated movie IDs
+ * @param liked Whether each movie was liked, by position
+ */
+public record FeedbackEvent(String userId, List<String> movieIds, List<Boolean> liked) {
+}
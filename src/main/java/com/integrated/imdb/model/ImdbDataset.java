@@ -0,0 +1,74 @@
+package com.integrated.imdb.model;
+
+/**
+ * IMDb non-commercial datasets the application can load, with the table each one feeds.
+ * Column lists follow the order of the TSV columns. Datasets keyed by a single tconst column
+ * can also be delta-synced.
+ */
+public enum ImdbDataset {
+
+    TITLE_BASICS("title.basics.tsv.gz", "title_basics",
+            "tconst, title_type, primary_title, original_title, is_adult, start_year, end_year, runtime_minutes, genres",
+            false, "tconst"),
+    NAME_BASICS("name.basics.tsv.gz", "name_basics",
+            "nconst, primary_name, birth_year, death_year, primary_profession, known_for_titles",
+            false, null),
+    // The dump repeats (tconst, nconst, category) for people credited more than once
+    TITLE_PRINCIPALS("title.principals.tsv.gz", "title_principals",
+            "tconst, ordering, nconst, category, job, characters",
+            true, null),
+    TITLE_RATINGS("title.ratings.tsv.gz", "title_ratings",
+            "tconst, average_rating, num_votes",
+            false, "tconst"),
+    TITLE_AKAS("title.akas.tsv.gz", "title_akas",
+            "title_id, ordering, title, region, language, types, attributes, is_original_title",
+            false, null),
+    TITLE_CREW("title.crew.tsv.gz", "title_crew",
+            "tconst, directors, writers",
+            false, null);
+
+    private final String fileName;
+    private final String tableName;
+    private final String columns;
+    private final boolean containsDuplicateKeys;
+    private final String deltaKeyColumn;
+
+    ImdbDataset(String fileName, String tableName, String columns, boolean containsDuplicateKeys,
+                String deltaKeyColumn) {
+        this.fileName = fileName;
+        this.tableName = tableName;
+        this.columns = columns;
+        this.containsDuplicateKeys = containsDuplicateKeys;
+        this.deltaKeyColumn = deltaKeyColumn;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return true if rows must go through a staging table and be de-duplicated on insert
+     */
+    public boolean containsDuplicateKeys() {
+        return containsDuplicateKeys;
+    }
+
+    /**
+     * @return The tconst key column used to diff rows during a delta sync, or null if unsupported
+     */
+    public String getDeltaKeyColumn() {
+        return deltaKeyColumn;
+    }
+
+    public boolean supportsDeltaSync() {
+        return deltaKeyColumn != null;
+    }
+}
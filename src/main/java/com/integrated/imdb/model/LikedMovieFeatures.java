@@ -0,0 +1,13 @@
+package com.integrated.imdb.model;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Taste features extracted from a set of liked movies.
+ *
+ * @param genres Distinct genres of the movies
+ * @param actors Top billed actors of the movies, name by nconst
+ */
+public record LikedMovieFeatures(Set<String> genres, Map<String, String> actors) {
+}
@@ -0,0 +1,58 @@
+package com.integrated.imdb.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in a movie listing ordered by (average_rating DESC, num_votes DESC, tconst DESC).
+ * Unrated movies sort after all rated ones, by tconst only; their cursor has a null rating.
+ * Clients only ever see the opaque {@link #encode() encoded} form.
+ *
+ * @param averageRating Rating of the last movie returned, or null if it was unrated
+ * @param numVotes Vote count of the last movie returned, or null if it was unrated
+ * @param tconst ID of the last movie returned
+ */
+public record MovieCursor(Double averageRating, Integer numVotes, String tconst) {
+
+    private static final String UNRATED = "-";
+
+    /**
+     * @return The cursor positioned just after the given movie
+     */
+    public static MovieCursor after(MovieRecord movie) {
+        if (movie.averageRating() == null || movie.numVotes() == null) {
+            return new MovieCursor(null, null, movie.tconst());
+        }
+        return new MovieCursor(movie.averageRating(), movie.numVotes(), movie.tconst());
+    }
+
+    /**
+     * @return true if the cursor points into the trailing unrated movies
+     */
+    public boolean isUnrated() {
+        return averageRating == null;
+    }
+
+    public String encode() {
+        String raw = isUnrated()
+                ? UNRATED + "|" + UNRATED + "|" + tconst
+                : averageRating + "|" + numVotes + "|" + tconst;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor previously produced by {@link #encode()}.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static MovieCursor decode(String encoded) {
+        String[] parts = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8).split("\\|", 3);
+        if (parts.length != 3 || parts[2].isEmpty()) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        if (UNRATED.equals(parts[0])) {
+            return new MovieCursor(null, null, parts[2]);
+        }
+        return new MovieCursor(Double.valueOf(parts[0]), Integer.valueOf(parts[1]), parts[2]);
+    }
+}
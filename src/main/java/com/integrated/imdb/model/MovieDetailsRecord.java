@@ -0,0 +1,13 @@
+package com.integrated.imdb.model;
+
+import java.util.List;
+
+/**
+ * A movie with its billed cast and director, read in a single query.
+ *
+ * @param movie The movie and its rating
+ * @param cast Names of the first billed actors and actresses, in billing order
+ * @param director Name of the first billed director, or null
+ */
+public record MovieDetailsRecord(MovieRecord movie, List<String> cast, String director) {
+}
@@ -0,0 +1,24 @@
+package com.integrated.imdb.model;
+
+/**
+ * A movie row as read from {@code title_basics} joined with {@code title_ratings}.
+ * Unknown years and runtimes are 0; rating and votes are null for unrated titles.
+ *
+ * @param tconst IMDb unique identifier
+ * @param primaryTitle Primary title of the movie
+ * @param startYear Release year, or 0 if unknown
+ * @param genres Comma-separated list of genres
+ * @param averageRating Average IMDb rating, or null
+ * @param numVotes Number of votes, or null
+ * @param runtimeMinutes Runtime in minutes, or 0 if unknown
+ * @param actorName Matched actor name for actor searches, otherwise null
+ */
+public record MovieRecord(String tconst,
+                          String primaryTitle,
+                          int startYear,
+                          String genres,
+                          Double averageRating,
+                          Integer numVotes,
+                          int runtimeMinutes,
+                          String actorName) {
+}
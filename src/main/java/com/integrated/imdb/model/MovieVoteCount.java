@@ -0,0 +1,7 @@
+package com.integrated.imdb.model;
+
+/**
+ * A movie ID with its vote count, used to walk movies by popularity.
+ */
+public record MovieVoteCount(String tconst, int numVotes) {
+}
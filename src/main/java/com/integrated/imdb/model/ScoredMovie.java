@@ -0,0 +1,7 @@
+package com.integrated.imdb.model;
+
+/**
+ * A recommended movie ID with the score it was ranked by.
+ */
+public record ScoredMovie(String tconst, double score) {
+}
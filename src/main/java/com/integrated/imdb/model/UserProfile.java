@@ -0,0 +1,90 @@
+package com.integrated.imdb.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Taste profile of a user, stored as the {@code preferences} JSONB of user_preferences.
+ * The store assigns {@code version} and {@code lastUpdated} whenever the content changes.
+ *
+ * @param initialQuery Query the recommendation session was started with
+ * @param genreWeights Running weight by genre: likes add to it, dislikes subtract
+ * @param actors Weighted actors by nconst, bounded in number
+ * @param recentLikes Most recently liked movie IDs, newest first, bounded in number
+ * @param aggregated Whether the weights cover the user's whole feedback history; profiles
+ *                   written before the weights were kept incrementally are backfilled once
+ * @param version Incremented on every change
+ * @param lastUpdated Time of the last change, ISO-8601
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record UserProfile(String initialQuery,
+                          Map<String, Double> genreWeights,
+                          Map<String, ActorWeight> actors,
+                          List<String> recentLikes,
+                          boolean aggregated,
+                          long version,
+                          String lastUpdated) {
+
+    /**
+     * @param name Display name of the actor
+     * @param weight Weight of the actor
+     */
+    public record ActorWeight(String name, double weight) {
+    }
+
+    public static final UserProfile EMPTY = new UserProfile(null, Map.of(), Map.of(), List.of(), false, 0, null);
+
+    public UserProfile {
+        genreWeights = genreWeights == null ? Map.of() : Map.copyOf(genreWeights);
+        actors = actors == null ? Map.of() : Map.copyOf(actors);
+        recentLikes = recentLikes == null ? List.of() : List.copyOf(recentLikes);
+    }
+
+    /**
+     * A fresh session keeps the weights, which follow the user's feedback history.
+     */
+    public UserProfile restart(String query) {
+        return new UserProfile(query, genreWeights, actors, recentLikes, aggregated, version, lastUpdated);
+    }
+
+    public UserProfile withAggregates(Map<String, Double> genreWeights, Map<String, ActorWeight> actors,
+                                      List<String> recentLikes) {
+        return new UserProfile(initialQuery, genreWeights, actors, recentLikes, true, version, lastUpdated);
+    }
+
+    /**
+     * The same profile with weights that must be rebuilt from the feedback history
+     */
+    public UserProfile withoutAggregates() {
+        return new UserProfile(initialQuery, genreWeights, actors, recentLikes, false, version, lastUpdated);
+    }
+
+    public UserProfile withVersion(long version, String lastUpdated) {
+        return new UserProfile(initialQuery, genreWeights, actors, recentLikes, aggregated, version, lastUpdated);
+    }
+
+    /**
+     * Genre names with a positive weight, kept in the JSON for the movie_recommendations view
+     */
+    @JsonProperty(value = "preferredGenres", access = JsonProperty.Access.READ_ONLY)
+    public List<String> preferredGenres() {
+        return genreWeights.entrySet().stream()
+                .filter(entry -> entry.getValue() > 0)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * Actor names with a positive weight, kept in the JSON for the movie_recommendations view
+     */
+    @JsonProperty(value = "preferredActors", access = JsonProperty.Access.READ_ONLY)
+    public List<String> preferredActors() {
+        return actors.values().stream()
+                .filter(actor -> actor.weight() > 0)
+                .map(ActorWeight::name)
+                .toList();
+    }
+}
@@ -0,0 +1,146 @@
+package com.integrated.imdb.repository;
+
+import com.integrated.imdb.model.FeedbackChange;
+import com.integrated.imdb.model.FeedbackEvent;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Repository
+public class FeedbackRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DistributionSummary upsertStatements;
+
+    public FeedbackRepository(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.upsertStatements = DistributionSummary.builder("movies.feedback.statements")
+                .description("SQL statements run by one feedback upsert: one request's submission, "
+                        + "or one write-behind group commit")
+                .register(meterRegistry);
+    }
+
+    /**
+     * All ratings of the user, most recent first
+     *
+     * @return Whether each rated movie is liked, by movie ID
+     */
+    public Map<String, Boolean> findRatings(String userId) {
+        Map<String, Boolean> ratings = new LinkedHashMap<>();
+        jdbcTemplate.query("""
+            SELECT movie_id, liked
+            FROM user_feedback
+            WHERE user_id = ?
+            ORDER BY created_at DESC, id DESC
+            """,
+            rs -> {
+                ratings.put(rs.getString(1), rs.getBoolean(2));
+            },
+            userId);
+        return ratings;
+    }
+
+    public boolean hasRatings(String userId) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+            "SELECT EXISTS (SELECT 1 FROM user_feedback WHERE user_id = ?)",
+            Boolean.class, userId));
+    }
+
+    /**
+     * Which of the given movies the user has liked, probing the (user_id, movie_id) index
+     */
+    public Set<String> findLikedAmong(String userId, Collection<String> movieIds) {
+        if (movieIds.isEmpty()) {
+            return new HashSet<>();
+        }
+        return new HashSet<>(jdbcTemplate.queryForList(
+            "SELECT movie_id FROM user_feedback WHERE user_id = ? AND movie_id = ANY(?) AND liked = true",
+            String.class, userId, movieIds.toArray(new String[0])));
+    }
+
+    /**
+     * Stores feedback submissions, possibly of several users, with one upsert. Ratings are
+     * deduplicated per user and movie (the last one in submission order wins), checked against
+     * title_basics and upserted together, returning the ratings they replace. Must run in a
+     * transaction: the users are locked first, in the order item_co_likes_apply locks them, so
+     * no concurrent submission of the same user can change a replaced rating until commit. The
+     * statements it runs are recorded in {@code movies.feedback.statements}.
+     *
+     * @param events Feedback submissions in the order they were made
+     * @return The stored (user, movie) ratings with the ratings they replaced
+     */
+    public List<FeedbackChange> upsertFeedback(Collection<FeedbackEvent> events) {
+        List<String> userIds = new ArrayList<>();
+        List<String> movieIds = new ArrayList<>();
+        List<Boolean> liked = new ArrayList<>();
+        for (FeedbackEvent event : events) {
+            for (int i = 0; i < event.movieIds().size(); i++) {
+                userIds.add(event.userId());
+                movieIds.add(event.movieIds().get(i));
+                liked.add(event.liked().get(i));
+            }
+        }
+        int statements = 0;
+        if (movieIds.isEmpty()) {
+            upsertStatements.record(statements);
+            return List.of();
+        }
+        boolean[] likedFlags = new boolean[liked.size()];
+        for (int i = 0; i < likedFlags.length; i++) {
+            likedFlags[i] = liked.get(i);
+        }
+
+        String[] users = userIds.toArray(new String[0]);
+        jdbcTemplate.query("""
+            SELECT pg_advisory_xact_lock(hashtext(u.user_id))
+            FROM (SELECT DISTINCT unnest(?::text[]) AS user_id ORDER BY 1) u
+            """,
+            rs -> {
+                // Only the locks are wanted
+            },
+            (Object) users);
+        statements++;
+
+        // Every CTE sees the table as it was before the statement, so previous holds the old ratings
+        String sql = """
+            WITH incoming AS (
+                SELECT DISTINCT ON (f.user_id, f.movie_id) f.user_id, f.movie_id, f.liked
+                FROM unnest(?::text[], ?::text[], ?::boolean[]) WITH ORDINALITY AS f(user_id, movie_id, liked, position)
+                ORDER BY f.user_id, f.movie_id, f.position DESC
+            ),
+            previous AS (
+                SELECT uf.user_id, uf.movie_id, uf.liked
+                FROM user_feedback uf
+                JOIN incoming i ON i.user_id = uf.user_id AND i.movie_id = uf.movie_id
+            ),
+            stored AS (
+                INSERT INTO user_feedback (user_id, movie_id, liked)
+                SELECT i.user_id, i.movie_id, i.liked
+                FROM incoming i
+                JOIN title_basics t ON t.tconst = i.movie_id
+                ON CONFLICT (user_id, movie_id)
+                DO UPDATE SET liked = EXCLUDED.liked, created_at = CURRENT_TIMESTAMP
+                RETURNING user_id, movie_id, liked
+            )
+            SELECT s.user_id, s.movie_id, p.liked, s.liked
+            FROM stored s
+            LEFT JOIN previous p ON p.user_id = s.user_id AND p.movie_id = s.movie_id
+            """;
+        List<FeedbackChange> changes = jdbcTemplate.query(sql,
+                (rs, rowNum) -> new FeedbackChange(rs.getString(1), rs.getString(2),
+                        (Boolean) rs.getObject(3), rs.getBoolean(4)),
+                users, movieIds.toArray(new String[0]), likedFlags);
+        statements++;
+        upsertStatements.record(statements);
+        return changes;
+    }
+}
@@ -1,14 +1,62 @@
 package com.integrated.imdb.repository;
 
+import com.integrated.imdb.model.LikedMovieFeatures;
+import com.integrated.imdb.model.MovieCursor;
+import com.integrated.imdb.model.MovieDetailsRecord;
+import com.integrated.imdb.model.MovieRecord;
+import com.integrated.imdb.model.MovieVoteCount;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Repository
 public class MovieRepository {
 
+    /**
+     * Reads a movie row by column index straight into a {@link MovieRecord}. Every movie query
+     * selects tconst, primary_title, start_year, genres, average_rating, num_votes,
+     * runtime_minutes and the matched actor name (NULL without an actor join), in that order.
+     */
+    private static final RowMapper<MovieRecord> MOVIE_ROW_MAPPER = (rs, rowNum) -> new MovieRecord(
+            rs.getString(1),
+            rs.getString(2),
+            rs.getInt(3),
+            rs.getString(4),
+            nullableDouble(rs, 5),
+            nullableInt(rs, 6),
+            rs.getInt(7),
+            rs.getString(8));
+
+    private static final RowMapper<MovieVoteCount> VOTE_COUNT_ROW_MAPPER = (rs, rowNum) ->
+            new MovieVoteCount(rs.getString(1), rs.getInt(2));
+
+    /**
+     * Reads a movie row followed by a cast name array and a director name.
+     */
+    private static final RowMapper<MovieDetailsRecord> MOVIE_DETAILS_ROW_MAPPER = (rs, rowNum) -> {
+        MovieRecord movie = MOVIE_ROW_MAPPER.mapRow(rs, rowNum);
+        Array castNames = rs.getArray(9);
+        List<String> cast = castNames == null ? List.of() : Arrays.asList((String[]) castNames.getArray());
+        return new MovieDetailsRecord(movie, cast, rs.getString(10));
+    };
+
+    /**
+     * Billed actors returned per movie by the details queries.
+     */
+    private static final int DETAILS_CAST_SIZE = 5;
+
     private final JdbcTemplate jdbcTemplate;
 
     public MovieRepository(JdbcTemplate jdbcTemplate) {
@@ -18,10 +66,10 @@ public class MovieRepository {
     /**
      * Find top movies by actor with ratings
      */
-    public List<Map<String, Object>> findTopMoviesByActor(String actor, int limit) {
+    public List<MovieRecord> findTopMoviesByActor(String actor, int limit) {
         String sql = """
-            SELECT t.tconst, t.primary_title as "primaryTitle", t.start_year as "startYear", t.genres,
-                   n.primary_name AS "actorName", r.average_rating as "averageRating", r.num_votes as "numVotes"
+            SELECT t.tconst, t.primary_title, t.start_year, t.genres,
+                   r.average_rating, r.num_votes, t.runtime_minutes, n.primary_name
             FROM title_basics t
             JOIN title_principals p ON t.tconst = p.tconst
             JOIN name_basics n ON p.nconst = n.nconst
@@ -30,23 +78,129 @@ public class MovieRepository {
             ORDER BY r.average_rating DESC NULLS LAST
             LIMIT ?
             """;
-        return jdbcTemplate.queryForList(sql, "%" + actor + "%", limit);
+        return jdbcTemplate.query(sql, MOVIE_ROW_MAPPER, "%" + actor + "%", limit);
     }
 
     /**
      * Search movies by title
      */
-    public List<Map<String, Object>> searchMoviesByTitle(String title, int limit) {
+    public List<MovieRecord> searchMoviesByTitle(String title, int limit) {
         String sql = """
-            SELECT t.tconst, t.primary_title as "primaryTitle", t.start_year as "startYear", t.genres, 
-                   r.average_rating as "averageRating", r.num_votes as "numVotes"
+            SELECT t.tconst, t.primary_title, t.start_year, t.genres,
+                   r.average_rating, r.num_votes, t.runtime_minutes, NULL
             FROM title_basics t
             LEFT JOIN title_ratings r ON t.tconst = r.tconst
             WHERE t.primary_title ILIKE ? AND t.title_type = 'movie'
             ORDER BY r.average_rating DESC NULLS LAST
             LIMIT ?
             """;
-        return jdbcTemplate.queryForList(sql, "%" + title + "%", limit);
+        return jdbcTemplate.query(sql, MOVIE_ROW_MAPPER, "%" + title + "%", limit);
+    }
+
+    /**
+     * Full-text search through {@code search_movies}, which matches the weighted title,
+     * original title, genre and cast vector of {@code movie_search}.
+     *
+     * @param query Free-text query in websearch syntax
+     * @param limit Maximum number of movies to return
+     * @return Movies ordered by text rank, then by number of votes
+     */
+    public List<MovieRecord> searchMoviesFullText(String query, int limit) {
+        String sql = """
+            SELECT s.tconst, s.primary_title, s.start_year, s.genres,
+                   s.average_rating, s.num_votes, t.runtime_minutes, NULL
+            FROM search_movies(?) s
+            JOIN title_basics t ON t.tconst = s.tconst
+            ORDER BY s.rank DESC, s.num_votes DESC NULLS LAST
+            LIMIT ?
+            """;
+        return jdbcTemplate.query(sql, MOVIE_ROW_MAPPER, query, limit);
+    }
+
+    /**
+     * Fuzzy title search using trigram word similarity, served by {@code idx_title_basics_gin}.
+     * Tolerates typos and matches the query against any part of the title.
+     *
+     * @param query Title fragment
+     * @param limit Maximum number of movies to return
+     * @return Movies ordered by similarity, then by number of votes
+     */
+    public List<MovieRecord> searchMoviesByTrigram(String query, int limit) {
+        String sql = """
+            SELECT t.tconst, t.primary_title, t.start_year, t.genres,
+                   r.average_rating, r.num_votes, t.runtime_minutes, NULL
+            FROM title_basics t
+            LEFT JOIN title_ratings r ON t.tconst = r.tconst
+            WHERE ? <% t.primary_title AND t.title_type = 'movie'
+            ORDER BY word_similarity(?, t.primary_title) DESC, r.num_votes DESC NULLS LAST
+            LIMIT ?
+            """;
+        return jdbcTemplate.query(sql, MOVIE_ROW_MAPPER, query, query, limit);
+    }
+
+    /**
+     * Get one page of movies ordered by (average_rating, num_votes, tconst), all descending,
+     * starting after the given cursor. Rated movies are read with an index seek on
+     * {@code idx_title_ratings_rating_votes}, so every page costs the same regardless of depth.
+     * When a title filter is given and no vote minimum applies, unrated movies follow the rated
+     * ones, ordered by tconst.
+     *
+     * @param title Title substring to match, or null for all movies
+     * @param minVotes Minimum number of votes; 0 also includes unrated movies
+     * @param after Position of the last movie of the previous page, or null for the first page
+     * @param limit Maximum number of movies to return
+     * @return Up to {@code limit} movies
+     */
+    public List<MovieRecord> findMoviesPage(String title, int minVotes, MovieCursor after, int limit) {
+        boolean hasTitle = title != null && !title.isBlank();
+        List<MovieRecord> movies = new ArrayList<>(limit);
+        if (after == null || !after.isUnrated()) {
+            StringBuilder sql = new StringBuilder("""
+                SELECT t.tconst, t.primary_title, t.start_year, t.genres,
+                       r.average_rating, r.num_votes, t.runtime_minutes, NULL
+                FROM title_ratings r
+                JOIN title_basics t ON t.tconst = r.tconst
+                WHERE t.title_type = 'movie'
+                AND r.average_rating IS NOT NULL
+                AND r.num_votes >= ?
+                """);
+            List<Object> params = new ArrayList<>();
+            params.add(minVotes);
+            if (hasTitle) {
+                sql.append("AND t.primary_title ILIKE ? ");
+                params.add("%" + title + "%");
+            }
+            if (after != null) {
+                sql.append("AND (r.average_rating, r.num_votes, r.tconst) < (?, ?, ?) ");
+                params.add(after.averageRating());
+                params.add(after.numVotes());
+                params.add(after.tconst());
+            }
+            sql.append("ORDER BY r.average_rating DESC, r.num_votes DESC, r.tconst DESC LIMIT ?");
+            params.add(limit);
+            movies.addAll(jdbcTemplate.query(sql.toString(), MOVIE_ROW_MAPPER, params.toArray()));
+        }
+
+        if (movies.size() < limit && hasTitle && minVotes <= 0) {
+            StringBuilder sql = new StringBuilder("""
+                SELECT t.tconst, t.primary_title, t.start_year, t.genres,
+                       NULL::float, NULL::integer, t.runtime_minutes, NULL
+                FROM title_basics t
+                WHERE t.title_type = 'movie'
+                AND t.primary_title ILIKE ?
+                AND NOT EXISTS (SELECT 1 FROM title_ratings r WHERE r.tconst = t.tconst)
+                """);
+            List<Object> params = new ArrayList<>();
+            params.add("%" + title + "%");
+            if (after != null && after.isUnrated()) {
+                sql.append("AND t.tconst < ? ");
+                params.add(after.tconst());
+            }
+            sql.append("ORDER BY t.tconst DESC LIMIT ?");
+            params.add(limit - movies.size());
+            movies.addAll(jdbcTemplate.query(sql.toString(), MOVIE_ROW_MAPPER, params.toArray()));
+        }
+        return movies;
     }
 
     /**
@@ -56,42 +210,61 @@ public class MovieRepository {
      * @param minVotes Minimum number of votes a movie must have to be included
      * @return List of top rated movies matching the criteria
      */
-    public List<Map<String, Object>> getTopRatedMovies(int limit, int minVotes) {
+    public List<MovieRecord> getTopRatedMovies(int limit, int minVotes) {
         String sql = """
-            SELECT t.tconst, t.primary_title as "primaryTitle", t.start_year as "startYear", t.genres, 
-                   r.average_rating as "averageRating", r.num_votes as "numVotes", t.runtime_minutes as "runtimeMinutes"
+            SELECT t.tconst, t.primary_title, t.start_year, t.genres,
+                   r.average_rating, r.num_votes, t.runtime_minutes, NULL
             FROM title_basics t
             JOIN title_ratings r ON t.tconst = r.tconst
             WHERE t.title_type = 'movie' 
             AND r.num_votes >= ?
-            ORDER BY r.average_rating DESC, r.num_votes DESC
+            ORDER BY r.average_rating DESC, r.num_votes DESC, r.tconst DESC
             LIMIT ?
             """;
-        return jdbcTemplate.queryForList(sql, minVotes, limit);
+        return jdbcTemplate.query(sql, MOVIE_ROW_MAPPER, minVotes, limit);
     }
 
     /**
-     * Get movie details by ID
+     * Get movie IDs ordered by number of votes, most voted first, continuing after the given
+     * (numVotes, tconst) position. Pass nulls to start from the most voted movie.
+     *
+     * @param afterNumVotes Vote count of the last movie already seen, or null
+     * @param afterTconst ID of the last movie already seen, or null
+     * @param limit Maximum number of movies to return
+     * @return Movie IDs with their vote counts
      */
-    public Map<String, Object> findMovieById(String tconst) {
+    public List<MovieVoteCount> findMovieIdsByVotes(Integer afterNumVotes, String afterTconst, int limit) {
+        if (afterNumVotes == null || afterTconst == null) {
+            String sql = """
+                SELECT r.tconst, r.num_votes
+                FROM title_ratings r
+                JOIN title_basics t ON t.tconst = r.tconst
+                WHERE t.title_type = 'movie'
+                ORDER BY r.num_votes DESC, r.tconst DESC
+                LIMIT ?
+                """;
+            return jdbcTemplate.query(sql, VOTE_COUNT_ROW_MAPPER, limit);
+        }
         String sql = """
-            SELECT t.tconst, t.primary_title as "primaryTitle", t.original_title as "originalTitle", t.start_year as "startYear", 
-                   t.runtime_minutes as "runtimeMinutes", t.genres, r.average_rating as "averageRating", r.num_votes as "numVotes"
-            FROM title_basics t
-            LEFT JOIN title_ratings r ON t.tconst = r.tconst
-            WHERE t.tconst = ?
+            SELECT r.tconst, r.num_votes
+            FROM title_ratings r
+            JOIN title_basics t ON t.tconst = r.tconst
+            WHERE t.title_type = 'movie'
+            AND (r.num_votes, r.tconst) < (?, ?)
+            ORDER BY r.num_votes DESC, r.tconst DESC
+            LIMIT ?
             """;
-        List<Map<String, Object>> results = jdbcTemplate.queryForList(sql, tconst);
-        return results.isEmpty() ? null : results.get(0);
+        return jdbcTemplate.query(sql, VOTE_COUNT_ROW_MAPPER, afterNumVotes, afterTconst, limit);
     }
 
     /**
-     * Filter movies with multiple criteria
+     * Filter movies with multiple criteria. The genre must name a whole genre, in any case; it is
+     * tested against the genre bitmask of each title.
      */
-    public List<Map<String, Object>> filterMovies(String actor, String genre, String fromYear, String toYear, int limit) {
+    public List<MovieRecord> filterMovies(String actor, String genre, String fromYear, String toYear, int limit) {
         StringBuilder sql = new StringBuilder("""
-            SELECT DISTINCT t.tconst, t.primary_title as "primaryTitle", t.start_year as "startYear", t.genres, 
-                   r.average_rating as "averageRating", r.num_votes as "numVotes"
+            SELECT DISTINCT t.tconst, t.primary_title, t.start_year, t.genres,
+                   r.average_rating, r.num_votes, t.runtime_minutes, NULL
             FROM title_basics t
             LEFT JOIN title_ratings r ON t.tconst = r.tconst
             """);
@@ -110,7 +283,7 @@ public class MovieRepository {
             sql.append("AND n.primary_name ILIKE ? ");
         }
         if (genre != null && !genre.trim().isEmpty()) {
-            sql.append("AND t.genres ILIKE ? ");
+            sql.append("AND (t.genre_mask & (SELECT genre_mask_lookup(ARRAY[?::text]))) <> 0 ");
         }
         if (fromYear != null && !fromYear.trim().isEmpty()) {
             sql.append("AND t.start_year >= ? ");
@@ -124,17 +297,17 @@ public class MovieRepository {
         // Build parameters array
         Object[] params = buildFilterParams(actor, genre, fromYear, toYear, limit);
         
-        return jdbcTemplate.queryForList(sql.toString(), params);
+        return jdbcTemplate.query(sql.toString(), MOVIE_ROW_MAPPER, params);
     }
 
     private Object[] buildFilterParams(String actor, String genre, String fromYear, String toYear, int limit) {
-        java.util.List<Object> params = new java.util.ArrayList<>();
+        List<Object> params = new ArrayList<>();
         
         if (actor != null && !actor.trim().isEmpty()) {
             params.add("%" + actor + "%");
         }
         if (genre != null && !genre.trim().isEmpty()) {
-            params.add("%" + genre + "%");
+            params.add(genre.trim());
         }
         if (fromYear != null && !fromYear.trim().isEmpty()) {
             params.add(fromYear);
@@ -148,16 +321,102 @@ public class MovieRepository {
     }
 
     /**
-     * Get cast and crew for a movie
+     * Get movies with rating, billed cast and director in one query, aggregating the principals
+     * of every movie into arrays.
+     *
+     * @param tconsts The movie IDs
+     * @return The movies found, in no particular order
      */
-    public List<Map<String, Object>> getMovieCastAndCrew(String tconst) {
+    public List<MovieDetailsRecord> findMovieDetailsByIds(Collection<String> tconsts) {
         String sql = """
-            SELECT n.primary_name as "primaryName", p.category, p.job, p.characters
-            FROM title_principals p
-            JOIN name_basics n ON p.nconst = n.nconst
-            WHERE p.tconst = ?
-            ORDER BY p.ordering
+            SELECT t.tconst, t.primary_title, t.start_year, t.genres,
+                   r.average_rating, r.num_votes, t.runtime_minutes, NULL,
+                   (array_agg(n.primary_name ORDER BY p.ordering)
+                        FILTER (WHERE p.category IN ('actor', 'actress')))[1:?] AS cast_names,
+                   (array_agg(n.primary_name ORDER BY p.ordering)
+                        FILTER (WHERE p.category = 'director'))[1] AS director
+            FROM title_basics t
+            LEFT JOIN title_ratings r ON t.tconst = r.tconst
+            LEFT JOIN title_principals p ON t.tconst = p.tconst
+                AND p.category IN ('actor', 'actress', 'director')
+            LEFT JOIN name_basics n ON p.nconst = n.nconst
+            WHERE t.tconst = ANY(?)
+            GROUP BY t.tconst, r.tconst
+            """;
+        return jdbcTemplate.query(sql, MOVIE_DETAILS_ROW_MAPPER,
+                DETAILS_CAST_SIZE, tconsts.toArray(new String[0]));
+    }
+
+    /**
+     * Extracts genres and top billed actors of the given movies in one set-based query, without
+     * loading the movies themselves.
+     *
+     * @param tconsts The movie IDs
+     * @param actorsPerMovie How many actors to take from the top of each movie's billing
+     * @return The distinct genres and actors
+     */
+    public LikedMovieFeatures findMovieFeatures(Collection<String> tconsts, int actorsPerMovie) {
+        Set<String> genres = new LinkedHashSet<>();
+        Map<String, String> actors = new LinkedHashMap<>();
+        for (LikedMovieFeatures movie : findFeaturesByMovie(tconsts, actorsPerMovie).values()) {
+            genres.addAll(movie.genres());
+            actors.putAll(movie.actors());
+        }
+        return new LikedMovieFeatures(genres, actors);
+    }
+
+    /**
+     * Extracts genres and top billed actors of the given movies in one set-based query, keeping
+     * the genres and actors of each movie apart.
+     *
+     * @param tconsts The movie IDs
+     * @param actorsPerMovie How many actors to take from the top of each movie's billing
+     * @return Genres and actors by movie ID; movies not in title_basics are missing
+     */
+    public Map<String, LikedMovieFeatures> findFeaturesByMovie(Collection<String> tconsts, int actorsPerMovie) {
+        Map<String, LikedMovieFeatures> features = new LinkedHashMap<>();
+        if (tconsts.isEmpty()) {
+            return features;
+        }
+
+        String[] ids = tconsts.toArray(new String[0]);
+        String sql = """
+            SELECT t.tconst, 'genre' AS kind, trim(g) AS value, NULL AS name
+            FROM title_basics t, unnest(string_to_array(t.genres, ',')) AS g
+            WHERE t.tconst = ANY(?)
+            UNION ALL
+            SELECT billed.tconst, 'actor', billed.nconst, billed.primary_name
+            FROM (
+                SELECT p.tconst, p.nconst, n.primary_name,
+                       row_number() OVER (PARTITION BY p.tconst ORDER BY p.ordering) AS billing
+                FROM title_principals p
+                JOIN name_basics n ON p.nconst = n.nconst
+                WHERE p.tconst = ANY(?) AND p.category IN ('actor', 'actress')
+            ) billed
+            WHERE billed.billing <= ?
             """;
-        return jdbcTemplate.queryForList(sql, tconst);
+        jdbcTemplate.query(sql, rs -> {
+            LikedMovieFeatures movie = features.computeIfAbsent(rs.getString(1),
+                    tconst -> new LikedMovieFeatures(new LinkedHashSet<>(), new LinkedHashMap<>()));
+            String value = rs.getString(3);
+            if ("genre".equals(rs.getString(2))) {
+                if (!value.isEmpty()) {
+                    movie.genres().add(value);
+                }
+            } else {
+                movie.actors().put(value, rs.getString(4));
+            }
+        }, ids, ids, actorsPerMovie);
+        return features;
+    }
+
+    private static Double nullableDouble(ResultSet rs, int column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static Integer nullableInt(ResultSet rs, int column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? null : value;
     }
 }
@@ -0,0 +1,359 @@
+package com.integrated.imdb.service;
+
+import com.integrated.imdb.dto.AutocompleteSuggestion;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable prefix index over movie titles and actor names, kept in a handful of flat arrays.
+ * <p>
+ * Every entry's normalized text (lower case, no accents, words separated by single spaces) is
+ * stored back to back in one byte array. The index keeps a pointer to the start of every word,
+ * sorted by the text that follows it, so all entries with a word starting with the query form a
+ * contiguous range found by binary search. A max segment tree over the entry weights of that
+ * sorted order returns the top-k entries of the range without scanning it.
+ */
+public final class AutocompleteIndex {
+
+    public enum Kind {
+        MOVIE("tt"), ACTOR("nm");
+
+        private final String idPrefix;
+
+        Kind(String idPrefix) {
+            this.idPrefix = idPrefix;
+        }
+    }
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int ARRAY_HEADER_BYTES = 16;
+
+    private static final AutocompleteIndex EMPTY = new Builder().build();
+
+    // Per entry
+    private final byte[] kinds;
+    private final int[] idNumbers;
+    private final short[] years;
+    private final int[] weights;
+    private final byte[] labels;
+    private final int[] labelOffsets;
+    private final byte[] keys;
+    private final int[] keyOffsets;
+
+    // Per word start, sorted by the text that follows it
+    private final int[] wordStarts;
+    private final int[] wordEntries;
+
+    // Heap-ordered max tree over wordEntries weights; leaves start at treeLeaves, -1 pads
+    private final int[] tree;
+    private final int treeLeaves;
+
+    private AutocompleteIndex(byte[] kinds, int[] idNumbers, short[] years, int[] weights,
+                              byte[] labels, int[] labelOffsets, byte[] keys, int[] keyOffsets,
+                              int[] wordStarts, int[] wordEntries) {
+        this.kinds = kinds;
+        this.idNumbers = idNumbers;
+        this.years = years;
+        this.weights = weights;
+        this.labels = labels;
+        this.labelOffsets = labelOffsets;
+        this.keys = keys;
+        this.keyOffsets = keyOffsets;
+        this.wordStarts = wordStarts;
+        this.wordEntries = wordEntries;
+
+        int leaves = 1;
+        while (leaves < wordStarts.length) {
+            leaves <<= 1;
+        }
+        this.treeLeaves = leaves;
+        this.tree = new int[2 * leaves];
+        Arrays.fill(tree, -1);
+        for (int i = 0; i < wordStarts.length; i++) {
+            tree[leaves + i] = i;
+        }
+        for (int node = leaves - 1; node > 0; node--) {
+            tree[node] = heavier(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+
+    public static AutocompleteIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Normalizes text the same way entries are indexed.
+     */
+    static String normalize(String text) {
+        String stripped = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(stripped.toLowerCase()).replaceAll(" ").trim();
+    }
+
+    /**
+     * Returns the heaviest entries that have a word starting with the query. Several query words
+     * match consecutive words of an entry, the last one as a prefix.
+     *
+     * @param query The text typed so far
+     * @param limit Maximum number of suggestions
+     * @return Suggestions, heaviest first
+     */
+    public List<AutocompleteSuggestion> suggest(String query, int limit) {
+        String normalized = query == null ? "" : normalize(query);
+        if (normalized.isEmpty() || limit <= 0 || wordStarts.length == 0) {
+            return List.of();
+        }
+        byte[] prefix = normalized.getBytes(StandardCharsets.UTF_8);
+        int from = lowerBound(prefix, false);
+        int to = lowerBound(prefix, true);
+        if (from >= to) {
+            return List.of();
+        }
+
+        // Best-first walk over the canonical tree nodes covering [from, to)
+        PriorityQueue<Integer> nodes = new PriorityQueue<>(
+                (a, b) -> Integer.compare(weightOf(tree[b]), weightOf(tree[a])));
+        for (int lo = from + treeLeaves, hi = to + treeLeaves; lo < hi; lo >>= 1, hi >>= 1) {
+            if ((lo & 1) == 1) {
+                nodes.add(lo++);
+            }
+            if ((hi & 1) == 1) {
+                nodes.add(--hi);
+            }
+        }
+
+        List<AutocompleteSuggestion> suggestions = new ArrayList<>(limit);
+        int[] seen = new int[limit];
+        while (!nodes.isEmpty() && suggestions.size() < limit) {
+            int node = nodes.poll();
+            if (node < treeLeaves) {
+                for (int child = 2 * node; child <= 2 * node + 1; child++) {
+                    if (tree[child] >= 0) {
+                        nodes.add(child);
+                    }
+                }
+                continue;
+            }
+            int entry = wordEntries[tree[node]];
+            if (!contains(seen, suggestions.size(), entry)) {
+                seen[suggestions.size()] = entry;
+                suggestions.add(toSuggestion(entry));
+            }
+        }
+        return suggestions;
+    }
+
+    public int size() {
+        return weights.length;
+    }
+
+    /**
+     * @return Approximate bytes retained by the index arrays
+     */
+    public long estimatedHeapBytes() {
+        return arrayBytes(kinds.length, 1) + arrayBytes(idNumbers.length, 4) + arrayBytes(years.length, 2)
+                + arrayBytes(weights.length, 4) + arrayBytes(labels.length, 1) + arrayBytes(labelOffsets.length, 4)
+                + arrayBytes(keys.length, 1) + arrayBytes(keyOffsets.length, 4)
+                + arrayBytes(wordStarts.length, 4) + arrayBytes(wordEntries.length, 4) + arrayBytes(tree.length, 4);
+    }
+
+    private static long arrayBytes(int length, int elementBytes) {
+        return ARRAY_HEADER_BYTES + (long) length * elementBytes;
+    }
+
+    private AutocompleteSuggestion toSuggestion(int entry) {
+        Kind kind = Kind.values()[kinds[entry]];
+        String label = new String(labels, labelOffsets[entry], labelOffsets[entry + 1] - labelOffsets[entry],
+                StandardCharsets.UTF_8);
+        String id = kind.idPrefix + String.format("%07d", idNumbers[entry]);
+        Integer year = years[entry] > 0 ? Integer.valueOf(years[entry]) : null;
+        return new AutocompleteSuggestion(id, label, kind.name().toLowerCase(), year, weights[entry]);
+    }
+
+    /**
+     * First sorted word position whose text is not below the prefix, or with {@code after}, the
+     * first one that neither starts with nor sorts below the prefix.
+     */
+    private int lowerBound(byte[] prefix, boolean after) {
+        int lo = 0;
+        int hi = wordStarts.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareToPrefix(mid, prefix);
+            if (cmp < 0 || (after && cmp == 0)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return Negative if the word text sorts before the prefix, 0 if it starts with it, positive otherwise
+     */
+    private int compareToPrefix(int word, byte[] prefix) {
+        int pos = wordStarts[word];
+        int end = keyOffsets[wordEntries[word] + 1];
+        for (int i = 0; i < prefix.length; i++, pos++) {
+            if (pos >= end) {
+                return -1;
+            }
+            int cmp = Integer.compare(keys[pos] & 0xff, prefix[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    private int heavier(int a, int b) {
+        if (a < 0) {
+            return b;
+        }
+        if (b < 0) {
+            return a;
+        }
+        return weightOf(b) > weightOf(a) ? b : a;
+    }
+
+    private int weightOf(int word) {
+        return word < 0 ? -1 : weights[wordEntries[word]];
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Collects entries and builds the sorted word index. Not thread-safe.
+     */
+    public static final class Builder {
+
+        private final ByteArrayOutputStream labels = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream keys = new ByteArrayOutputStream();
+        private byte[] kinds = new byte[1024];
+        private int[] idNumbers = new int[1024];
+        private short[] years = new short[1024];
+        private int[] weights = new int[1024];
+        private int[] labelOffsets = new int[1025];
+        private int[] keyOffsets = new int[1025];
+        private int size;
+        private int wordCount;
+
+        /**
+         * Adds an entry. Entries whose ID is not an IMDb ID of the given kind or whose text has
+         * no letters or digits are ignored.
+         *
+         * @param kind Movie or actor
+         * @param id tconst or nconst
+         * @param label Display text
+         * @param year Release year, or 0
+         * @param weight Popularity, higher first
+         */
+        public Builder add(Kind kind, String id, String label, int year, int weight) {
+            if (id == null || label == null || !id.startsWith(kind.idPrefix)) {
+                return this;
+            }
+            int idNumber;
+            try {
+                idNumber = Integer.parseInt(id.substring(kind.idPrefix.length()));
+            } catch (NumberFormatException e) {
+                return this;
+            }
+            byte[] key = normalize(label).getBytes(StandardCharsets.UTF_8);
+            if (key.length == 0) {
+                return this;
+            }
+
+            if (size == weights.length) {
+                int capacity = size * 2;
+                kinds = Arrays.copyOf(kinds, capacity);
+                idNumbers = Arrays.copyOf(idNumbers, capacity);
+                years = Arrays.copyOf(years, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+                labelOffsets = Arrays.copyOf(labelOffsets, capacity + 1);
+                keyOffsets = Arrays.copyOf(keyOffsets, capacity + 1);
+            }
+            kinds[size] = (byte) kind.ordinal();
+            idNumbers[size] = idNumber;
+            years[size] = (short) Math.max(0, Math.min(year, Short.MAX_VALUE));
+            weights[size] = Math.max(weight, 0);
+            labels.writeBytes(label.getBytes(StandardCharsets.UTF_8));
+            keys.writeBytes(key);
+            size++;
+            labelOffsets[size] = labels.size();
+            keyOffsets[size] = keys.size();
+            wordCount += countWords(key);
+            return this;
+        }
+
+        public AutocompleteIndex build() {
+            byte[] keyBytes = keys.toByteArray();
+            int[] starts = new int[wordCount];
+            int[] entries = new int[wordCount];
+            int word = 0;
+            for (int entry = 0; entry < size; entry++) {
+                for (int pos = keyOffsets[entry]; pos < keyOffsets[entry + 1]; pos++) {
+                    if (pos == keyOffsets[entry] || keyBytes[pos - 1] == ' ') {
+                        starts[word] = pos;
+                        entries[word] = entry;
+                        word++;
+                    }
+                }
+            }
+
+            Integer[] order = new Integer[wordCount];
+            for (int i = 0; i < wordCount; i++) {
+                order[i] = i;
+            }
+            int[] entryEnds = keyOffsets;
+            Arrays.sort(order, (a, b) -> compareSuffixes(keyBytes,
+                    starts[a], entryEnds[entries[a] + 1], starts[b], entryEnds[entries[b] + 1]));
+            int[] sortedStarts = new int[wordCount];
+            int[] sortedEntries = new int[wordCount];
+            for (int i = 0; i < wordCount; i++) {
+                sortedStarts[i] = starts[order[i]];
+                sortedEntries[i] = entries[order[i]];
+            }
+
+            return new AutocompleteIndex(Arrays.copyOf(kinds, size), Arrays.copyOf(idNumbers, size),
+                    Arrays.copyOf(years, size), Arrays.copyOf(weights, size),
+                    labels.toByteArray(), Arrays.copyOf(labelOffsets, size + 1),
+                    keyBytes, Arrays.copyOf(keyOffsets, size + 1),
+                    sortedStarts, sortedEntries);
+        }
+
+        private static int countWords(byte[] key) {
+            int words = 1;
+            for (byte b : key) {
+                if (b == ' ') {
+                    words++;
+                }
+            }
+            return words;
+        }
+
+        private static int compareSuffixes(byte[] bytes, int a, int aEnd, int b, int bEnd) {
+            while (a < aEnd && b < bEnd) {
+                int cmp = Integer.compare(bytes[a++] & 0xff, bytes[b++] & 0xff);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return Integer.compare(aEnd - a, bEnd - b);
+        }
+    }
+}
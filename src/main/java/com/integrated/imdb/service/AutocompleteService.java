@@ -0,0 +1,152 @@
+package com.integrated.imdb.service;
+
+import com.integrated.imdb.dto.AutocompleteSuggestion;
+import com.integrated.imdb.model.ImdbDataset;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Serves as-you-type suggestions for movie titles and actor names from an in-memory
+ * {@link AutocompleteIndex}. The index is built in the background at startup and after IMDb
+ * data loads, then swapped in atomically; queries keep using the previous index meanwhile.
+ */
+@Service
+public class AutocompleteService {
+
+    private static final Logger log = LoggerFactory.getLogger(AutocompleteService.class);
+
+    private static final Set<ImdbDataset> SOURCE_DATASETS = EnumSet.of(ImdbDataset.TITLE_BASICS,
+            ImdbDataset.TITLE_RATINGS, ImdbDataset.NAME_BASICS, ImdbDataset.TITLE_PRINCIPALS);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int minMovieVotes;
+    private final int minActorVotes;
+    private final Timer suggestTimer;
+
+    private volatile AutocompleteIndex index = AutocompleteIndex.empty();
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+    private final ExecutorService builder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "autocomplete-build");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AutocompleteService(JdbcTemplate jdbcTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.autocomplete.enabled:true}") boolean enabled,
+                               @Value("${app.autocomplete.min-movie-votes:100}") int minMovieVotes,
+                               @Value("${app.autocomplete.min-actor-votes:10000}") int minActorVotes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.minMovieVotes = minMovieVotes;
+        this.minActorVotes = minActorVotes;
+        this.suggestTimer = Timer.builder("movies.autocomplete")
+                .description("Latency of as-you-type suggestion lookups")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("movies.autocomplete.heap.bytes", this, service -> service.index.estimatedHeapBytes())
+                .description("Approximate heap retained by the autocomplete index")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("movies.autocomplete.entries", this, service -> service.index.size())
+                .description("Titles and names in the autocomplete index")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        builder.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        requestRebuild();
+    }
+
+    @EventListener
+    public void onImdbDataChanged(ImdbDataChangedEvent event) {
+        if (event.datasets().stream().anyMatch(SOURCE_DATASETS::contains)) {
+            requestRebuild();
+        }
+    }
+
+    /**
+     * Returns the most popular movies and actors with a word starting with the query.
+     *
+     * @param query The text typed so far
+     * @param limit Maximum number of suggestions
+     * @return Suggestions, most voted first; empty until the first build has finished
+     */
+    public List<AutocompleteSuggestion> suggest(String query, int limit) {
+        return suggestTimer.record(() -> index.suggest(query, limit));
+    }
+
+    /**
+     * Queues a rebuild unless one is already waiting to start.
+     */
+    public void requestRebuild() {
+        if (enabled && rebuildQueued.compareAndSet(false, true)) {
+            builder.submit(() -> {
+                rebuildQueued.set(false);
+                rebuild();
+            });
+        }
+    }
+
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        try {
+            AutocompleteIndex.Builder indexBuilder = new AutocompleteIndex.Builder();
+            jdbcTemplate.query("""
+                SELECT t.tconst, t.primary_title, t.start_year, r.num_votes
+                FROM title_basics t
+                JOIN title_ratings r ON t.tconst = r.tconst
+                WHERE t.title_type = 'movie' AND r.num_votes >= ?
+                """,
+                rs -> {
+                    indexBuilder.add(AutocompleteIndex.Kind.MOVIE, rs.getString(1), rs.getString(2),
+                            rs.getInt(3), rs.getInt(4));
+                },
+                minMovieVotes);
+            jdbcTemplate.query("""
+                SELECT n.nconst, n.primary_name, LEAST(SUM(r.num_votes), 2147483647)
+                FROM title_principals p
+                JOIN title_basics t ON t.tconst = p.tconst AND t.title_type = 'movie'
+                JOIN title_ratings r ON r.tconst = p.tconst
+                JOIN name_basics n ON n.nconst = p.nconst
+                WHERE p.category IN ('actor', 'actress')
+                GROUP BY n.nconst, n.primary_name
+                HAVING SUM(r.num_votes) >= ?
+                """,
+                rs -> {
+                    indexBuilder.add(AutocompleteIndex.Kind.ACTOR, rs.getString(1), rs.getString(2),
+                            0, rs.getInt(3));
+                },
+                minActorVotes);
+
+            AutocompleteIndex rebuilt = indexBuilder.build();
+            index = rebuilt;
+            log.info("Autocomplete index rebuilt in {} ms: {} entries, ~{} KB", System.currentTimeMillis() - start,
+                    rebuilt.size(), rebuilt.estimatedHeapBytes() / 1024);
+        } catch (Exception e) {
+            log.warn("Failed to rebuild autocomplete index, keeping the previous one: {}", e.getMessage());
+        }
+    }
+}
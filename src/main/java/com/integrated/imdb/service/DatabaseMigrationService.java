@@ -100,7 +100,8 @@ public class DatabaseMigrationService {
                 });
         }
         
-        migrationFiles.sort(Comparator.comparing(MigrationFile::getVersion));
+        // Numeric order, so that V10 runs after V9
+        migrationFiles.sort(Comparator.comparingInt(migration -> Integer.parseInt(migration.getVersion())));
         return migrationFiles;
     }
     
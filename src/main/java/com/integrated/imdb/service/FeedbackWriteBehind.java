@@ -0,0 +1,594 @@
+package com.integrated.imdb.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.integrated.imdb.model.FeedbackChange;
+import com.integrated.imdb.model.FeedbackEvent;
+import com.integrated.imdb.repository.FeedbackRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Asynchronous ingestion of feedback submissions. A submission is appended to a local log
+ * (one JSON line, forced to disk) and to a bounded in-memory queue; a writer thread drains the
+ * queue, stores everything it took with a single upsert and moves the affected user profiles
+ * in the same transaction, so a burst of submissions costs one pooled connection and one
+ * commit. The log is replayed at startup and compacted to the still-queued submissions after
+ * each commit. When a group commit fails, the batch is retried one submission at a time, and a
+ * submission that still fails after {@code max-attempts} tries is moved to a dead-letter file
+ * so it cannot hold up the rest.
+ * <p>
+ * Until a submission is committed it stays in a per-user overlay, which
+ * {@link #pendingRatings(String)} returns, so the user's next recommendations already reflect
+ * it. When the queue is full the caller stores the submission itself through
+ * {@link #writeThrough(FeedbackEvent)}.
+ */
+@Component
+public class FeedbackWriteBehind {
+
+    private static final Logger log = LoggerFactory.getLogger(FeedbackWriteBehind.class);
+
+    /**
+     * How long the writer waits for a submission before checking whether it should stop. The
+     * writer is never interrupted, since an interrupt would close the log channel mid-write.
+     */
+    private static final long POLL_MILLIS = 200;
+
+    /**
+     * Longest user ID {@code user_feedback.user_id} holds.
+     */
+    static final int MAX_USER_ID_LENGTH = 50;
+
+    private record QueuedFeedback(long sequence, FeedbackEvent event) {
+    }
+
+    /**
+     * Latest uncommitted rating of one movie by one user.
+     */
+    private record PendingRating(long sequence, boolean liked) {
+    }
+
+    private final FeedbackRepository feedbackRepository;
+    private final UserProfileStore userProfileStore;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long retryDelayMs;
+    private final int maxAttempts;
+    private final long compactBytes;
+    private final Path logFile;
+    private final Path deadLetterFile;
+    private final BlockingQueue<QueuedFeedback> queue;
+    private final Map<String, Map<String, PendingRating>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final DistributionSummary commitBatch;
+    private final Counter overflows;
+    private final Counter deadLetters;
+
+    /**
+     * Failed single-submission commits by queue sequence; only the writer thread uses it.
+     */
+    private final Map<Long, Integer> failedAttempts = new HashMap<>();
+
+    /**
+     * Guards the log file and keeps log order equal to queue order.
+     */
+    private final Object logLock = new Object();
+    private FileChannel logChannel;
+
+    /**
+     * Held while a batch is committed, so a write-through cannot interleave with it.
+     */
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private volatile boolean running;
+    private Thread writer;
+
+    public FeedbackWriteBehind(FeedbackRepository feedbackRepository,
+                               UserProfileStore userProfileStore,
+                               PlatformTransactionManager transactionManager,
+                               ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.feedback.write-behind.enabled:false}") boolean enabled,
+                               @Value("${app.feedback.write-behind.capacity:10000}") int capacity,
+                               @Value("${app.feedback.write-behind.max-batch-size:1000}") int maxBatchSize,
+                               @Value("${app.feedback.write-behind.retry-delay-ms:1000}") long retryDelayMs,
+                               @Value("${app.feedback.write-behind.max-attempts:5}") int maxAttempts,
+                               @Value("${app.feedback.write-behind.compact-bytes:1048576}") long compactBytes,
+                               @Value("${app.feedback.write-behind.log-file:data/feedback-write-behind.log}") String logFile,
+                               @Value("${app.feedback.write-behind.dead-letter-file:data/feedback-dead-letter.log}") String deadLetterFile) {
+        this.feedbackRepository = feedbackRepository;
+        this.userProfileStore = userProfileStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.retryDelayMs = retryDelayMs;
+        this.maxAttempts = maxAttempts;
+        this.compactBytes = compactBytes;
+        this.logFile = Paths.get(logFile);
+        this.deadLetterFile = Paths.get(deadLetterFile);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        Gauge.builder("movies.feedback.queue.depth", queue, BlockingQueue::size)
+                .description("Feedback submissions waiting for the write-behind writer")
+                .register(meterRegistry);
+        this.commitBatch = DistributionSummary.builder("movies.feedback.commit.batch")
+                .description("Feedback submissions stored per write-behind commit")
+                .register(meterRegistry);
+        this.overflows = Counter.builder("movies.feedback.queue.overflows")
+                .description("Feedback submissions written through because the write-behind queue was full")
+                .register(meterRegistry);
+        this.deadLetters = Counter.builder("movies.feedback.dead-lettered")
+                .description("Feedback submissions moved to the dead-letter file after failing every commit attempt")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            replayLog();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the feedback log " + logFile, e);
+        }
+        int replayed = queue.size();
+        running = true;
+        writer = new Thread(this::drain, "feedback-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Feedback write-behind enabled (capacity={}, log={}, {} submissions replayed)",
+                queue.remainingCapacity() + queue.size(), logFile, replayed);
+    }
+
+    /**
+     * Stops the writer after it has committed what is queued. Whatever could not be committed
+     * stays in the log for the next start.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        synchronized (logLock) {
+            try {
+                logChannel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close the feedback log: {}", e.getMessage());
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Logs and queues a submission.
+     *
+     * @return false if the queue is full; the submission was not taken and must be written through
+     * @throws IllegalArgumentException if the submission could never be stored; it is not logged
+     */
+    public boolean submit(FeedbackEvent event) {
+        validate(event);
+        synchronized (logLock) {
+            if (queue.remainingCapacity() == 0) {
+                overflows.increment();
+                return false;
+            }
+            QueuedFeedback queued = new QueuedFeedback(sequence.incrementAndGet(), event);
+            try {
+                append(List.of(event), logChannel);
+                logChannel.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to append to the feedback log " + logFile, e);
+            }
+            // Tracked before it is queued: the writer skips ratings that are not in the overlay.
+            // Only this method adds to the queue and it holds the lock, so the capacity check holds
+            track(queued);
+            queue.add(queued);
+        }
+        return true;
+    }
+
+    /**
+     * Stores a submission synchronously, ahead of any queued ratings of the same movies, which
+     * the writer then skips. Call it in a transaction, and apply the returned ratings to the
+     * user's profile in it.
+     * <p>
+     * Until that transaction completes, the writer is held off and the overlay shows the new
+     * ratings in place of the queued ones. They are dropped from the overlay once the transaction
+     * commits; on rollback the queued ratings come back and the writer stores them.
+     *
+     * @return The stored ratings
+     */
+    public List<FeedbackChange> writeThrough(FeedbackEvent event) {
+        commitLock.lock();
+        boolean unlockOnCompletion = false;
+        try {
+            List<FeedbackChange> changes = feedbackRepository.upsertFeedback(List.of(event));
+            QueuedFeedback written = new QueuedFeedback(sequence.incrementAndGet(), event);
+            Map<String, PendingRating> superseded = supersede(written);
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        try {
+                            if (status == STATUS_COMMITTED) {
+                                untrack(written);
+                            } else {
+                                restore(written, superseded);
+                            }
+                        } finally {
+                            commitLock.unlock();
+                        }
+                    }
+                });
+                unlockOnCompletion = true;
+            } else {
+                untrack(written);
+            }
+            return changes;
+        } finally {
+            if (!unlockOnCompletion) {
+                commitLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * The user's ratings that are not committed yet
+     *
+     * @return Whether each movie is liked, by movie ID
+     */
+    public Map<String, Boolean> pendingRatings(String userId) {
+        Map<String, PendingRating> ratings = pending.get(userId);
+        if (ratings == null || ratings.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, Boolean> liked = new HashMap<>();
+        ratings.forEach((movieId, rating) -> liked.put(movieId, rating.liked()));
+        return liked;
+    }
+
+    private void drain() {
+        List<QueuedFeedback> batch = new ArrayList<>(maxBatchSize);
+        while (running || !batch.isEmpty() || !queue.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    QueuedFeedback first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, maxBatchSize - 1);
+                }
+                try {
+                    commit(batch);
+                    batch.clear();
+                } catch (Exception e) {
+                    log.warn("Failed to commit {} queued feedback submissions, retrying one at a time: {}",
+                            batch.size(), e.getMessage());
+                    commitEach(batch);
+                }
+                if (batch.isEmpty()) {
+                    compactLog();
+                    continue;
+                }
+                if (!running) {
+                    break;
+                }
+                Thread.sleep(retryDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (!batch.isEmpty() || !queue.isEmpty()) {
+            log.warn("{} feedback submissions left uncommitted in {}", batch.size() + queue.size(), logFile);
+        }
+    }
+
+    /**
+     * Commits the submissions of a batch whose group commit failed one by one, removing those
+     * that are committed or dead-lettered from it. What is left is retried after the retry delay.
+     * Failures that mean the database is unreachable do not count as attempts and end the pass,
+     * so an outage never dead-letters anything.
+     */
+    private void commitEach(List<QueuedFeedback> batch) {
+        for (Iterator<QueuedFeedback> it = batch.iterator(); it.hasNext(); ) {
+            QueuedFeedback queued = it.next();
+            try {
+                commit(List.of(queued));
+                failedAttempts.remove(queued.sequence());
+                it.remove();
+            } catch (Exception e) {
+                if (e instanceof TransientDataAccessException || e instanceof DataAccessResourceFailureException) {
+                    return;
+                }
+                int attempts = failedAttempts.merge(queued.sequence(), 1, Integer::sum);
+                if (attempts >= maxAttempts) {
+                    log.error("Feedback submission of user {} failed {} commits, moving it to {}: {}",
+                            queued.event().userId(), attempts, deadLetterFile, e.getMessage());
+                    deadLetter(queued);
+                    failedAttempts.remove(queued.sequence());
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends a submission to the dead-letter file and drops its ratings from the overlay. It
+     * leaves the log at the next compaction.
+     */
+    private void deadLetter(QueuedFeedback queued) {
+        try (FileChannel channel = FileChannel.open(deadLetterFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            append(List.of(queued.event()), channel);
+            channel.force(false);
+        } catch (IOException e) {
+            log.error("Failed to write the dead-letter file {}, dropping {}", deadLetterFile, queued.event(), e);
+        }
+        deadLetters.increment();
+        untrack(queued);
+    }
+
+    /**
+     * Upserts the ratings of the batch that are still the latest for their user and movie, then
+     * drops them from the overlay.
+     */
+    private void commit(List<QueuedFeedback> batch) {
+        commitLock.lock();
+        try {
+            List<FeedbackEvent> current = new ArrayList<>(batch.size());
+            for (QueuedFeedback queued : batch) {
+                FeedbackEvent event = queued.event();
+                Map<String, PendingRating> ratings = pending.getOrDefault(event.userId(), Map.of());
+                List<String> movieIds = new ArrayList<>();
+                List<Boolean> liked = new ArrayList<>();
+                for (int i = 0; i < event.movieIds().size(); i++) {
+                    PendingRating rating = ratings.get(event.movieIds().get(i));
+                    if (rating != null && rating.sequence() == queued.sequence()) {
+                        movieIds.add(event.movieIds().get(i));
+                        liked.add(event.liked().get(i));
+                    }
+                }
+                if (!movieIds.isEmpty()) {
+                    current.add(new FeedbackEvent(event.userId(), movieIds, liked));
+                }
+            }
+            int stored = transactionTemplate.execute(status -> {
+                List<FeedbackChange> changes = feedbackRepository.upsertFeedback(current);
+                userProfileStore.applyFeedback(changes);
+                return changes.size();
+            });
+            commitBatch.record(batch.size());
+            log.debug("Committed {} feedback submissions ({} ratings stored)", batch.size(), stored);
+
+            for (QueuedFeedback queued : batch) {
+                untrack(queued);
+            }
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * Rejects submissions the writer could never store, before they reach the log: once logged,
+     * a submission is replayed on every start until it is committed.
+     *
+     * @throws IllegalArgumentException if the user ID is missing or too long, or a movie ID or
+     *         rating is missing
+     */
+    static void validate(FeedbackEvent event) {
+        if (event.userId() == null || event.userId().isEmpty()) {
+            throw new IllegalArgumentException("Feedback without a user ID");
+        }
+        if (event.userId().length() > MAX_USER_ID_LENGTH) {
+            throw new IllegalArgumentException("User ID longer than " + MAX_USER_ID_LENGTH + " characters");
+        }
+        if (event.movieIds() == null || event.liked() == null || event.movieIds().size() != event.liked().size()) {
+            throw new IllegalArgumentException("Feedback of user " + event.userId() + " without a rating per movie");
+        }
+        if (event.movieIds().stream().anyMatch(Objects::isNull) || event.liked().stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Feedback of user " + event.userId() + " with a missing movie ID or rating");
+        }
+    }
+
+    /**
+     * Puts the ratings of a write-through in place of the user's queued ratings of the same
+     * movies. The writer skips them, since no queued submission has their sequence.
+     *
+     * @return The replaced queued ratings, by movie ID
+     */
+    private Map<String, PendingRating> supersede(QueuedFeedback written) {
+        FeedbackEvent event = written.event();
+        Map<String, PendingRating> superseded = new HashMap<>();
+        pending.computeIfPresent(event.userId(), (userId, ratings) -> {
+            for (int i = 0; i < event.movieIds().size(); i++) {
+                String movieId = event.movieIds().get(i);
+                PendingRating previous = ratings.get(movieId);
+                if (previous == null) {
+                    continue;
+                }
+                ratings.put(movieId, new PendingRating(written.sequence(), event.liked().get(i)));
+                if (previous.sequence() != written.sequence()) {
+                    superseded.put(movieId, previous);
+                }
+            }
+            return ratings;
+        });
+        return superseded;
+    }
+
+    /**
+     * Brings back queued ratings a rolled back write-through replaced, unless a newer submission
+     * has replaced them since.
+     */
+    private void restore(QueuedFeedback written, Map<String, PendingRating> superseded) {
+        if (superseded.isEmpty()) {
+            return;
+        }
+        pending.compute(written.event().userId(), (userId, ratings) -> {
+            Map<String, PendingRating> updated = ratings != null ? ratings : new ConcurrentHashMap<>();
+            superseded.forEach((movieId, previous) -> {
+                PendingRating current = updated.get(movieId);
+                if (current == null || current.sequence() == written.sequence()) {
+                    updated.put(movieId, previous);
+                }
+            });
+            return updated;
+        });
+    }
+
+    /**
+     * Drops the ratings of a committed submission from the overlay, keeping newer ones.
+     */
+    private void untrack(QueuedFeedback queued) {
+        pending.computeIfPresent(queued.event().userId(), (userId, ratings) -> {
+            ratings.values().removeIf(rating -> rating.sequence() == queued.sequence());
+            return ratings.isEmpty() ? null : ratings;
+        });
+    }
+
+    private void track(QueuedFeedback queued) {
+        FeedbackEvent event = queued.event();
+        // Inside compute, so a commit cannot drop the user's map while it is being added to
+        pending.compute(event.userId(), (userId, ratings) -> {
+            Map<String, PendingRating> updated = ratings != null ? ratings : new ConcurrentHashMap<>();
+            for (int i = 0; i < event.movieIds().size(); i++) {
+                updated.put(event.movieIds().get(i), new PendingRating(queued.sequence(), event.liked().get(i)));
+            }
+            return updated;
+        });
+    }
+
+    /**
+     * Rewrites the log to the submissions still queued once it is empty or has grown past
+     * {@code compact-bytes}. Called by the writer after a commit, when nothing outside the
+     * queue is uncommitted.
+     */
+    private void compactLog() {
+        synchronized (logLock) {
+            try {
+                if (queue.isEmpty()) {
+                    logChannel.truncate(0);
+                    logChannel.force(true);
+                } else if (logChannel.size() >= compactBytes) {
+                    Path compacted = logFile.resolveSibling(logFile.getFileName() + ".tmp");
+                    try (FileChannel channel = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                        append(queue.stream().map(QueuedFeedback::event).toList(), channel);
+                        channel.force(true);
+                    }
+                    logChannel.close();
+                    Files.move(compacted, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    logChannel = openLog();
+                }
+            } catch (IOException e) {
+                log.warn("Failed to compact the feedback log {}: {}", logFile, e.getMessage());
+                if (!logChannel.isOpen()) {
+                    try {
+                        logChannel = openLog();
+                    } catch (IOException reopen) {
+                        log.error("Failed to reopen the feedback log {}", logFile, reopen);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues the submissions left in the log by the previous run. A torn last line from a crash
+     * mid-append is skipped, and so is any line {@link #validate(FeedbackEvent)} rejects.
+     */
+    private void replayLog() throws IOException {
+        Path directory = logFile.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        synchronized (logLock) {
+            if (Files.exists(logFile)) {
+                try (BufferedReader reader = Files.newBufferedReader(logFile, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.isBlank()) {
+                            continue;
+                        }
+                        try {
+                            FeedbackEvent event = objectMapper.readValue(line, FeedbackEvent.class);
+                            validate(event);
+                            QueuedFeedback queued = new QueuedFeedback(sequence.incrementAndGet(), event);
+                            if (!queue.offer(queued)) {
+                                throw new IllegalStateException("Feedback log " + logFile
+                                        + " holds more submissions than app.feedback.write-behind.capacity");
+                            }
+                            track(queued);
+                        } catch (IOException e) {
+                            log.warn("Skipping unreadable feedback log line: {}", e.getMessage());
+                        } catch (IllegalArgumentException e) {
+                            log.warn("Skipping invalid feedback log line: {}", e.getMessage());
+                        }
+                    }
+                }
+            }
+            logChannel = openLog();
+        }
+    }
+
+    private FileChannel openLog() throws IOException {
+        return FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void append(List<FeedbackEvent> events, FileChannel channel) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (FeedbackEvent event : events) {
+            lines.append(objectMapper.writeValueAsString(event)).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
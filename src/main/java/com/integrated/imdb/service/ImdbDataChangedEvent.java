@@ -0,0 +1,22 @@
+package com.integrated.imdb.service;
+
+import com.integrated.imdb.model.ImdbDataset;
+
+import java.util.Set;
+
+/**
+ * Published after IMDb tables have been reloaded or synced, so in-memory structures and caches
+ * derived from them can rebuild or invalidate.
+ *
+ * @param datasets The datasets whose tables changed
+ * @param changedTconsts The titles that changed, or null if the tables were fully reloaded
+ */
+public record ImdbDataChangedEvent(Set<ImdbDataset> datasets, Set<String> changedTconsts) {
+
+    /**
+     * @return true if every title may have changed
+     */
+    public boolean isFullReload() {
+        return changedTconsts == null;
+    }
+}
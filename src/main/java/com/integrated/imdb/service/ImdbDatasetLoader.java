@@ -0,0 +1,696 @@
+package com.integrated.imdb.service;
+
+import com.integrated.imdb.model.DatasetLoadProgress;
+import com.integrated.imdb.model.ImdbDataset;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Loads the IMDb {@code .tsv.gz} dumps into Postgres from inside the application.
+ * Each file is decompressed on the fly and streamed through the PGJDBC COPY API, so nothing is
+ * unpacked to disk. Independent tables load in parallel, each on its own connection.
+ * <p>
+ * A {@link Mode#FULL} load replaces a table in one transaction, dropping secondary indexes before
+ * the COPY and rebuilding them after it. A {@link Mode#DELTA} sync copies the dump into a temp
+ * table, diffs it against per-row hashes kept in {@code imdb_row_hash} and applies only the
+ * inserts, updates and deletes, in batches.
+ * <p>
+ * Files are read from {@code app.imdb.loader.source-dir}; downloading from
+ * {@code app.imdb.loader.base-url} is only attempted when explicitly enabled.
+ */
+@Service
+public class ImdbDatasetLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(ImdbDatasetLoader.class);
+    private static final int STREAM_BUFFER_BYTES = 1 << 16;
+    private static final String COPY_OPTIONS = " FROM STDIN WITH (FORMAT text, DELIMITER E'\\t', NULL '\\N')";
+
+    /**
+     * How a load applies a dump.
+     */
+    public enum Mode {
+        /** Truncate the table and bulk-copy the whole dump */
+        FULL,
+        /** Apply only the rows that changed since the last load or sync */
+        DELTA
+    }
+
+    /**
+     * Tables whose row triggers maintain {@code movie_search}. Full loads run with those triggers
+     * disabled and rebuild the search table once at the end instead.
+     */
+    private static final Set<ImdbDataset> SEARCH_SOURCES = EnumSet.of(ImdbDataset.TITLE_BASICS,
+            ImdbDataset.TITLE_RATINGS, ImdbDataset.TITLE_PRINCIPALS, ImdbDataset.NAME_BASICS);
+
+    private final DataSource dataSource;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    private final Path sourceDir;
+    private final String baseUrl;
+    private final boolean downloadEnabled;
+    private final int parallelism;
+    private final int syncBatchSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(namedThreads("imdb-load"));
+    private volatile Map<ImdbDataset, DatasetLoadProgress> progress = newProgress(EnumSet.noneOf(ImdbDataset.class));
+
+    public ImdbDatasetLoader(DataSource dataSource,
+                             ApplicationEventPublisher eventPublisher,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.imdb.loader.source-dir:data}") String sourceDir,
+                             @Value("${app.imdb.loader.base-url:https://datasets.imdbws.com/}") String baseUrl,
+                             @Value("${app.imdb.loader.download-enabled:false}") boolean downloadEnabled,
+                             @Value("${app.imdb.loader.parallelism:3}") int parallelism,
+                             @Value("${app.imdb.loader.sync-batch-size:10000}") int syncBatchSize) {
+        this.dataSource = dataSource;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+        this.sourceDir = Paths.get(sourceDir);
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        this.downloadEnabled = downloadEnabled;
+        this.parallelism = parallelism;
+        this.syncBatchSize = syncBatchSize;
+
+        for (ImdbDataset dataset : ImdbDataset.values()) {
+            String tag = dataset.getTableName();
+            Gauge.builder("imdb.loader.rows", this, loader -> loader.rowsOf(dataset, false))
+                    .description("Rows streamed by the current or last IMDb load")
+                    .tag("dataset", tag)
+                    .register(meterRegistry);
+            Gauge.builder("imdb.loader.rows.per.second", this, loader -> loader.rowsOf(dataset, true))
+                    .description("Average load throughput of the current or last IMDb load")
+                    .tag("dataset", tag)
+                    .register(meterRegistry);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+    }
+
+    /**
+     * Starts a full load of the given datasets in the background.
+     *
+     * @param datasets The datasets to load; all of them if empty
+     * @return false if a load is already running
+     */
+    public boolean startLoad(Set<ImdbDataset> datasets) {
+        return startLoad(datasets, Mode.FULL);
+    }
+
+    /**
+     * Starts loading the given datasets in the background.
+     *
+     * @param datasets The datasets to load; if empty, all of them (FULL) or all delta-capable ones (DELTA)
+     * @param mode Whether to reload the tables or apply only changed rows
+     * @return false if a load is already running
+     */
+    public boolean startLoad(Set<ImdbDataset> datasets, Mode mode) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        Set<ImdbDataset> selected = EnumSet.noneOf(ImdbDataset.class);
+        if (!datasets.isEmpty()) {
+            selected.addAll(datasets);
+        } else {
+            for (ImdbDataset dataset : ImdbDataset.values()) {
+                if (mode == Mode.FULL || dataset.supportsDeltaSync()) {
+                    selected.add(dataset);
+                }
+            }
+        }
+        progress = newProgress(selected);
+        coordinator.submit(() -> {
+            try {
+                loadAll(selected, mode);
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * @return Progress of the current or last load
+     */
+    public List<DatasetLoadProgress> getProgress() {
+        return new ArrayList<>(progress.values());
+    }
+
+    private void loadAll(Set<ImdbDataset> datasets, Mode mode) {
+        log.info("Loading IMDb datasets {} ({}) with parallelism {}", datasets, mode, parallelism);
+        ExecutorService workers = Executors.newFixedThreadPool(Math.min(parallelism, datasets.size()),
+                namedThreads("imdb-load-worker"));
+        Map<ImdbDataset, DatasetLoadProgress> current = progress;
+        Set<String> changedTconsts = ConcurrentHashMap.newKeySet();
+        try {
+            List<Future<?>> loads = new ArrayList<>();
+            for (ImdbDataset dataset : datasets) {
+                if (mode == Mode.FULL) {
+                    loads.add(workers.submit(() -> loadDataset(current.get(dataset))));
+                } else {
+                    loads.add(workers.submit(() -> syncDataset(current.get(dataset), changedTconsts)));
+                }
+            }
+            for (Future<?> load : loads) {
+                load.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("IMDb load interrupted");
+        } catch (Exception e) {
+            log.error("IMDb load failed", e);
+        } finally {
+            workers.shutdownNow();
+        }
+
+        Set<ImdbDataset> loaded = EnumSet.noneOf(ImdbDataset.class);
+        current.values().stream()
+                .filter(p -> p.getState() == DatasetLoadProgress.State.COMPLETED)
+                .forEach(p -> loaded.add(p.getDataset()));
+        if (mode == Mode.FULL && loaded.stream().anyMatch(SEARCH_SOURCES::contains)) {
+            rebuildMovieSearch();
+        }
+        if (mode == Mode.FULL && !loaded.isEmpty()) {
+            eventPublisher.publishEvent(new ImdbDataChangedEvent(loaded, null));
+        } else if (mode == Mode.DELTA && !changedTconsts.isEmpty()) {
+            eventPublisher.publishEvent(new ImdbDataChangedEvent(loaded, Set.copyOf(changedTconsts)));
+        }
+        log.info("IMDb {} load finished: {}", mode, loaded);
+    }
+
+    /**
+     * Recomputes {@code movie_search} from scratch after a full load.
+     */
+    private void rebuildMovieSearch() {
+        long start = System.currentTimeMillis();
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("SELECT movie_search_rebuild()");
+            stmt.execute("ANALYZE movie_search");
+            log.info("Rebuilt movie_search in {} ms", System.currentTimeMillis() - start);
+        } catch (SQLException e) {
+            log.error("Failed to rebuild movie_search", e);
+        }
+    }
+
+    private void loadDataset(DatasetLoadProgress datasetProgress) {
+        ImdbDataset dataset = datasetProgress.getDataset();
+        datasetProgress.start();
+        try (Connection conn = dataSource.getConnection()) {
+            if (!tableExists(conn, dataset.getTableName())) {
+                datasetProgress.finish(DatasetLoadProgress.State.SKIPPED, "Table does not exist");
+                return;
+            }
+            try (InputStream source = openSource(dataset)) {
+                if (source == null) {
+                    datasetProgress.finish(DatasetLoadProgress.State.SKIPPED,
+                            "No local file " + sourceDir.resolve(dataset.getFileName()));
+                    return;
+                }
+                copyIntoTable(conn, dataset, source, datasetProgress);
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ANALYZE " + dataset.getTableName());
+            }
+            datasetProgress.finish(DatasetLoadProgress.State.COMPLETED, null);
+            log.info("Loaded {} rows into {} in {} ms ({} rows/s)", datasetProgress.getRows(),
+                    dataset.getTableName(), datasetProgress.getElapsedMillis(),
+                    Math.round(datasetProgress.getRowsPerSecond()));
+        } catch (Exception e) {
+            log.error("Failed to load {}", dataset.getTableName(), e);
+            datasetProgress.finish(DatasetLoadProgress.State.FAILED, e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces the table contents in a single transaction: drop secondary indexes, truncate,
+     * COPY, rebuild indexes. A failure rolls everything back, leaving the previous data in place.
+     */
+    private void copyIntoTable(Connection conn, ImdbDataset dataset, InputStream source,
+                               DatasetLoadProgress datasetProgress) throws SQLException, IOException {
+        String table = dataset.getTableName();
+        CopyManager copyManager = conn.unwrap(PGConnection.class).getCopyAPI();
+        boolean originalAutoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            List<String> indexDefinitions = dropSecondaryIndexes(conn, table);
+            stmt.execute("TRUNCATE TABLE " + table);
+            // Row triggers would enqueue every loaded row; re-enabled before commit, so only this load skips them
+            stmt.execute("ALTER TABLE " + table + " DISABLE TRIGGER USER");
+
+            InputStream rows = new RowCountingInputStream(
+                    new GZIPInputStream(new CountingInputStream(source, datasetProgress), STREAM_BUFFER_BYTES),
+                    datasetProgress);
+            skipHeaderLine(rows);
+
+            if (dataset.containsDuplicateKeys() || dataset == ImdbDataset.TITLE_BASICS) {
+                String staging = table + "_staging";
+                stmt.execute("CREATE TEMP TABLE " + staging + " (LIKE " + table + " INCLUDING DEFAULTS) ON COMMIT DROP");
+                copyManager.copyIn("COPY " + staging + " (" + dataset.getColumns() + ")" + COPY_OPTIONS, rows);
+                stmt.execute(insertFromStaging(dataset, staging));
+            } else {
+                copyManager.copyIn("COPY " + table + " (" + dataset.getColumns() + ")" + COPY_OPTIONS, rows);
+            }
+
+            for (String indexDefinition : indexDefinitions) {
+                stmt.execute(indexDefinition);
+            }
+            if (dataset.supportsDeltaSync()) {
+                // Row hashes are reseeded from the reloaded table by the next delta sync
+                stmt.execute("DELETE FROM imdb_row_hash WHERE dataset = '" + table + "'");
+            }
+            stmt.execute("ALTER TABLE " + table + " ENABLE TRIGGER USER");
+            conn.commit();
+        } catch (SQLException | IOException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(originalAutoCommit);
+        }
+    }
+
+    private void syncDataset(DatasetLoadProgress datasetProgress, Set<String> changedTconsts) {
+        ImdbDataset dataset = datasetProgress.getDataset();
+        datasetProgress.start();
+        if (!dataset.supportsDeltaSync()) {
+            datasetProgress.finish(DatasetLoadProgress.State.SKIPPED, "Delta sync not supported");
+            return;
+        }
+        try (Connection conn = dataSource.getConnection()) {
+            if (!tableExists(conn, dataset.getTableName())) {
+                datasetProgress.finish(DatasetLoadProgress.State.SKIPPED, "Table does not exist");
+                return;
+            }
+            String summary;
+            try (InputStream source = openSource(dataset)) {
+                if (source == null) {
+                    datasetProgress.finish(DatasetLoadProgress.State.SKIPPED,
+                            "No local file " + sourceDir.resolve(dataset.getFileName()));
+                    return;
+                }
+                summary = applyDelta(conn, dataset, source, datasetProgress, changedTconsts);
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ANALYZE " + dataset.getTableName());
+            }
+            datasetProgress.finish(DatasetLoadProgress.State.COMPLETED, summary);
+            log.info("Synced {} in {} ms: {}", dataset.getTableName(), datasetProgress.getElapsedMillis(), summary);
+        } catch (Exception e) {
+            log.error("Failed to sync {}", dataset.getTableName(), e);
+            datasetProgress.finish(DatasetLoadProgress.State.FAILED, e.getMessage());
+        }
+    }
+
+    /**
+     * Copies the dump into a temp table, works out which keys were inserted, updated or deleted
+     * by comparing row hashes, then applies those changes in batches of {@code sync-batch-size},
+     * each in its own transaction together with the matching hash updates.
+     *
+     * @return A short summary of the applied changes
+     */
+    private String applyDelta(Connection conn, ImdbDataset dataset, InputStream source,
+                              DatasetLoadProgress datasetProgress, Set<String> changedTconsts)
+            throws SQLException, IOException {
+        String table = dataset.getTableName();
+        String key = dataset.getDeltaKeyColumn();
+        String staging = table + "_delta";
+        String changes = table + "_delta_changes";
+        String deletes = table + "_delta_deletes";
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS " + staging + ", " + changes + ", " + deletes);
+            stmt.execute("CREATE TEMP TABLE " + staging + " (LIKE " + table + " INCLUDING DEFAULTS)");
+
+            InputStream rows = new RowCountingInputStream(
+                    new GZIPInputStream(new CountingInputStream(source, datasetProgress), STREAM_BUFFER_BYTES),
+                    datasetProgress);
+            skipHeaderLine(rows);
+            conn.unwrap(PGConnection.class).getCopyAPI()
+                    .copyIn("COPY " + staging + " (" + dataset.getColumns() + ")" + COPY_OPTIONS, rows);
+            stmt.execute("CREATE INDEX ON " + staging + " (" + key + ")");
+            stmt.execute("ANALYZE " + staging);
+
+            seedRowHashesIfStale(conn, dataset);
+
+            stmt.execute("CREATE TEMP TABLE " + changes + " AS "
+                    + "SELECT s." + key + " AS row_key, " + rowHash(dataset, "s") + " AS row_hash "
+                    + "FROM " + staging + " s "
+                    + "LEFT JOIN imdb_row_hash h ON h.dataset = '" + table + "' AND h.row_key = s." + key + " "
+                    + "WHERE h.row_hash IS DISTINCT FROM " + rowHash(dataset, "s"));
+            stmt.execute("CREATE INDEX ON " + changes + " (row_key)");
+            stmt.execute("CREATE TEMP TABLE " + deletes + " AS "
+                    + "SELECT h.row_key FROM imdb_row_hash h "
+                    + "WHERE h.dataset = '" + table + "' "
+                    + "AND NOT EXISTS (SELECT 1 FROM " + staging + " s WHERE s." + key + " = h.row_key)");
+            stmt.execute("CREATE INDEX ON " + deletes + " (row_key)");
+
+            String upsertSql = "INSERT INTO " + table + " (" + dataset.getColumns() + ") "
+                    + "SELECT " + dataset.getColumns() + " FROM " + staging + " WHERE " + key + " = ANY(?) "
+                    + "ON CONFLICT (" + key + ") DO UPDATE SET " + updateAssignments(dataset);
+            String upsertHashSql = "INSERT INTO imdb_row_hash (dataset, row_key, row_hash) "
+                    + "SELECT '" + table + "', row_key, row_hash FROM " + changes + " WHERE row_key = ANY(?) "
+                    + "ON CONFLICT (dataset, row_key) DO UPDATE SET row_hash = EXCLUDED.row_hash";
+            long upserted = applyInBatches(conn, dataset, changes, changedTconsts, "upsert", upsertSql, upsertHashSql);
+
+            String deleteSql = "DELETE FROM " + table + " WHERE " + key + " = ANY(?)";
+            String deleteHashSql = "DELETE FROM imdb_row_hash WHERE dataset = '" + table + "' AND row_key = ANY(?)";
+            long deleted = applyInBatches(conn, dataset, deletes, changedTconsts, "delete", deleteSql, deleteHashSql);
+
+            return upserted + " inserted or updated, " + deleted + " deleted";
+        } finally {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("DROP TABLE IF EXISTS " + staging + ", " + changes + ", " + deletes);
+            }
+        }
+    }
+
+    /**
+     * Walks the keys of a temp change table in key order and runs the given statements for each
+     * batch of keys inside one transaction.
+     *
+     * @return Number of keys applied
+     */
+    private long applyInBatches(Connection conn, ImdbDataset dataset, String keyTable, Set<String> changedTconsts,
+                                String changeType, String... statements) throws SQLException {
+        long applied = 0;
+        String lastKey = "";
+        boolean originalAutoCommit = conn.getAutoCommit();
+        try (PreparedStatement next = conn.prepareStatement(
+                "SELECT row_key FROM " + keyTable + " WHERE row_key > ? ORDER BY row_key LIMIT ?")) {
+            while (true) {
+                List<String> keys = new ArrayList<>(syncBatchSize);
+                next.setString(1, lastKey);
+                next.setInt(2, syncBatchSize);
+                try (ResultSet rs = next.executeQuery()) {
+                    while (rs.next()) {
+                        keys.add(rs.getString(1));
+                    }
+                }
+                if (keys.isEmpty()) {
+                    break;
+                }
+
+                Array keyArray = conn.createArrayOf("text", keys.toArray());
+                conn.setAutoCommit(false);
+                try {
+                    for (String sql : statements) {
+                        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                            ps.setArray(1, keyArray);
+                            ps.executeUpdate();
+                        }
+                    }
+                    conn.commit();
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(originalAutoCommit);
+                }
+
+                changedTconsts.addAll(keys);
+                applied += keys.size();
+                lastKey = keys.get(keys.size() - 1);
+                Counter.builder("imdb.sync.rows")
+                        .description("Rows changed by IMDb delta syncs")
+                        .tag("dataset", dataset.getTableName())
+                        .tag("change", changeType)
+                        .register(meterRegistry)
+                        .increment(keys.size());
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Rebuilds the stored hashes from the live table when they cannot describe it, e.g. before
+     * the first sync or after the table was reloaded outside of a delta sync.
+     */
+    private void seedRowHashesIfStale(Connection conn, ImdbDataset dataset) throws SQLException {
+        String table = dataset.getTableName();
+        long hashCount;
+        long rowCount;
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT count(*) FROM imdb_row_hash WHERE dataset = '" + table + "'")) {
+                rs.next();
+                hashCount = rs.getLong(1);
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT count(*) FROM " + table)) {
+                rs.next();
+                rowCount = rs.getLong(1);
+            }
+        }
+        if (hashCount == rowCount) {
+            return;
+        }
+
+        log.info("Seeding row hashes for {} ({} hashes, {} rows)", table, hashCount, rowCount);
+        boolean originalAutoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM imdb_row_hash WHERE dataset = '" + table + "'");
+            stmt.execute("INSERT INTO imdb_row_hash (dataset, row_key, row_hash) "
+                    + "SELECT '" + table + "', t." + dataset.getDeltaKeyColumn() + ", " + rowHash(dataset, "t")
+                    + " FROM " + table + " t");
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(originalAutoCommit);
+        }
+    }
+
+    /**
+     * SQL expression for the 64-bit row hash: the first 16 hex digits of md5 over the row's text form.
+     */
+    private static String rowHash(ImdbDataset dataset, String alias) {
+        StringBuilder row = new StringBuilder();
+        for (String column : dataset.getColumns().split(",\\s*")) {
+            row.append(row.length() == 0 ? "" : ", ").append(alias).append('.').append(column);
+        }
+        return "('x' || substr(md5(ROW(" + row + ")::text), 1, 16))::bit(64)::bigint";
+    }
+
+    /**
+     * Moves the staged rows into the table. title_basics rows get the genre_mask their row trigger,
+     * disabled for the load, would have set; it is computed once per distinct genre list, so the
+     * table is written once instead of being COPYed and then rewritten by an UPDATE.
+     */
+    private static String insertFromStaging(ImdbDataset dataset, String staging) {
+        String table = dataset.getTableName();
+        if (dataset == ImdbDataset.TITLE_BASICS) {
+            StringBuilder columns = new StringBuilder();
+            for (String column : dataset.getColumns().split(",\\s*")) {
+                columns.append(columns.length() == 0 ? "" : ", ").append("s.").append(column);
+            }
+            return "INSERT INTO " + table + " (" + dataset.getColumns() + ", genre_mask) "
+                    + "SELECT " + columns + ", COALESCE(m.mask, 0) FROM " + staging + " s "
+                    + "LEFT JOIN (SELECT d.genres, genre_mask_of(d.genres) AS mask "
+                    + "FROM (SELECT DISTINCT genres FROM " + staging + " WHERE genres IS NOT NULL) d) m "
+                    + "ON m.genres = s.genres";
+        }
+        return "INSERT INTO " + table + " (" + dataset.getColumns() + ") "
+                + "SELECT " + dataset.getColumns() + " FROM " + staging + " ON CONFLICT DO NOTHING";
+    }
+
+    private static String updateAssignments(ImdbDataset dataset) {
+        StringBuilder assignments = new StringBuilder();
+        for (String column : dataset.getColumns().split(",\\s*")) {
+            if (!column.equals(dataset.getDeltaKeyColumn())) {
+                assignments.append(assignments.length() == 0 ? "" : ", ")
+                        .append(column).append(" = EXCLUDED.").append(column);
+            }
+        }
+        return assignments.toString();
+    }
+
+    /**
+     * Drops indexes that do not back a constraint and returns their definitions for rebuilding.
+     */
+    private List<String> dropSecondaryIndexes(Connection conn, String table) throws SQLException {
+        List<String> definitions = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement("""
+                SELECT i.indexname, i.indexdef
+                FROM pg_indexes i
+                WHERE i.schemaname = current_schema() AND i.tablename = ?
+                AND NOT EXISTS (
+                    SELECT 1 FROM pg_constraint c
+                    WHERE c.conname = i.indexname AND c.conrelid = to_regclass(i.tablename)
+                )
+                """)) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    names.add(rs.getString("indexname"));
+                    definitions.add(rs.getString("indexdef"));
+                }
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            for (String name : names) {
+                stmt.execute("DROP INDEX IF EXISTS \"" + name + "\"");
+            }
+        }
+        return definitions;
+    }
+
+    private boolean tableExists(Connection conn, String table) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT to_regclass(?) IS NOT NULL")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    /**
+     * Opens the compressed dump: the local file if present, otherwise a streamed download if enabled.
+     *
+     * @return The stream, or null if the dataset is unavailable
+     */
+    private InputStream openSource(ImdbDataset dataset) throws IOException {
+        Path local = sourceDir.resolve(dataset.getFileName());
+        if (Files.isRegularFile(local)) {
+            return new BufferedInputStream(Files.newInputStream(local), STREAM_BUFFER_BYTES);
+        }
+        if (downloadEnabled) {
+            log.info("Streaming {} from {}", dataset.getFileName(), baseUrl);
+            return new BufferedInputStream(URI.create(baseUrl + dataset.getFileName()).toURL().openStream(),
+                    STREAM_BUFFER_BYTES);
+        }
+        return null;
+    }
+
+    private static void skipHeaderLine(InputStream in) throws IOException {
+        int b;
+        do {
+            b = in.read();
+        } while (b != -1 && b != '\n');
+    }
+
+    private double rowsOf(ImdbDataset dataset, boolean perSecond) {
+        DatasetLoadProgress datasetProgress = progress.get(dataset);
+        if (datasetProgress == null) {
+            return 0;
+        }
+        return perSecond ? datasetProgress.getRowsPerSecond() : datasetProgress.getRows();
+    }
+
+    private static Map<ImdbDataset, DatasetLoadProgress> newProgress(Set<ImdbDataset> datasets) {
+        Map<ImdbDataset, DatasetLoadProgress> map = new EnumMap<>(ImdbDataset.class);
+        datasets.forEach(dataset -> map.put(dataset, new DatasetLoadProgress(dataset)));
+        return map;
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Counts compressed bytes read from the source.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private final DatasetLoadProgress progress;
+
+        CountingInputStream(InputStream in, DatasetLoadProgress progress) {
+            super(in);
+            this.progress = progress;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                progress.addCompressedBytes(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException {
+            int n = super.read(buffer, off, len);
+            if (n > 0) {
+                progress.addCompressedBytes(n);
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Counts TSV rows (newlines) as the decompressed stream is handed to COPY.
+     */
+    private static class RowCountingInputStream extends FilterInputStream {
+        private final DatasetLoadProgress progress;
+
+        RowCountingInputStream(InputStream in, DatasetLoadProgress progress) {
+            super(in);
+            this.progress = progress;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException {
+            int n = super.read(buffer, off, len);
+            long lines = 0;
+            for (int i = off; i < off + n; i++) {
+                if (buffer[i] == '\n') {
+                    lines++;
+                }
+            }
+            if (lines > 0) {
+                progress.addRows(lines);
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.integrated.imdb.service;
+
+import com.integrated.imdb.model.ImdbDataset;
+import com.integrated.imdb.model.LikedMovieFeatures;
+import com.integrated.imdb.model.ScoredMovie;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Scores movies against an in-memory {@link RecommendationCatalog} of every eligible movie.
+ * The catalog is built in the background at startup and after IMDb data loads, then swapped in
+ * atomically; until the first build finishes no recommendations are returned.
+ */
+@Component
+@ConditionalOnProperty(name = "app.recommendations.engine", havingValue = "memory")
+public class InMemoryRecommendationEngine implements RecommendationEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemoryRecommendationEngine.class);
+
+    private static final Set<ImdbDataset> SOURCE_DATASETS = EnumSet.of(ImdbDataset.TITLE_BASICS,
+            ImdbDataset.TITLE_RATINGS, ImdbDataset.TITLE_PRINCIPALS);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int minVotes;
+
+    private volatile RecommendationCatalog catalog = RecommendationCatalog.empty();
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+    private final ExecutorService builder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "recommendation-catalog-build");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public InMemoryRecommendationEngine(JdbcTemplate jdbcTemplate,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${app.recommendations.min-votes:1000}") int minVotes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.minVotes = minVotes;
+        Gauge.builder("movies.recommendations.catalog.heap.bytes", this, engine -> engine.catalog.estimatedHeapBytes())
+                .description("Approximate heap retained by the in-memory recommendation catalog")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("movies.recommendations.catalog.entries", this, engine -> engine.catalog.size())
+                .description("Movies in the in-memory recommendation catalog")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        builder.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        requestRebuild();
+    }
+
+    @EventListener
+    public void onImdbDataChanged(ImdbDataChangedEvent event) {
+        if (event.datasets().stream().anyMatch(SOURCE_DATASETS::contains)) {
+            requestRebuild();
+        }
+    }
+
+    @Override
+    public String name() {
+        return "memory";
+    }
+
+    @Override
+    public List<ScoredMovie> recommend(LikedMovieFeatures features, Map<String, Double> coLikeScores,
+                                       Set<String> excludedTconsts, int limit) {
+        return catalog.recommend(features.genres(), features.actors().keySet(), coLikeScores, excludedTconsts, limit);
+    }
+
+    /**
+     * Queues a rebuild unless one is already waiting to start.
+     */
+    public void requestRebuild() {
+        if (rebuildQueued.compareAndSet(false, true)) {
+            builder.submit(() -> {
+                rebuildQueued.set(false);
+                rebuild();
+            });
+        }
+    }
+
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        try {
+            RecommendationCatalog.Builder catalogBuilder = new RecommendationCatalog.Builder();
+            jdbcTemplate.query("""
+                SELECT t.tconst, t.genres, r.average_rating, r.num_votes
+                FROM title_basics t
+                JOIN title_ratings r ON t.tconst = r.tconst
+                WHERE t.title_type = 'movie' AND r.num_votes > ?
+                ORDER BY substr(t.tconst, 3)::int
+                """,
+                rs -> {
+                    catalogBuilder.addMovie(rs.getString(1), rs.getString(2), rs.getDouble(3), rs.getInt(4));
+                },
+                minVotes);
+            jdbcTemplate.query("""
+                SELECT p.tconst, p.nconst
+                FROM title_principals p
+                JOIN title_basics t ON t.tconst = p.tconst AND t.title_type = 'movie'
+                JOIN title_ratings r ON r.tconst = p.tconst
+                WHERE p.category IN ('actor', 'actress') AND r.num_votes > ?
+                """,
+                rs -> {
+                    catalogBuilder.addActor(rs.getString(1), rs.getString(2));
+                },
+                minVotes);
+
+            RecommendationCatalog rebuilt = catalogBuilder.build();
+            catalog = rebuilt;
+            log.info("Recommendation catalog rebuilt in {} ms: {} movies, ~{} KB", System.currentTimeMillis() - start,
+                    rebuilt.size(), rebuilt.estimatedHeapBytes() / 1024);
+        } catch (Exception e) {
+            log.warn("Failed to rebuild recommendation catalog, keeping the previous one: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.integrated.imdb.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Background worker that keeps the co-like neighbor lists in {@code item_neighbors} current.
+ * Statement triggers on {@code user_feedback} append like and co-like count deltas to
+ * {@code item_co_like_deltas}. Each run first folds up to {@code fold-batch-size} of them into the
+ * counters at a time, which enqueues the affected movies in {@code item_neighbors_queue}, then
+ * claims up to {@code batch-size} queued movies with {@code SKIP LOCKED} and recomputes just their
+ * neighbor lists. Feedback transactions never wait on the shared counters.
+ */
+@Component
+public class ItemNeighborIndexer {
+
+    private static final Logger log = LoggerFactory.getLogger(ItemNeighborIndexer.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int foldBatchSize;
+    private final int maxBatchesPerRun;
+    private final Counter foldedDeltas;
+    private final QueueDrainer drainer;
+
+    public ItemNeighborIndexer(JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.recommendations.co-likes.batch-size:500}") int batchSize,
+                               @Value("${app.recommendations.co-likes.fold-batch-size:20000}") int foldBatchSize,
+                               @Value("${app.recommendations.co-likes.max-batches-per-run:20}") int maxBatchesPerRun,
+                               @Value("${app.recommendations.co-likes.neighbors:50}") int neighbors) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.foldBatchSize = foldBatchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.foldedDeltas = Counter.builder("movies.recommendations.co-likes.folded")
+                .description("Like and co-like count deltas folded into the counters")
+                .register(meterRegistry);
+        this.drainer = new QueueDrainer(jdbcTemplate, new TransactionTemplate(transactionManager),
+                "item_neighbors_queue", "movie_id", batchSize, maxBatchesPerRun,
+                movieIds -> jdbcTemplate.queryForObject("SELECT item_neighbors_refresh(?::text[], ?)", Integer.class,
+                        movieIds, neighbors),
+                Counter.builder("movies.recommendations.neighbors.movies")
+                        .description("Movies whose co-like neighbor list was recomputed")
+                        .register(meterRegistry),
+                Timer.builder("movies.recommendations.neighbors.batch")
+                        .description("Time to claim and refresh one batch of queued neighbor lists")
+                        .register(meterRegistry));
+    }
+
+    @Scheduled(initialDelayString = "${app.recommendations.co-likes.interval-ms:2000}",
+               fixedDelayString = "${app.recommendations.co-likes.interval-ms:2000}")
+    public void run() {
+        try {
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                if (foldDeltas() < foldBatchSize) {
+                    break;
+                }
+            }
+            drainer.drain();
+        } catch (Exception e) {
+            log.warn("Co-like neighbor refresh failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return Number of deltas folded
+     */
+    private int foldDeltas() {
+        Integer folded = jdbcTemplate.queryForObject("SELECT item_co_likes_fold(?)", Integer.class, foldBatchSize);
+        if (folded == null || folded == 0) {
+            return 0;
+        }
+        foldedDeltas.increment(folded);
+        log.debug("Folded {} co-like count deltas", folded);
+        return folded;
+    }
+}
@@ -0,0 +1,54 @@
+package com.integrated.imdb.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Background worker that keeps {@code movie_search} current.
+ * Row triggers on the IMDb tables enqueue changed titles in {@code movie_search_queue}; each
+ * run claims up to {@code batch-size} of them with {@code SKIP LOCKED} and recomputes just those
+ * search rows in the same transaction, so a failed batch goes back to the queue.
+ */
+@Component
+public class MovieSearchIndexer {
+
+    private static final Logger log = LoggerFactory.getLogger(MovieSearchIndexer.class);
+
+    private final QueueDrainer drainer;
+
+    public MovieSearchIndexer(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.search.indexer.batch-size:1000}") int batchSize,
+                              @Value("${app.search.indexer.max-batches-per-run:50}") int maxBatchesPerRun) {
+        this.drainer = new QueueDrainer(jdbcTemplate, new TransactionTemplate(transactionManager),
+                "movie_search_queue", "tconst", batchSize, maxBatchesPerRun,
+                tconsts -> jdbcTemplate.queryForObject("SELECT movie_search_refresh(?::text[])", Integer.class,
+                        (Object) tconsts),
+                Counter.builder("movies.search.index.titles")
+                        .description("Titles whose movie_search row was recomputed")
+                        .register(meterRegistry),
+                Timer.builder("movies.search.index.batch")
+                        .description("Time to claim and refresh one batch of queued titles")
+                        .register(meterRegistry));
+    }
+
+    @Scheduled(initialDelayString = "${app.search.indexer.interval-ms:2000}",
+               fixedDelayString = "${app.search.indexer.interval-ms:2000}")
+    public void run() {
+        try {
+            drainer.drain();
+        } catch (Exception e) {
+            log.warn("Movie search refresh failed: {}", e.getMessage());
+        }
+    }
+}
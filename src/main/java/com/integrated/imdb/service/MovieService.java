@@ -1,13 +1,41 @@
 package com.integrated.imdb.service;
 
+import com.integrated.imdb.dto.CompactMovieDto;
 import com.integrated.imdb.dto.MovieDto;
+import com.integrated.imdb.dto.MoviePage;
+import com.integrated.imdb.dto.MovieView;
+import com.integrated.imdb.dto.OmdbMovieDetails;
+import com.integrated.imdb.dto.SearchMode;
+import com.integrated.imdb.model.ImdbDataset;
+import com.integrated.imdb.model.MovieDetailsRecord;
+import com.integrated.imdb.model.MovieCursor;
+import com.integrated.imdb.model.MovieRecord;
 import com.integrated.imdb.repository.MovieRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -22,150 +50,496 @@ public class MovieService {
 
     private final MovieRepository movieRepository;
     private final OmdbClient omdbClient;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * OMDb lookups fan out on virtual threads; the semaphores cap how many run at once
+     * across the whole service and within a single request.
+     */
+    private final ExecutorService enrichmentExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore globalEnrichmentPermits;
+    private final int perRequestConcurrency;
+    private final Duration enrichmentDeadline;
+    private final Counter partialEnrichments;
+
+    /**
+     * Enriched top rated movies, replaced as a whole on refresh so readers never lock or query.
+     * Null until the first refresh has finished.
+     */
+    private volatile List<MovieDto> topRatedSnapshot;
+    private volatile long topRatedSnapshotMillis;
+    private volatile boolean topRatedSnapshotPartial;
+    /**
+     * Held while the snapshot is built, so builds never overlap and an older one cannot replace a newer one.
+     */
+    private final ReentrantLock topRatedRefreshLock = new ReentrantLock();
+    private final Duration topRatedDeadline;
+    private final Duration topRatedRefreshInterval;
     
     private static final int DEFAULT_MOVIE_LIMIT = 20;
     /**
      * Minimum number of votes a movie must have to be considered for recommendations.
      * This helps filter out less popular or less rated movies.
      */
-    private static final int MIN_VOTES_THRESHOLD = 1000; // Minimum votes to consider a movie for recommendations
+    static final int MIN_VOTES_THRESHOLD = 1000; // Minimum votes to consider a movie for recommendations
 
     /**
      * Constructs a new MovieService with the required dependencies.
      * 
      * @param movieRepository The repository for movie data access
      * @param omdbClient The client for OMDb API integration
+     * @param meterRegistry The registry for enrichment metrics
+     * @param maxConcurrency Maximum concurrent OMDb lookups across all requests
+     * @param perRequestConcurrency Maximum concurrent OMDb lookups within one request
+     * @param deadlineMs Time budget for enriching one response, in milliseconds
+     * @param topRatedDeadlineMs Time budget for enriching the top rated snapshot, in milliseconds
+     * @param topRatedRefreshIntervalMs Age at which the top rated snapshot is rebuilt, in milliseconds
      */
     @Autowired
-    public MovieService(MovieRepository movieRepository, OmdbClient omdbClient) {
+    public MovieService(MovieRepository movieRepository,
+                        OmdbClient omdbClient,
+                        MeterRegistry meterRegistry,
+                        @Value("${app.omdb.enrichment.max-concurrency:32}") int maxConcurrency,
+                        @Value("${app.omdb.enrichment.per-request-concurrency:8}") int perRequestConcurrency,
+                        @Value("${app.omdb.enrichment.deadline-ms:2000}") long deadlineMs,
+                        @Value("${app.top-rated.enrichment-deadline-ms:60000}") long topRatedDeadlineMs,
+                        @Value("${app.top-rated.refresh-interval-ms:600000}") long topRatedRefreshIntervalMs) {
         this.movieRepository = movieRepository;
         this.omdbClient = omdbClient;
+        this.meterRegistry = meterRegistry;
+        this.globalEnrichmentPermits = new Semaphore(maxConcurrency);
+        this.perRequestConcurrency = perRequestConcurrency;
+        this.enrichmentDeadline = Duration.ofMillis(deadlineMs);
+        this.topRatedDeadline = Duration.ofMillis(topRatedDeadlineMs);
+        this.topRatedRefreshInterval = Duration.ofMillis(topRatedRefreshIntervalMs);
+        this.partialEnrichments = Counter.builder("omdb.enrichment.partial")
+                .description("Rows served with default OMDb values because enrichment missed the deadline")
+                .register(meterRegistry);
+        Gauge.builder("movies.top_rated.snapshot.age", this,
+                        service -> service.topRatedSnapshotMillis == 0
+                                ? Double.NaN
+                                : (System.currentTimeMillis() - service.topRatedSnapshotMillis) / 1000d)
+                .description("Seconds since the top rated snapshot was refreshed")
+                .baseUnit("seconds")
+                .register(meterRegistry);
         log.info("MovieService initialized with repository: {}", movieRepository != null ? "present" : "null");
     }
 
+    @PreDestroy
+    public void shutdown() {
+        enrichmentExecutor.shutdownNow();
+    }
+
     /**
      * Get top movies by actor with plot details
      */
     public List<MovieDto> getTopMoviesByActor(String actor, int limit) {
+        return getTopMoviesByActor(actor, limit, MovieView.FULL);
+    }
+
+    /**
+     * Get top movies by actor in the requested view
+     */
+    public List<MovieDto> getTopMoviesByActor(String actor, int limit, MovieView view) {
         log.info("Fetching top {} movies for actor: {}", limit, actor);
-        List<Map<String, Object>> movies = movieRepository.findTopMoviesByActor(actor, limit);
-        return enrichMoviesWithOmdb(movies);
+        List<MovieRecord> movies = movieRepository.findTopMoviesByActor(actor, limit);
+        return toMovieDtos(movies, view);
     }
 
     /**
      * Search movies by title with plot details
      */
     public List<MovieDto> searchMoviesByTitle(String title, int limit) {
+        return searchMoviesByTitle(title, limit, MovieView.FULL);
+    }
+
+    /**
+     * Search movies by title in the requested view
+     */
+    public List<MovieDto> searchMoviesByTitle(String title, int limit, MovieView view) {
         log.info("Searching movies with title: {}", title);
-        List<Map<String, Object>> movies = movieRepository.searchMoviesByTitle(title, limit);
-        return enrichMoviesWithOmdb(movies);
+        List<MovieRecord> movies = movieRepository.searchMoviesByTitle(title, limit);
+        return toMovieDtos(movies, view);
     }
 
     /**
-     * Get top rated movies with plot details
+     * Search movies by title with the given search strategy. FULLTEXT and TRIGRAM results are
+     * ordered by relevance; AUTO picks a strategy from the query shape and falls back to
+     * trigram matching when a full-text query matches nothing, e.g. because it only has stop words.
+     *
+     * @param title The search query
+     * @param limit Maximum number of movies to return
+     * @param view Projection of the returned movies
+     * @param mode Search strategy
+     * @return Matching movies
      */
+    public List<MovieDto> searchMoviesByTitle(String title, int limit, MovieView view, SearchMode mode) {
+        SearchMode resolved = mode.resolve(title);
+        log.info("Searching movies with title: {} (mode: {})", title, resolved);
+        List<MovieRecord> movies = timedSearch(resolved, () -> switch (resolved) {
+            case FULLTEXT -> movieRepository.searchMoviesFullText(title, limit);
+            case TRIGRAM -> movieRepository.searchMoviesByTrigram(title, limit);
+            default -> movieRepository.searchMoviesByTitle(title, limit);
+        });
+        if (movies.isEmpty() && mode == SearchMode.AUTO && resolved == SearchMode.FULLTEXT) {
+            movies = timedSearch(SearchMode.TRIGRAM, () -> movieRepository.searchMoviesByTrigram(title, limit));
+        }
+        return toMovieDtos(movies, view);
+    }
+
+    private List<MovieRecord> timedSearch(SearchMode mode, Supplier<List<MovieRecord>> search) {
+        return Timer.builder("movies.search")
+                .description("Title search latency by search mode")
+                .tag("mode", mode.name().toLowerCase())
+                .register(meterRegistry)
+                .record(search);
+    }
+
     /**
-     * Get top rated movies with plot details
+     * Get one page of movies matching a title, or of top rated movies if no title is given.
+     * Pages are addressed by an opaque cursor rather than an offset.
+     *
+     * @param title Title substring to match, or null/blank for top rated movies
+     * @param cursor Cursor returned with the previous page, or null for the first page
+     * @param size Maximum number of movies on the page
+     * @param view Projection of the returned movies
+     * @return The page and the cursor of the next page
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public MoviePage getMoviesPage(String title, String cursor, int size, MovieView view) {
+        MovieCursor after = cursor == null || cursor.isBlank() ? null : MovieCursor.decode(cursor);
+        boolean hasTitle = title != null && !title.trim().isEmpty();
+        int pageSize = hasTitle ? size : Math.min(size, DEFAULT_MOVIE_LIMIT);
+        log.info("Fetching movie page for title: {}, size: {}, after: {}", title, pageSize, after);
+
+        List<MovieDto> snapshot = topRatedSnapshot;
+        if (!hasTitle && after == null && snapshot != null && pageSize > 0) {
+            List<MovieDto> page = snapshot.subList(0, Math.min(pageSize, snapshot.size()));
+            MovieDto last = page.isEmpty() ? null : page.get(page.size() - 1);
+            String nextCursor = page.size() == pageSize && last != null
+                    ? new MovieCursor(last.getAverageRating(), last.getNumVotes(), last.getTconst()).encode()
+                    : null;
+            List<MovieDto> movies = page.stream()
+                    .map(view == MovieView.COMPACT ? MovieService::toCompact : MovieDto::new)
+                    .collect(Collectors.toList());
+            return new MoviePage(movies, nextCursor);
+        }
+
+        List<MovieRecord> movies = movieRepository.findMoviesPage(
+                hasTitle ? title.trim() : null, hasTitle ? 0 : MIN_VOTES_THRESHOLD, after, pageSize);
+        String nextCursor = movies.size() == pageSize && pageSize > 0
+                ? MovieCursor.after(movies.get(movies.size() - 1)).encode()
+                : null;
+        return new MoviePage(toMovieDtos(movies, view), nextCursor);
+    }
+
+    /**
+     * Get top rated movies with plot details.
+     * Served from the in-memory snapshot once it has been built; callers get copies of the
+     * snapshot's movies and may modify them.
      * 
      * @param limit Maximum number of movies to return
      * @return List of top rated movies as DTOs
      */
     public List<MovieDto> getTopRatedMovies(int limit) {
-        log.info("Fetching top {} rated movies with minimum {} votes", limit, MIN_VOTES_THRESHOLD);
         // Ensure we don't exceed our default limit
         int actualLimit = Math.min(limit, DEFAULT_MOVIE_LIMIT);
-        List<Map<String, Object>> movies = movieRepository.getTopRatedMovies(actualLimit, MIN_VOTES_THRESHOLD);
+        List<MovieDto> snapshot = topRatedSnapshot;
+        if (snapshot != null) {
+            return snapshot.stream()
+                    .limit(Math.max(actualLimit, 0))
+                    .map(MovieDto::new)
+                    .collect(Collectors.toList());
+        }
+        log.info("Fetching top {} rated movies with minimum {} votes", limit, MIN_VOTES_THRESHOLD);
+        List<MovieRecord> movies = movieRepository.getTopRatedMovies(actualLimit, MIN_VOTES_THRESHOLD);
         return enrichMoviesWithOmdb(movies);
     }
 
+    /**
+     * Rebuilds the enriched top rated snapshot and swaps it in. Runs once the application is
+     * ready, after ratings or titles are loaded, and from {@link #refreshTopRatedSnapshotIfDue()}.
+     * The snapshot is built off the request path, so it gets {@code app.top-rated.enrichment-deadline-ms}
+     * rather than the per-request enrichment deadline.
+     */
+    public void refreshTopRatedSnapshot() {
+        topRatedRefreshLock.lock();
+        try {
+            long start = System.currentTimeMillis();
+            List<MovieRecord> movies = movieRepository.getTopRatedMovies(DEFAULT_MOVIE_LIMIT, MIN_VOTES_THRESHOLD);
+            List<MovieDto> snapshot = List.copyOf(enrichMoviesWithOmdb(movies, topRatedDeadline));
+            topRatedSnapshotPartial = snapshot.stream().anyMatch(MovieDto::isPartiallyEnriched);
+            topRatedSnapshot = snapshot;
+            topRatedSnapshotMillis = System.currentTimeMillis();
+            log.debug("Top rated snapshot refreshed with {} movies in {} ms (partial: {})", movies.size(),
+                    topRatedSnapshotMillis - start, topRatedSnapshotPartial);
+        } catch (Exception e) {
+            log.warn("Failed to refresh top rated snapshot, keeping the previous one: {}", e.getMessage());
+        } finally {
+            topRatedRefreshLock.unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the snapshot once it is older than {@code app.top-rated.refresh-interval-ms}, and
+     * early while it has partially enriched movies, e.g. because OMDb was unavailable. Skipped
+     * while another build is running.
+     */
+    @Scheduled(initialDelayString = "${app.top-rated.partial-retry-ms:30000}",
+               fixedDelayString = "${app.top-rated.partial-retry-ms:30000}")
+    public void refreshTopRatedSnapshotIfDue() {
+        if (!topRatedRefreshLock.tryLock()) {
+            return;
+        }
+        try {
+            long age = System.currentTimeMillis() - topRatedSnapshotMillis;
+            if (topRatedSnapshot == null || topRatedSnapshotPartial || age >= topRatedRefreshInterval.toMillis()) {
+                refreshTopRatedSnapshot();
+            }
+        } finally {
+            topRatedRefreshLock.unlock();
+        }
+    }
+
+    /**
+     * Builds the first snapshot after startup runners such as the database initializer have
+     * finished, off the event thread so the other ready listeners are not held up.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        enrichmentExecutor.execute(this::refreshTopRatedSnapshot);
+    }
+
+    /**
+     * Rebuilds the snapshot after ratings or titles are loaded, off the loader thread.
+     */
+    @EventListener
+    public void onImdbDataChanged(ImdbDataChangedEvent event) {
+        if (event.datasets().contains(ImdbDataset.TITLE_RATINGS) || event.datasets().contains(ImdbDataset.TITLE_BASICS)) {
+            enrichmentExecutor.execute(this::refreshTopRatedSnapshot);
+        }
+    }
+
     /**
      * Get movie details by ID with full OMDb enrichment
      */
     public MovieDto getMovieById(String tconst) {
         log.info("Fetching movie details for: {}", tconst);
-        Map<String, Object> movie = movieRepository.findMovieById(tconst);
-        if (movie == null) {
-            return null;
+        List<MovieDto> movies = getMoviesByIds(List.of(tconst));
+        return movies.isEmpty() ? null : movies.get(0);
+    }
+
+    /**
+     * Get details of several movies at once: one query for movies, ratings, cast and directors,
+     * then one parallel OMDb enrichment pass under a single deadline.
+     *
+     * @param tconsts The movie IDs; duplicates are ignored
+     * @return The movies found, in the order requested
+     */
+    public List<MovieDto> getMoviesByIds(List<String> tconsts) {
+        List<MovieDto> movies = findMoviesByIds(tconsts);
+        enrichWithOmdb(movies);
+        return movies;
+    }
+
+    /**
+     * Get several movies by ID from the IMDb data alone, without calling OMDb.
+     *
+     * @param tconsts The movie IDs; duplicates are ignored
+     * @return The movies found, in the order requested
+     */
+    public List<MovieDto> getMovieSummariesByIds(List<String> tconsts) {
+        List<MovieDto> movies = findMoviesByIds(tconsts);
+        for (MovieDto movie : movies) {
+            movie.setPlot("Plot not available");
+            movie.setPoster("");
         }
+        return movies;
+    }
 
-        MovieDto dto = mapToMovieDto(movie);
-        enrichSingleMovieWithOmdb(dto);
-        
-        // Get cast and crew
-        List<Map<String, Object>> castCrew = movieRepository.getMovieCastAndCrew(tconst);
-        String cast = castCrew.stream()
-                .filter(cc -> "actor".equalsIgnoreCase((String) cc.get("category")) || 
-                             "actress".equalsIgnoreCase((String) cc.get("category")))
-                .map(cc -> (String) cc.get("primaryName"))
-                .limit(5)
-                .collect(Collectors.joining(", "));
-        
-        String director = castCrew.stream()
-                .filter(cc -> "director".equalsIgnoreCase((String) cc.get("category")))
-                .map(cc -> (String) cc.get("primaryName"))
-                .findFirst()
-                .orElse("");
-
-        dto.setCast(cast);
-        dto.setDirector(director);
-        
-        return dto;
+    private List<MovieDto> findMoviesByIds(List<String> tconsts) {
+        Set<String> ids = new LinkedHashSet<>(tconsts);
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<String, MovieDto> found = new HashMap<>();
+        for (MovieDetailsRecord details : movieRepository.findMovieDetailsByIds(ids)) {
+            MovieDto dto = mapToMovieDto(details.movie());
+            dto.setCast(String.join(", ", details.cast()));
+            dto.setDirector(Objects.requireNonNullElse(details.director(), ""));
+            found.put(dto.getTconst(), dto);
+        }
+
+        return ids.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     /**
      * Filter movies with multiple criteria
      */
     public List<MovieDto> filterMovies(String actor, String genre, String fromYear, String toYear, int limit) {
+        return filterMovies(actor, genre, fromYear, toYear, limit, MovieView.FULL);
+    }
+
+    /**
+     * Filter movies with multiple criteria in the requested view
+     */
+    public List<MovieDto> filterMovies(String actor, String genre, String fromYear, String toYear, int limit,
+                                       MovieView view) {
         log.info("Filtering movies with criteria - actor: {}, genre: {}, years: {}-{}", 
                 actor, genre, fromYear, toYear);
-        List<Map<String, Object>> movies = movieRepository.filterMovies(actor, genre, fromYear, toYear, limit);
+        List<MovieRecord> movies = movieRepository.filterMovies(actor, genre, fromYear, toYear, limit);
+        return toMovieDtos(movies, view);
+    }
+
+    /**
+     * Maps rows in the requested view. The compact view skips every enrichment stage,
+     * so it costs exactly the one list query.
+     */
+    private List<MovieDto> toMovieDtos(List<MovieRecord> movies, MovieView view) {
+        if (view == MovieView.COMPACT) {
+            return movies.stream()
+                    .map(this::mapToCompactMovieDto)
+                    .collect(Collectors.toList());
+        }
         return enrichMoviesWithOmdb(movies);
     }
 
     /**
      * Enrich list of movies with OMDb data
      */
-    private List<MovieDto> enrichMoviesWithOmdb(List<Map<String, Object>> movies) {
-        return movies.stream()
+    private List<MovieDto> enrichMoviesWithOmdb(List<MovieRecord> movies) {
+        return enrichMoviesWithOmdb(movies, enrichmentDeadline);
+    }
+
+    private List<MovieDto> enrichMoviesWithOmdb(List<MovieRecord> movies, Duration deadline) {
+        List<MovieDto> dtos = movies.stream()
                 .map(this::mapToMovieDto)
-                .peek(this::enrichSingleMovieWithOmdb)
                 .collect(Collectors.toList());
+        enrichWithOmdb(dtos, deadline);
+        return dtos;
+    }
+
+    private void enrichWithOmdb(List<MovieDto> movies) {
+        enrichWithOmdb(movies, enrichmentDeadline);
     }
 
     /**
-     * Enrich single movie with OMDb data
+     * Enriches movies with OMDb data in parallel, bounded by the per-request and global
+     * concurrency limits. Rows that are not enriched within the time budget, the request
+     * deadline for responses, get default values and are flagged as partially enriched.
      */
-    private void enrichSingleMovieWithOmdb(MovieDto movie) {
-        try {
-            String tconst = movie.getTconst();
-            if (tconst != null) {
-                Map<String, Object> omdbData = omdbClient.fetchMovieDetails(tconst);
-                if (omdbData != null) {
-                    movie.setPlot((String) omdbData.getOrDefault("Plot", "Plot not available"));
-                    movie.setPoster((String) omdbData.getOrDefault("Poster", ""));
-                    movie.setRuntime((String) omdbData.getOrDefault("Runtime", ""));
-                    
-                    // If director not already set, get from OMDb
-                    if (movie.getDirector() == null || movie.getDirector().isEmpty()) {
-                        movie.setDirector((String) omdbData.getOrDefault("Director", ""));
-                    }
-                    
-                    // If cast not already set, get from OMDb
-                    if (movie.getCast() == null || movie.getCast().isEmpty()) {
-                        movie.setCast((String) omdbData.getOrDefault("Actors", ""));
-                    }
-                } else {
-                    setDefaultOmdbValues(movie);
+    private void enrichWithOmdb(List<MovieDto> movies, Duration timeBudget) {
+        if (movies.isEmpty()) {
+            return;
+        }
+        if (omdbClient.isCircuitOpen()) {
+            enrichFromCacheOnly(movies);
+            return;
+        }
+
+        long deadline = System.nanoTime() + timeBudget.toNanos();
+        Semaphore requestPermits = new Semaphore(perRequestConcurrency);
+        List<Future<OmdbMovieDetails>> lookups = new ArrayList<>(movies.size());
+        for (MovieDto movie : movies) {
+            lookups.add(enrichmentExecutor.submit(() -> fetchOmdbData(movie.getTconst(), requestPermits, deadline)));
+        }
+
+        for (int i = 0; i < movies.size(); i++) {
+            MovieDto movie = movies.get(i);
+            Future<OmdbMovieDetails> lookup = lookups.get(i);
+            try {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                applyOmdbData(movie, lookup.get(remaining, TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                lookup.cancel(true);
+                markPartial(movie);
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof OmdbUnavailableException)) {
+                    log.warn("Failed to enrich movie {} with OMDb data: {}", movie.getTconst(), e.getCause().getMessage());
                 }
+                markPartial(movie);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                lookup.cancel(true);
+                markPartial(movie);
+            }
+        }
+    }
+
+    /**
+     * Fallback while the OMDb circuit is open: serve whatever is cached, defaults otherwise.
+     */
+    private void enrichFromCacheOnly(List<MovieDto> movies) {
+        for (MovieDto movie : movies) {
+            OmdbMovieDetails cached = omdbClient.fetchCachedMovieDetails(movie.getTconst());
+            if (cached != null) {
+                applyOmdbData(movie, cached);
             } else {
-                setDefaultOmdbValues(movie);
+                markPartial(movie);
             }
-        } catch (Exception e) {
-            log.warn("Failed to enrich movie {} with OMDb data: {}", movie.getTconst(), e.getMessage());
+        }
+    }
+
+    /**
+     * Runs on a virtual thread. Waits for a request slot and a global slot, giving up
+     * once the deadline has passed.
+     */
+    private OmdbMovieDetails fetchOmdbData(String tconst, Semaphore requestPermits, long deadline)
+            throws InterruptedException, TimeoutException {
+        if (tconst == null) {
+            return null;
+        }
+        if (!requestPermits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+            throw new TimeoutException("No request enrichment slot for " + tconst);
+        }
+        try {
+            if (!globalEnrichmentPermits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                throw new TimeoutException("No global enrichment slot for " + tconst);
+            }
+            try {
+                return omdbClient.fetchMovieDetails(tconst);
+            } finally {
+                globalEnrichmentPermits.release();
+            }
+        } finally {
+            requestPermits.release();
+        }
+    }
+
+    /**
+     * Copies OMDb data onto a movie, or default values if OMDb had nothing.
+     */
+    private void applyOmdbData(MovieDto movie, OmdbMovieDetails omdbData) {
+        if (omdbData == null) {
             setDefaultOmdbValues(movie);
+            return;
+        }
+
+        movie.setPlot(Objects.requireNonNullElse(omdbData.plot(), "Plot not available"));
+        movie.setPoster(Objects.requireNonNullElse(omdbData.poster(), ""));
+        movie.setRuntime(Objects.requireNonNullElse(omdbData.runtime(), ""));
+
+        // If director not already set, get from OMDb
+        if (movie.getDirector() == null || movie.getDirector().isEmpty()) {
+            movie.setDirector(Objects.requireNonNullElse(omdbData.director(), ""));
+        }
+
+        // If cast not already set, get from OMDb
+        if (movie.getCast() == null || movie.getCast().isEmpty()) {
+            movie.setCast(Objects.requireNonNullElse(omdbData.actors(), ""));
         }
     }
 
+    private void markPartial(MovieDto movie) {
+        setDefaultOmdbValues(movie);
+        movie.setPartiallyEnriched(true);
+        partialEnrichments.increment();
+    }
+
     private void setDefaultOmdbValues(MovieDto movie) {
         movie.setPlot("Plot not available");
         movie.setPoster("");
@@ -175,91 +549,46 @@ public class MovieService {
     }
 
     /**
-     * Map database row to MovieDto
-     */
-    /**
-     * Maps a database row to a MovieDto object.
+     * Maps a movie record to a MovieDto object.
      * 
-     * @param row The database row as a map of column names to values
+     * @param movie The movie as read from the database
      * @return A populated MovieDto object
      */
-    private MovieDto mapToMovieDto(Map<String, Object> row) {
-        if (row == null || row.isEmpty()) {
-            return null;
-        }
-        
+    private MovieDto mapToMovieDto(MovieRecord movie) {
         MovieDto dto = new MovieDto();
         
         // Basic movie information
-        dto.setTconst(getStringValue(row, "tconst"));
-        dto.setPrimaryTitle(getStringValue(row, "primaryTitle"));
-        dto.setStartYear(getStringValue(row, "startYear"));
-        dto.setGenres(getStringValue(row, "genres"));
-        dto.setActorName(getStringValue(row, "actorName"));
+        dto.setTconst(movie.tconst());
+        dto.setPrimaryTitle(movie.primaryTitle());
+        dto.setStartYear(formatYear(movie.startYear()));
+        dto.setGenres(Objects.requireNonNullElse(movie.genres(), ""));
+        dto.setActorName(Objects.requireNonNullElse(movie.actorName(), ""));
         
         // Ratings and votes
-        dto.setAverageRating(getDoubleValue(row, "averageRating"));
-        dto.setNumVotes(getIntegerValue(row, "numVotes"));
+        dto.setAverageRating(movie.averageRating());
+        dto.setNumVotes(movie.numVotes());
         
-        // Handle runtime - can be either a string or an integer in the database
-        Object runtime = row.get("runtimeMinutes");
-        if (runtime != null) {
-            if (runtime instanceof Number) {
-                dto.setRuntimeFromMinutes(((Number) runtime).intValue());
-            } else if (runtime instanceof String) {
-                try {
-                    int minutes = Integer.parseInt(runtime.toString());
-                    dto.setRuntimeFromMinutes(minutes);
-                } catch (NumberFormatException e) {
-                    dto.setRuntime(runtime.toString());
-                }
-            }
+        if (movie.runtimeMinutes() > 0) {
+            dto.setRuntimeFromMinutes(movie.runtimeMinutes());
         }
         
         return dto;
     }
     
     /**
-     * Helper method to safely get a string value from a map.
+     * Maps a movie to a MovieDto carrying only tconst, title, year and rating.
      */
-    private String getStringValue(Map<String, Object> map, String key) {
-        Object value = map.get(key);
-        return value != null ? value.toString() : "";
+    private static MovieDto toCompact(MovieDto movie) {
+        return new CompactMovieDto(movie.getTconst(), movie.getPrimaryTitle(), movie.getStartYear(),
+                movie.getAverageRating());
     }
-    
-    /**
-     * Helper method to safely get an integer value from a map.
-     */
-    private Integer getIntegerValue(Map<String, Object> map, String key) {
-        Object value = map.get(key);
-        if (value == null) {
-            return null;
-        }
-        if (value instanceof Number) {
-            return ((Number) value).intValue();
-        }
-        try {
-            return Integer.parseInt(value.toString());
-        } catch (NumberFormatException e) {
-            return null;
-        }
+
+    private MovieDto mapToCompactMovieDto(MovieRecord movie) {
+        return new CompactMovieDto(movie.tconst(), movie.primaryTitle(), formatYear(movie.startYear()),
+                movie.averageRating());
     }
-    
-    /**
-     * Helper method to safely get a double value from a map.
-     */
-    private Double getDoubleValue(Map<String, Object> map, String key) {
-        Object value = map.get(key);
-        if (value == null) {
-            return null;
-        }
-        if (value instanceof Number) {
-            return ((Number) value).doubleValue();
-        }
-        try {
-            return Double.parseDouble(value.toString());
-        } catch (NumberFormatException e) {
-            return null;
-        }
+
+    private static String formatYear(int year) {
+        return year > 0 ? Integer.toString(year) : "";
     }
 }
@@ -0,0 +1,212 @@
+package com.integrated.imdb.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.integrated.imdb.dto.OmdbMovieDetails;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Two-tier cache for OMDb responses.
+ * The first tier is a bounded in-process Caffeine cache (W-TinyLFU eviction, weighted by
+ * approximate payload size); the second tier is the {@code omdb_cache} table, so cached
+ * responses survive restarts. Both tiers honor {@code app.cache.ttl}, unless an entry is stored
+ * with its own time to live, as the warm-up job does. Titles OMDb does not know are cached too,
+ * as their "not found" response, for the shorter {@code app.cache.omdb.not-found-ttl}, so they
+ * do not spend a quota token on every lookup.
+ */
+@Component
+public class OmdbCache {
+
+    private static final Logger log = LoggerFactory.getLogger(OmdbCache.class);
+
+    /**
+     * Rough per-entry overhead (cache node, key, record header) added to the payload weight.
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Duration ttl;
+    private final Duration notFoundTtl;
+    private final Cache<String, OmdbMovieDetails> memoryCache;
+    private final Counter persistentHits;
+    private final Counter persistentMisses;
+
+    public OmdbCache(JdbcTemplate jdbcTemplate,
+                     ObjectMapper objectMapper,
+                     MeterRegistry meterRegistry,
+                     @Value("${app.cache.enabled:true}") boolean enabled,
+                     @Value("${app.cache.ttl:3600}") long ttlSeconds,
+                     @Value("${app.cache.omdb.max-weight-bytes:16777216}") long maxWeightBytes,
+                     @Value("${app.cache.omdb.not-found-ttl:1800}") long notFoundTtlSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.notFoundTtl = Duration.ofSeconds(notFoundTtlSeconds);
+        this.memoryCache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((String key, OmdbMovieDetails value) -> value.estimatedSize() + ENTRY_OVERHEAD_BYTES)
+                .expireAfter(new Expiry<String, OmdbMovieDetails>() {
+                    // Plain puts live for the default ttl; putInMemory sets the time explicitly
+                    @Override
+                    public long expireAfterCreate(String key, OmdbMovieDetails value, long currentTime) {
+                        return ttl.toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, OmdbMovieDetails value, long currentTime,
+                                                  long currentDuration) {
+                        return ttl.toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, OmdbMovieDetails value, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        // Exposes cache.gets{result=hit|miss}, cache.evictions, cache.size ... tagged cache=omdb
+        CaffeineCacheMetrics.monitor(meterRegistry, memoryCache, "omdb");
+        this.persistentHits = Counter.builder("omdb.cache.persistent")
+                .description("Lookups against the omdb_cache table")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.persistentMisses = Counter.builder("omdb.cache.persistent")
+                .description("Lookups against the omdb_cache table")
+                .tag("result", "miss")
+                .register(meterRegistry);
+
+        log.info("OMDb cache {} (ttl={}s, maxWeight={} bytes)",
+                enabled ? "enabled" : "disabled", ttlSeconds, maxWeightBytes);
+    }
+
+    /**
+     * Looks up a cached OMDb response, first in memory and then in the persistent table.
+     *
+     * @param imdbId The IMDb ID (tconst)
+     * @return The cached response, or null if neither tier holds a fresh entry. A cached
+     *         "not found" response has {@link OmdbMovieDetails#isFound()} false.
+     */
+    public OmdbMovieDetails get(String imdbId) {
+        if (!enabled) {
+            return null;
+        }
+
+        OmdbMovieDetails cached = memoryCache.getIfPresent(imdbId);
+        if (cached != null) {
+            return cached;
+        }
+
+        Stored stored = loadPersistent(imdbId);
+        if (stored != null) {
+            persistentHits.increment();
+            putInMemory(imdbId, stored.details(), Duration.between(Instant.now(), stored.expiresAt()));
+            return stored.details();
+        }
+        persistentMisses.increment();
+        return null;
+    }
+
+    /**
+     * Stores an OMDb response in both tiers for {@code app.cache.ttl}.
+     *
+     * @param imdbId The IMDb ID (tconst)
+     * @param details The OMDb response
+     */
+    public void put(String imdbId, OmdbMovieDetails details) {
+        put(imdbId, details, ttl);
+    }
+
+    /**
+     * Stores OMDb's "not found" response for a title in both tiers for
+     * {@code app.cache.omdb.not-found-ttl}.
+     *
+     * @param imdbId The IMDb ID (tconst)
+     * @param details The OMDb response
+     */
+    public void putNotFound(String imdbId, OmdbMovieDetails details) {
+        put(imdbId, details, notFoundTtl);
+    }
+
+    /**
+     * Stores an OMDb response in both tiers.
+     *
+     * @param imdbId The IMDb ID (tconst)
+     * @param details The OMDb response
+     * @param timeToLive How long the entry stays fresh
+     */
+    public void put(String imdbId, OmdbMovieDetails details, Duration timeToLive) {
+        if (!enabled || details == null) {
+            return;
+        }
+
+        putInMemory(imdbId, details, timeToLive);
+        try {
+            jdbcTemplate.update("""
+                INSERT INTO omdb_cache (imdb_id, payload, fetched_at, expires_at)
+                VALUES (?, ?::jsonb, CURRENT_TIMESTAMP, ?)
+                ON CONFLICT (imdb_id)
+                DO UPDATE SET payload = EXCLUDED.payload, fetched_at = EXCLUDED.fetched_at,
+                              expires_at = EXCLUDED.expires_at
+                """,
+                imdbId, objectMapper.writeValueAsString(details), Timestamp.from(Instant.now().plus(timeToLive)));
+        } catch (Exception e) {
+            log.warn("Failed to persist OMDb response for {}: {}", imdbId, e.getMessage());
+        }
+    }
+
+    private void putInMemory(String imdbId, OmdbMovieDetails details, Duration timeToLive) {
+        if (timeToLive.isNegative() || timeToLive.isZero()) {
+            return;
+        }
+        memoryCache.policy().expireVariably()
+                .ifPresent(expiration -> expiration.put(imdbId, details, timeToLive));
+    }
+
+    /**
+     * A row of omdb_cache with the time it goes stale
+     */
+    private record Stored(OmdbMovieDetails details, Instant expiresAt) {
+    }
+
+    private Stored loadPersistent(String imdbId) {
+        try {
+            // Rows written before expires_at existed go stale app.cache.ttl after they were fetched
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList("""
+                SELECT payload::text AS payload,
+                       COALESCE(expires_at, fetched_at + make_interval(secs => ?)) AS expires_at
+                FROM omdb_cache
+                WHERE imdb_id = ? AND COALESCE(expires_at, fetched_at + make_interval(secs => ?)) > CURRENT_TIMESTAMP
+                """,
+                ttl.toSeconds(), imdbId, ttl.toSeconds());
+            if (!rows.isEmpty()) {
+                Map<String, Object> row = rows.get(0);
+                return new Stored(objectMapper.readValue((String) row.get("payload"), OmdbMovieDetails.class),
+                        ((Timestamp) row.get("expires_at")).toInstant());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read cached OMDb response for {}: {}", imdbId, e.getMessage());
+        }
+        return null;
+    }
+}
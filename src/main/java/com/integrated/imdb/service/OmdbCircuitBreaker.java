@@ -0,0 +1,183 @@
+package com.integrated.imdb.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Count-based circuit breaker for OMDb calls.
+ * Opens when the failure rate or the slow-call rate over the last {@code window-size} calls
+ * crosses its threshold. After {@code open-duration-ms} it lets a few trial calls through
+ * (half-open) and closes again only if all of them succeed.
+ */
+@Component
+public class OmdbCircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(OmdbCircuitBreaker.class);
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final Duration openDuration;
+    private final int halfOpenCalls;
+
+    // Ring buffer of the most recent call outcomes
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private int position;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long openedAtNanos;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    public OmdbCircuitBreaker(MeterRegistry meterRegistry,
+                              @Value("${app.omdb.circuit-breaker.window-size:20}") int windowSize,
+                              @Value("${app.omdb.circuit-breaker.minimum-calls:10}") int minimumCalls,
+                              @Value("${app.omdb.circuit-breaker.failure-rate-threshold:50}") int failureRateThreshold,
+                              @Value("${app.omdb.circuit-breaker.slow-call-threshold-ms:3000}") long slowCallThresholdMs,
+                              @Value("${app.omdb.circuit-breaker.slow-call-rate-threshold:80}") int slowCallRateThreshold,
+                              @Value("${app.omdb.circuit-breaker.open-duration-ms:30000}") long openDurationMs,
+                              @Value("${app.omdb.circuit-breaker.half-open-calls:3}") int halfOpenCalls) {
+        this.meterRegistry = meterRegistry;
+        this.failed = new boolean[windowSize];
+        this.slow = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = Duration.ofMillis(slowCallThresholdMs).toNanos();
+        this.openDuration = Duration.ofMillis(openDurationMs);
+        this.halfOpenCalls = halfOpenCalls;
+
+        Gauge.builder("omdb.circuit.state", this, breaker -> breaker.getState().ordinal())
+                .description("OMDb circuit breaker state (0=closed, 1=half-open, 2=open)")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Asks for permission to make a remote call. Every granted permission must be followed by
+     * {@link #onSuccess}, {@link #onFailure} or {@link #releasePermission}.
+     *
+     * @return true if the call may proceed
+     */
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAtNanos < openDuration.toNanos()) {
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits >= halfOpenCalls) {
+                return false;
+            }
+            halfOpenPermits++;
+        }
+        return true;
+    }
+
+    /**
+     * Returns a permission that was granted but not used for a remote call.
+     */
+    public synchronized void releasePermission() {
+        if (state == State.HALF_OPEN && halfOpenPermits > 0) {
+            halfOpenPermits--;
+        }
+    }
+
+    public synchronized void onSuccess(long durationNanos) {
+        record(false, durationNanos >= slowCallNanos);
+    }
+
+    public synchronized void onFailure(long durationNanos) {
+        record(true, durationNanos >= slowCallNanos);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return true if calls are currently being rejected without a trial
+     */
+    public synchronized boolean isOpen() {
+        return state == State.OPEN && System.nanoTime() - openedAtNanos < openDuration.toNanos();
+    }
+
+    private void record(boolean isFailure, boolean isSlow) {
+        if (state == State.HALF_OPEN) {
+            if (isFailure || isSlow) {
+                transitionTo(State.OPEN);
+            } else if (++halfOpenSuccesses >= halfOpenCalls) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // Late result of a call that started before the circuit opened
+            return;
+        }
+
+        if (recorded == failed.length) {
+            failures -= failed[position] ? 1 : 0;
+            slowCalls -= slow[position] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        failed[position] = isFailure;
+        slow[position] = isSlow;
+        failures += isFailure ? 1 : 0;
+        slowCalls += isSlow ? 1 : 0;
+        position = (position + 1) % failed.length;
+
+        if (recorded >= minimumCalls
+                && (failures * 100 >= failureRateThreshold * recorded
+                    || slowCalls * 100 >= slowCallRateThreshold * recorded)) {
+            log.warn("Opening OMDb circuit: {} failures and {} slow calls in the last {} calls",
+                    failures, slowCalls, recorded);
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void transitionTo(State next) {
+        State previous = state;
+        state = next;
+        halfOpenPermits = 0;
+        halfOpenSuccesses = 0;
+        if (next == State.OPEN) {
+            openedAtNanos = System.nanoTime();
+        }
+        if (next != State.OPEN) {
+            resetWindow();
+        }
+        log.info("OMDb circuit breaker {} -> {}", previous, next);
+        Counter.builder("omdb.circuit.transitions")
+                .description("OMDb circuit breaker state transitions")
+                .tag("from", previous.name().toLowerCase())
+                .tag("to", next.name().toLowerCase())
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void resetWindow() {
+        position = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+}
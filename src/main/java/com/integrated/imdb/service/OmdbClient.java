@@ -1,24 +1,93 @@
 package com.integrated.imdb.service;
 
+import com.integrated.imdb.dto.OmdbMovieDetails;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.RestClient;
 
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
 public class OmdbClient {
 
     private static final Logger log = LoggerFactory.getLogger(OmdbClient.class);
-    
-    private final RestTemplate restTemplate;
+
+    private static final double SECONDS_PER_DAY = 86_400d;
+
+    /**
+     * Result of a background prefetch.
+     */
+    public enum PrefetchOutcome {
+        /** Already cached; no quota used */
+        CACHED,
+        /** Remote call made and its answer cached, including OMDb not knowing the title */
+        FETCHED,
+        /** Remote call made but it failed or OMDb rejected it; nothing was cached */
+        FAILED,
+        /** Not attempted: circuit open or the remaining quota is reserved for live traffic */
+        DEFERRED
+    }
+
+    private final RestClient restClient;
+    private final OmdbCache omdbCache;
+    private final OmdbCircuitBreaker circuitBreaker;
+    private final TokenBucketRateLimiter rateLimiter;
+    private final MeterRegistry meterRegistry;
     private final String apiKey;
 
-    public OmdbClient(RestTemplate restTemplate, @Value("${omdb.api.key}") String apiKey) {
-        this.restTemplate = restTemplate;
+    /**
+     * Pending remote lookups keyed by IMDb ID; concurrent callers for the same title share one call.
+     */
+    private final ConcurrentMap<String, CompletableFuture<OmdbMovieDetails>> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalescedCalls;
+    /**
+     * How long a coalesced caller waits for the call in flight: the connect and read timeouts of
+     * the remote call it joined.
+     */
+    private final Duration pendingWait;
+    private final AtomicInteger activeRequests = new AtomicInteger();
+
+    public OmdbClient(RestClient omdbRestClient,
+                      OmdbCache omdbCache,
+                      OmdbCircuitBreaker circuitBreaker,
+                      MeterRegistry meterRegistry,
+                      @Value("${omdb.api.key}") String apiKey,
+                      @Value("${app.omdb.rate-limit.requests-per-day:1000}") int requestsPerDay,
+                      @Value("${app.omdb.rate-limit.burst:100}") int burst,
+                      @Value("${app.omdb.api.connect-timeout:2000}") long connectTimeoutMs,
+                      @Value("${app.omdb.api.timeout:5000}") long readTimeoutMs) {
+        this.restClient = omdbRestClient;
+        this.omdbCache = omdbCache;
+        this.circuitBreaker = circuitBreaker;
+        this.rateLimiter = new TokenBucketRateLimiter(burst, requestsPerDay / SECONDS_PER_DAY);
+        this.meterRegistry = meterRegistry;
         this.apiKey = apiKey;
+        this.pendingWait = Duration.ofMillis(connectTimeoutMs + readTimeoutMs);
+        this.coalescedCalls = Counter.builder("omdb.requests.coalesced")
+                .description("OMDb lookups that joined an identical call already in flight")
+                .register(meterRegistry);
+        Gauge.builder("omdb.requests.inflight", inFlight, Map::size)
+                .description("Distinct OMDb lookups currently in flight")
+                .register(meterRegistry);
+        Gauge.builder("omdb.http.active", activeRequests, AtomicInteger::get)
+                .description("OMDb HTTP requests currently holding a connection")
+                .register(meterRegistry);
+        Gauge.builder("omdb.ratelimit.available", rateLimiter, TokenBucketRateLimiter::availableTokens)
+                .description("Tokens left in the OMDb quota bucket")
+                .register(meterRegistry);
     }
 
     /**
@@ -31,40 +100,171 @@ public class OmdbClient {
         }
 
         try {
-            String url = String.format("https://www.omdbapi.com/?i=%s&apikey=%s&plot=full", imdbId, apiKey);
-            log.debug("Fetching OMDb plot from URL: {}", url);
-
-            Map<String, Object> response = restTemplate.getForObject(url, Map.class);
-
-            if (response != null && "True".equals(response.get("Response"))) {
-                return response.getOrDefault("Plot", "Plot not available").toString();
-            } else {
-                log.warn("OMDb returned no data for IMDb ID: {}", imdbId);
+            OmdbMovieDetails response = fetchMovieDetails(imdbId);
+            if (response != null && response.plot() != null) {
+                return response.plot();
             }
-        } catch (Exception e) {
-            log.error("Failed to fetch plot for IMDb ID {}: {}", imdbId, e.getMessage());
+            log.warn("OMDb returned no data for IMDb ID: {}", imdbId);
+        } catch (OmdbUnavailableException e) {
+            log.debug("OMDb plot lookup for {} rejected: {}", imdbId, e.getMessage());
         }
         return "Plot not available";
     }
 
     /**
      * Fetch full movie details including plot, poster, runtime, etc.
+     * Served from {@link OmdbCache} when possible; successful remote responses are cached.
+     * Concurrent cache misses for the same IMDb ID are coalesced into a single remote call.
+     *
+     * @return The OMDb response, or null if OMDb has no data for the title
+     * @throws OmdbUnavailableException if the circuit is open, the quota is exhausted, or the
+     *         call this one joined did not finish within the HTTP timeouts
      */
-    public Map<String, Object> fetchMovieDetails(String imdbId) {
+    public OmdbMovieDetails fetchMovieDetails(String imdbId) {
         if (imdbId == null || imdbId.isEmpty()) {
             return null;
         }
 
+        OmdbMovieDetails cached = omdbCache.get(imdbId);
+        if (cached != null) {
+            return cached.isFound() ? cached : null;
+        }
+
+        CompletableFuture<OmdbMovieDetails> call = new CompletableFuture<>();
+        CompletableFuture<OmdbMovieDetails> pending = inFlight.putIfAbsent(imdbId, call);
+        if (pending != null) {
+            coalescedCalls.increment();
+            return awaitPending(imdbId, pending);
+        }
+
         try {
-            String url = String.format("https://www.omdbapi.com/?i=%s&apikey=%s&plot=full", imdbId, apiKey);
-            Map<String, Object> response = restTemplate.getForObject(url, Map.class);
-            
-            if (response != null && "True".equals(response.get("Response"))) {
+            OmdbMovieDetails response = fetchRemote(imdbId);
+            call.complete(response);
+            return response;
+        } catch (Throwable e) {
+            // complete on errors too, or coalesced callers would wait on the call forever
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(imdbId, call);
+        }
+    }
+
+    /**
+     * Low-priority lookup used to warm the cache ahead of demand. Only spends quota while more
+     * than {@code reserveTokens} tokens remain, so live requests are never starved.
+     *
+     * @param imdbId The IMDb ID (tconst)
+     * @param reserveTokens Tokens to leave for live traffic
+     * @param timeToLive How long a fetched response stays cached
+     * @return What happened
+     */
+    public PrefetchOutcome prefetchMovieDetails(String imdbId, double reserveTokens, Duration timeToLive) {
+        if (omdbCache.get(imdbId) != null) {
+            return PrefetchOutcome.CACHED;
+        }
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return PrefetchOutcome.DEFERRED;
+        }
+        if (!rateLimiter.tryAcquire(reserveTokens)) {
+            circuitBreaker.releasePermission();
+            return PrefetchOutcome.DEFERRED;
+        }
+        return callRemote(imdbId, timeToLive) != null ? PrefetchOutcome.FETCHED : PrefetchOutcome.FAILED;
+    }
+
+    /**
+     * Cache-only lookup for callers that must not wait on OMDb, e.g. while the circuit is open.
+     */
+    public OmdbMovieDetails fetchCachedMovieDetails(String imdbId) {
+        if (imdbId == null || imdbId.isEmpty()) {
+            return null;
+        }
+        OmdbMovieDetails cached = omdbCache.get(imdbId);
+        return cached != null && cached.isFound() ? cached : null;
+    }
+
+    /**
+     * @return true if remote calls are currently rejected by the circuit breaker
+     */
+    public boolean isCircuitOpen() {
+        return circuitBreaker.isOpen();
+    }
+
+    private OmdbMovieDetails awaitPending(String imdbId, CompletableFuture<OmdbMovieDetails> pending) {
+        try {
+            return pending.get(pendingWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            throw new OmdbUnavailableException("OMDb call in flight for " + imdbId + " did not finish in " + pendingWait);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof OmdbUnavailableException unavailable) {
+                throw unavailable;
+            }
+            log.warn("Failed to fetch details for {}: {}", imdbId, e.getCause().getMessage());
+        }
+        return null;
+    }
+
+    private OmdbMovieDetails fetchRemote(String imdbId) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            reject("circuit_open");
+            throw new OmdbUnavailableException("OMDb circuit is open");
+        }
+        if (!rateLimiter.tryAcquire()) {
+            circuitBreaker.releasePermission();
+            reject("rate_limited");
+            throw new OmdbUnavailableException("OMDb request quota exhausted");
+        }
+        OmdbMovieDetails response = callRemote(imdbId, null);
+        return response != null && response.isFound() ? response : null;
+    }
+
+    /**
+     * Makes the remote call. The caller must already hold a circuit breaker permission and a quota token.
+     *
+     * @param timeToLive How long the response stays cached, null for {@code app.cache.ttl}
+     * @return The response if it was cached, which includes OMDb not knowing the title, or null
+     *         if the call failed or OMDb rejected it
+     */
+    private OmdbMovieDetails callRemote(String imdbId, Duration timeToLive) {
+        long start = System.nanoTime();
+        activeRequests.incrementAndGet();
+        try {
+            OmdbMovieDetails response = restClient.get()
+                    .uri("?i={imdbId}&apikey={apiKey}&plot=full", imdbId, apiKey)
+                    .retrieve()
+                    .body(OmdbMovieDetails.class);
+            circuitBreaker.onSuccess(System.nanoTime() - start);
+
+            if (response != null && response.isFound()) {
+                if (timeToLive != null) {
+                    omdbCache.put(imdbId, response, timeToLive);
+                } else {
+                    omdbCache.put(imdbId, response);
+                }
+                return response;
+            }
+            if (response != null && response.isNotFound()) {
+                // cached briefly so unknown titles do not spend a token on every lookup
+                omdbCache.putNotFound(imdbId, response);
                 return response;
             }
         } catch (Exception e) {
-            log.error("Failed to fetch details for {}: {}", imdbId, e.getMessage());
+            circuitBreaker.onFailure(System.nanoTime() - start);
+            log.warn("Failed to fetch details for {}: {}", imdbId, e.getMessage());
+        } finally {
+            activeRequests.decrementAndGet();
         }
         return null;
     }
+
+    private void reject(String reason) {
+        Counter.builder("omdb.requests.rejected")
+                .description("OMDb calls rejected locally without a remote request")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
 }
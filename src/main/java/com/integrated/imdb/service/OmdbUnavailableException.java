@@ -0,0 +1,13 @@
+package com.integrated.imdb.service;
+
+/**
+ * Thrown when an OMDb call is rejected locally, either because the circuit breaker is open
+ * or because the API-key quota is exhausted, or when the identical call it joined did not finish
+ * in time. The caller made no remote call of its own.
+ */
+public class OmdbUnavailableException extends RuntimeException {
+
+    public OmdbUnavailableException(String message) {
+        super(message);
+    }
+}
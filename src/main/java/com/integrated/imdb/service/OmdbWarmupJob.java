@@ -0,0 +1,230 @@
+package com.integrated.imdb.service;
+
+import com.integrated.imdb.model.MovieVoteCount;
+import com.integrated.imdb.repository.MovieRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+/**
+ * Background job that fills the OMDb cache ahead of demand.
+ * It walks the top-rated set first, then all movies by descending vote count. Progress is
+ * checkpointed in {@code omdb_warmup_checkpoint} so a restart resumes where the job stopped.
+ * The job spends at most {@code daily-budget} remote calls per day and only uses quota tokens
+ * above {@code reserve-tokens}, so it backs off whenever live traffic needs the quota.
+ * <p>
+ * The budget accrues evenly over the day instead of being spent in the first runs after
+ * midnight, and warmed responses are cached for {@code ttl}, so they are still fresh when the
+ * traffic they were fetched for arrives.
+ */
+@Component
+public class OmdbWarmupJob {
+
+    private static final Logger log = LoggerFactory.getLogger(OmdbWarmupJob.class);
+    private static final String JOB_NAME = "omdb-warmup";
+    private static final double SECONDS_PER_DAY = 86_400d;
+
+    private enum Phase {
+        TOP_RATED, BY_VOTES, DONE
+    }
+
+    /**
+     * Mutable view of the checkpoint row.
+     */
+    private static class Checkpoint {
+        Phase phase = Phase.TOP_RATED;
+        int position;
+        Integer lastNumVotes;
+        String lastTconst;
+        LocalDate budgetDay = LocalDate.now();
+        int requestsUsed;
+    }
+
+    private final MovieRepository movieRepository;
+    private final OmdbClient omdbClient;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int dailyBudget;
+    private final int batchSize;
+    private final int topRatedCount;
+    private final double reserveTokens;
+    private final Duration ttl;
+
+    public OmdbWarmupJob(MovieRepository movieRepository,
+                         OmdbClient omdbClient,
+                         JdbcTemplate jdbcTemplate,
+                         MeterRegistry meterRegistry,
+                         @Value("${app.omdb.warmup.enabled:false}") boolean enabled,
+                         @Value("${app.omdb.warmup.daily-budget:500}") int dailyBudget,
+                         @Value("${app.omdb.warmup.batch-size:50}") int batchSize,
+                         @Value("${app.omdb.warmup.top-rated-count:250}") int topRatedCount,
+                         @Value("${app.omdb.warmup.reserve-tokens:50}") double reserveTokens,
+                         @Value("${app.omdb.warmup.ttl:604800}") long ttlSeconds) {
+        this.movieRepository = movieRepository;
+        this.omdbClient = omdbClient;
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.dailyBudget = dailyBudget;
+        this.batchSize = batchSize;
+        this.topRatedCount = topRatedCount;
+        this.reserveTokens = reserveTokens;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+    }
+
+    @Scheduled(initialDelayString = "${app.omdb.warmup.initial-delay-ms:30000}",
+               fixedDelayString = "${app.omdb.warmup.interval-ms:60000}")
+    public void run() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            runBatch();
+        } catch (Exception e) {
+            log.warn("OMDb warm-up batch failed: {}", e.getMessage());
+        }
+    }
+
+    private void runBatch() {
+        Checkpoint checkpoint = loadCheckpoint();
+        int budget = accruedBudget();
+        if (checkpoint.phase == Phase.DONE || checkpoint.requestsUsed >= budget) {
+            return;
+        }
+
+        List<MovieVoteCount> candidates;
+        if (checkpoint.phase == Phase.TOP_RATED) {
+            List<MovieVoteCount> topRated = movieRepository.getTopRatedMovies(topRatedCount, MovieService.MIN_VOTES_THRESHOLD)
+                    .stream()
+                    .map(movie -> new MovieVoteCount(movie.tconst(), movie.numVotes()))
+                    .toList();
+            candidates = topRated.subList(Math.min(checkpoint.position, topRated.size()),
+                    Math.min(checkpoint.position + batchSize, topRated.size()));
+        } else {
+            candidates = movieRepository.findMovieIdsByVotes(
+                    checkpoint.lastNumVotes, checkpoint.lastTconst, batchSize);
+        }
+
+        int processed = 0;
+        boolean deferred = false;
+        for (MovieVoteCount candidate : candidates) {
+            if (checkpoint.requestsUsed >= budget) {
+                break;
+            }
+            String tconst = candidate.tconst();
+            OmdbClient.PrefetchOutcome outcome = omdbClient.prefetchMovieDetails(tconst, reserveTokens, ttl);
+            count(outcome);
+            if (outcome == OmdbClient.PrefetchOutcome.DEFERRED) {
+                deferred = true;
+                break;
+            }
+            if (outcome != OmdbClient.PrefetchOutcome.CACHED) {
+                checkpoint.requestsUsed++;
+            }
+            if (outcome == OmdbClient.PrefetchOutcome.FAILED) {
+                // the title stays at the checkpoint and is retried by the next batch
+                deferred = true;
+                break;
+            }
+            if (checkpoint.phase == Phase.TOP_RATED) {
+                checkpoint.position++;
+            } else {
+                checkpoint.lastNumVotes = candidate.numVotes();
+                checkpoint.lastTconst = tconst;
+            }
+            processed++;
+        }
+
+        if (!deferred && processed == candidates.size() && candidates.size() < batchSize) {
+            // The current phase has no more titles
+            checkpoint.phase = checkpoint.phase == Phase.TOP_RATED ? Phase.BY_VOTES : Phase.DONE;
+            checkpoint.position = 0;
+        }
+        saveCheckpoint(checkpoint);
+
+        log.debug("OMDb warm-up processed {} titles (phase={}, used {}/{} so far, {} today{})", processed,
+                checkpoint.phase, checkpoint.requestsUsed, budget, dailyBudget, deferred ? ", paused for live traffic" : "");
+    }
+
+    /**
+     * Share of {@code daily-budget} available by now; calls left unspent earlier in the day carry over
+     */
+    private int accruedBudget() {
+        double elapsed = LocalTime.now().toSecondOfDay() + 1;
+        return (int) Math.min(dailyBudget, Math.ceil(dailyBudget * elapsed / SECONDS_PER_DAY));
+    }
+
+    /**
+     * Loads the checkpoint, resetting the daily budget on a new day. Every day starts by walking
+     * the top-rated set again, which only spends quota on entries that went stale, then resumes
+     * the walk by votes where it stopped. Once everything has been warmed, the walk by votes
+     * starts over as well.
+     */
+    private Checkpoint loadCheckpoint() {
+        List<Checkpoint> rows = jdbcTemplate.query("""
+            SELECT phase, position, last_num_votes, last_tconst, budget_day, requests_used
+            FROM omdb_warmup_checkpoint
+            WHERE job_name = ?
+            """,
+            (rs, rowNum) -> {
+                Checkpoint checkpoint = new Checkpoint();
+                checkpoint.phase = Phase.valueOf(rs.getString("phase"));
+                checkpoint.position = rs.getInt("position");
+                checkpoint.lastNumVotes = (Integer) rs.getObject("last_num_votes");
+                checkpoint.lastTconst = rs.getString("last_tconst");
+                checkpoint.budgetDay = rs.getDate("budget_day").toLocalDate();
+                checkpoint.requestsUsed = rs.getInt("requests_used");
+                return checkpoint;
+            },
+            JOB_NAME);
+
+        Checkpoint checkpoint = rows.isEmpty() ? new Checkpoint() : rows.get(0);
+        LocalDate today = LocalDate.now();
+        if (!today.equals(checkpoint.budgetDay)) {
+            checkpoint.budgetDay = today;
+            checkpoint.requestsUsed = 0;
+            if (checkpoint.phase == Phase.DONE) {
+                checkpoint.lastNumVotes = null;
+                checkpoint.lastTconst = null;
+            }
+            checkpoint.phase = Phase.TOP_RATED;
+            checkpoint.position = 0;
+        }
+        return checkpoint;
+    }
+
+    private void saveCheckpoint(Checkpoint checkpoint) {
+        jdbcTemplate.update("""
+            INSERT INTO omdb_warmup_checkpoint
+                (job_name, phase, position, last_num_votes, last_tconst, budget_day, requests_used, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
+            ON CONFLICT (job_name)
+            DO UPDATE SET phase = EXCLUDED.phase, position = EXCLUDED.position,
+                          last_num_votes = EXCLUDED.last_num_votes, last_tconst = EXCLUDED.last_tconst,
+                          budget_day = EXCLUDED.budget_day, requests_used = EXCLUDED.requests_used,
+                          updated_at = EXCLUDED.updated_at
+            """,
+            JOB_NAME, checkpoint.phase.name(), checkpoint.position, checkpoint.lastNumVotes,
+            checkpoint.lastTconst, Date.valueOf(checkpoint.budgetDay), checkpoint.requestsUsed);
+    }
+
+    private void count(OmdbClient.PrefetchOutcome outcome) {
+        Counter.builder("omdb.warmup.titles")
+                .description("Titles visited by the OMDb warm-up job")
+                .tag("outcome", outcome.name().toLowerCase())
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,96 @@
+package com.integrated.imdb.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Drains a work queue table keyed by a text column and ordered by {@code enqueued_at}. Each batch
+ * claims up to {@code batchSize} keys with {@code SKIP LOCKED}, deletes them and hands them to the
+ * refresh in the same transaction, so a failed batch goes back to the queue and concurrent
+ * workers never claim the same key. Shared by the background indexers.
+ */
+final class QueueDrainer {
+
+    private static final Logger log = LoggerFactory.getLogger(QueueDrainer.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final String queueTable;
+    private final String claimSql;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final Consumer<String[]> refresh;
+    private final Counter refreshedKeys;
+    private final Timer batchTimer;
+
+    /**
+     * @param queueTable The queue table, with a key column and an {@code enqueued_at} column
+     * @param keyColumn The key column of the queue table
+     * @param refresh Recomputes whatever the claimed keys point at; runs in the claiming transaction
+     * @param refreshedKeys Counts the claimed keys
+     * @param batchTimer Times each claim and refresh
+     */
+    QueueDrainer(JdbcTemplate jdbcTemplate,
+                 TransactionTemplate transactionTemplate,
+                 String queueTable,
+                 String keyColumn,
+                 int batchSize,
+                 int maxBatchesPerRun,
+                 Consumer<String[]> refresh,
+                 Counter refreshedKeys,
+                 Timer batchTimer) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.queueTable = queueTable;
+        this.claimSql = """
+            DELETE FROM %1$s
+            WHERE %2$s IN (
+                SELECT %2$s FROM %1$s
+                ORDER BY enqueued_at
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED
+            )
+            RETURNING %2$s
+            """.formatted(queueTable, keyColumn);
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.refresh = refresh;
+        this.refreshedKeys = refreshedKeys;
+        this.batchTimer = batchTimer;
+    }
+
+    /**
+     * Claims and refreshes batches until one comes back short or {@code maxBatchesPerRun} is reached.
+     */
+    void drain() {
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            Integer claimed = batchTimer.record(this::refreshBatch);
+            if (claimed == null || claimed < batchSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return Number of queued keys claimed
+     */
+    private Integer refreshBatch() {
+        return transactionTemplate.execute(status -> {
+            List<String> keys = jdbcTemplate.queryForList(claimSql, String.class, batchSize);
+            if (keys.isEmpty()) {
+                return 0;
+            }
+            refresh.accept(keys.toArray(new String[0]));
+            refreshedKeys.increment(keys.size());
+            log.debug("Refreshed {} keys claimed from {}", keys.size(), queueTable);
+            return keys.size();
+        });
+    }
+}
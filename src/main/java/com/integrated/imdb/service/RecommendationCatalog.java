@@ -0,0 +1,405 @@
+package com.integrated.imdb.service;
+
+import com.integrated.imdb.model.ScoredMovie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable, column-oriented copy of the movies eligible for recommendation.
+ * <p>
+ * Movies are ordered by the numeric part of their tconst. Genres are bitmasks over a genre
+ * dictionary built at load time and ratings and votes are primitive columns. The cast is an
+ * inverted index from nconst number to movies: the movies of the actor at position {@code p} of
+ * the sorted {@code personIds} are {@code personMovies[personOffsets[p]..personOffsets[p + 1])}.
+ * A query first marks the movies of the liked actors, then scans the columns in parallel chunks,
+ * each keeping a bounded heap of its best movies, and merges the heaps. Co-like scores are
+ * passed as a sparse column sorted by movie, merged into the scan.
+ */
+public final class RecommendationCatalog {
+
+    private static final int ARRAY_HEADER_BYTES = 16;
+    private static final int MAX_GENRES = Long.SIZE;
+
+    /**
+     * Movies scanned by one task of the parallel scan
+     */
+    private static final int CHUNK_SIZE = 16_384;
+
+    private static final RecommendationCatalog EMPTY = new Builder().build();
+
+    private final Map<String, Integer> genreBits;
+    private final int[] ids;
+    private final long[] genreMasks;
+    // Doubles, like average_rating, so that scores and ties match the SQL engine exactly
+    private final double[] ratings;
+    private final int[] votes;
+    private final int[] personIds;
+    private final int[] personOffsets;
+    private final int[] personMovies;
+
+    private RecommendationCatalog(Map<String, Integer> genreBits, int[] ids, long[] genreMasks, double[] ratings,
+                                  int[] votes, int[] personIds, int[] personOffsets, int[] personMovies) {
+        this.genreBits = genreBits;
+        this.ids = ids;
+        this.genreMasks = genreMasks;
+        this.ratings = ratings;
+        this.votes = votes;
+        this.personIds = personIds;
+        this.personOffsets = personOffsets;
+        this.personMovies = personMovies;
+    }
+
+    public static RecommendationCatalog empty() {
+        return EMPTY;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public long estimatedHeapBytes() {
+        return arrayBytes(ids.length, 4) + arrayBytes(genreMasks.length, 8) + arrayBytes(ratings.length, 8)
+                + arrayBytes(votes.length, 4) + arrayBytes(personIds.length, 4) + arrayBytes(personOffsets.length, 4)
+                + arrayBytes(personMovies.length, 4);
+    }
+
+    /**
+     * Scores every movie sharing a genre or an actor with the liked movies or having a co-like
+     * score, using the formula and the tie-breaks of {@link RecommendationEngine#recommend}.
+     *
+     * @param genres Liked genres
+     * @param actorNconsts Liked actors
+     * @param coLikeScores Co-like score by tconst
+     * @param excludedTconsts Movies never to return
+     * @param limit Maximum number of movies to return
+     * @return The best scoring movies, highest score first
+     */
+    public List<ScoredMovie> recommend(Collection<String> genres, Collection<String> actorNconsts,
+                                       Map<String, Double> coLikeScores, Collection<String> excludedTconsts,
+                                       int limit) {
+        long likedMask = 0;
+        for (String genre : genres) {
+            Integer bit = genreBits.get(genre);
+            if (bit != null) {
+                likedMask |= 1L << bit;
+            }
+        }
+        BitSet actorMatches = new BitSet(ids.length);
+        for (String nconst : actorNconsts) {
+            int person = Arrays.binarySearch(personIds, parseId("nm", nconst));
+            if (person >= 0) {
+                for (int i = personOffsets[person]; i < personOffsets[person + 1]; i++) {
+                    actorMatches.set(personMovies[i]);
+                }
+            }
+        }
+        CoLikes coLikes = coLikes(coLikeScores);
+        if (limit <= 0 || (likedMask == 0 && actorMatches.isEmpty() && coLikes.movies.length == 0)) {
+            return List.of();
+        }
+        BitSet excluded = new BitSet(ids.length);
+        for (String tconst : excludedTconsts) {
+            int movie = Arrays.binarySearch(ids, parseId("tt", tconst));
+            if (movie >= 0) {
+                excluded.set(movie);
+            }
+        }
+
+        long mask = likedMask;
+        int chunks = (ids.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        TopK best = IntStream.range(0, chunks)
+                .parallel()
+                .mapToObj(chunk -> scan(chunk * CHUNK_SIZE, Math.min(ids.length, (chunk + 1) * CHUNK_SIZE),
+                        mask, actorMatches, coLikes, excluded, limit))
+                .reduce(TopK::merge)
+                .orElseGet(() -> new TopK(limit));
+        return best.toScoredMovies();
+    }
+
+    private TopK scan(int from, int to, long likedMask, BitSet actorMatches, CoLikes coLikes, BitSet excluded,
+                      int limit) {
+        TopK best = new TopK(limit);
+        int coLiked = Arrays.binarySearch(coLikes.movies, from);
+        coLiked = coLiked >= 0 ? coLiked : -coLiked - 1;
+        for (int movie = from; movie < to; movie++) {
+            double coLikeScore = 0;
+            if (coLiked < coLikes.movies.length && coLikes.movies[coLiked] == movie) {
+                coLikeScore = coLikes.scores[coLiked++];
+            }
+            int genreMatches = Long.bitCount(genreMasks[movie] & likedMask);
+            boolean actorMatch = actorMatches.get(movie);
+            if ((genreMatches == 0 && !actorMatch && coLikeScore <= 0) || excluded.get(movie)) {
+                continue;
+            }
+            double score = (genreMatches * 2 + (actorMatch ? 3 : 0) + coLikeScore) * (ratings[movie] * 0.1);
+            best.offer(score, movie);
+        }
+        return best;
+    }
+
+    /**
+     * Co-like scores of catalog movies, sorted by movie index.
+     */
+    private record CoLikes(int[] movies, double[] scores) {
+    }
+
+    private CoLikes coLikes(Map<String, Double> coLikeScores) {
+        long[] packed = new long[coLikeScores.size()];
+        double[] values = new double[coLikeScores.size()];
+        int count = 0;
+        for (Map.Entry<String, Double> entry : coLikeScores.entrySet()) {
+            int movie = Arrays.binarySearch(ids, parseId("tt", entry.getKey()));
+            if (movie >= 0 && entry.getValue() > 0) {
+                values[count] = entry.getValue();
+                packed[count] = ((long) movie << 32) | count;
+                count++;
+            }
+        }
+        Arrays.sort(packed, 0, count);
+        int[] movies = new int[count];
+        double[] scores = new double[count];
+        for (int i = 0; i < count; i++) {
+            movies[i] = (int) (packed[i] >>> 32);
+            scores[i] = values[(int) packed[i]];
+        }
+        return new CoLikes(movies, scores);
+    }
+
+    private static int parseId(String prefix, String id) {
+        if (id == null || !id.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(id, prefix.length(), id.length(), 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long arrayBytes(int length, int elementBytes) {
+        return ARRAY_HEADER_BYTES + (long) length * elementBytes;
+    }
+
+    /**
+     * Bounded min-heap of the best movies seen by one scan task; the worst kept movie is at the root.
+     */
+    private final class TopK {
+
+        private final int capacity;
+        private final double[] scores;
+        private final int[] movies;
+        private int size;
+
+        TopK(int capacity) {
+            this.capacity = capacity;
+            this.scores = new double[capacity];
+            this.movies = new int[capacity];
+        }
+
+        void offer(double score, int movie) {
+            if (size < capacity) {
+                scores[size] = score;
+                movies[size] = movie;
+                siftUp(size++);
+            } else if (isBetter(score, movie, scores[0], movies[0])) {
+                scores[0] = score;
+                movies[0] = movie;
+                siftDown(0);
+            }
+        }
+
+        TopK merge(TopK other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.scores[i], other.movies[i]);
+            }
+            return this;
+        }
+
+        List<ScoredMovie> toScoredMovies() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> a.equals(b) ? 0
+                    : isBetter(scores[a], movies[a], scores[b], movies[b]) ? -1 : 1);
+            List<ScoredMovie> result = new ArrayList<>(size);
+            for (int i : order) {
+                result.add(new ScoredMovie("tt" + String.format("%07d", ids[movies[i]]), scores[i]));
+            }
+            return result;
+        }
+
+        /**
+         * Higher score wins, then more votes, then the lower tconst number, as in
+         * {@link SqlRecommendationEngine}; results do not depend on how the scan was split.
+         */
+        private boolean isBetter(double score, int movie, double otherScore, int otherMovie) {
+            if (score != otherScore) {
+                return score > otherScore;
+            }
+            if (votes[movie] != votes[otherMovie]) {
+                return votes[movie] > votes[otherMovie];
+            }
+            return movie < otherMovie;
+        }
+
+        private void siftUp(int node) {
+            while (node > 0) {
+                int parent = (node - 1) / 2;
+                if (!isBetter(scores[parent], movies[parent], scores[node], movies[node])) {
+                    break;
+                }
+                swap(node, parent);
+                node = parent;
+            }
+        }
+
+        private void siftDown(int node) {
+            while (true) {
+                int worst = node;
+                for (int child = 2 * node + 1; child <= 2 * node + 2 && child < size; child++) {
+                    if (isBetter(scores[worst], movies[worst], scores[child], movies[child])) {
+                        worst = child;
+                    }
+                }
+                if (worst == node) {
+                    return;
+                }
+                swap(node, worst);
+                node = worst;
+            }
+        }
+
+        private void swap(int a, int b) {
+            double score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+            int movie = movies[a];
+            movies[a] = movies[b];
+            movies[b] = movie;
+        }
+    }
+
+    /**
+     * Collects movies, then their actors, and packs them into a catalog. Movies must be added
+     * in ascending tconst order, before any actor.
+     */
+    public static final class Builder {
+
+        private final Map<String, Integer> genreBits = new HashMap<>();
+        private int[] ids = new int[1024];
+        private long[] genreMasks = new long[1024];
+        private double[] ratings = new double[1024];
+        private int[] votes = new int[1024];
+        private int size;
+
+        // nconst number << 32 | movie index, in arrival order
+        private long[] cast = new long[4096];
+        private int castSize;
+
+        /**
+         * Adds a movie. Movies without a valid tconst are ignored.
+         *
+         * @param tconst The movie ID
+         * @param genres Comma separated genres, or null
+         * @param rating Average rating
+         * @param numVotes Number of votes
+         * @throws IllegalArgumentException if the tconst does not follow the previous one
+         */
+        public Builder addMovie(String tconst, String genres, double rating, int numVotes) {
+            int id = parseId("tt", tconst);
+            if (id < 0) {
+                return this;
+            }
+            if (size > 0 && id <= ids[size - 1]) {
+                throw new IllegalArgumentException("Movies must be added in ascending tconst order: " + tconst);
+            }
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                genreMasks = Arrays.copyOf(genreMasks, capacity);
+                ratings = Arrays.copyOf(ratings, capacity);
+                votes = Arrays.copyOf(votes, capacity);
+            }
+            ids[size] = id;
+            genreMasks[size] = genreMask(genres);
+            ratings[size] = rating;
+            votes[size] = numVotes;
+            size++;
+            return this;
+        }
+
+        /**
+         * Adds an actor to an already added movie. Unknown movies and invalid nconsts are ignored.
+         */
+        public Builder addActor(String tconst, String nconst) {
+            int movie = Arrays.binarySearch(ids, 0, size, parseId("tt", tconst));
+            int person = parseId("nm", nconst);
+            if (movie < 0 || person < 0) {
+                return this;
+            }
+            if (castSize == cast.length) {
+                cast = Arrays.copyOf(cast, castSize * 2);
+            }
+            cast[castSize++] = ((long) person << 32) | movie;
+            return this;
+        }
+
+        public RecommendationCatalog build() {
+            // Group the cast by person; the pairs sort by nconst number, then movie
+            Arrays.sort(cast, 0, castSize);
+            int[] persons = new int[castSize];
+            int[] offsets = new int[castSize + 1];
+            int[] movies = new int[castSize];
+            int personCount = 0;
+            int movieCount = 0;
+            for (int i = 0; i < castSize; i++) {
+                if (i > 0 && cast[i] == cast[i - 1]) {
+                    continue;
+                }
+                int person = (int) (cast[i] >>> 32);
+                if (personCount == 0 || persons[personCount - 1] != person) {
+                    persons[personCount] = person;
+                    offsets[personCount++] = movieCount;
+                }
+                movies[movieCount++] = (int) cast[i];
+            }
+            offsets[personCount] = movieCount;
+
+            return new RecommendationCatalog(Map.copyOf(genreBits), Arrays.copyOf(ids, size),
+                    Arrays.copyOf(genreMasks, size), Arrays.copyOf(ratings, size), Arrays.copyOf(votes, size),
+                    Arrays.copyOf(persons, personCount), Arrays.copyOf(offsets, personCount + 1),
+                    Arrays.copyOf(movies, movieCount));
+        }
+
+        private long genreMask(String genres) {
+            long mask = 0;
+            if (genres == null) {
+                return mask;
+            }
+            for (String genre : genres.split(",")) {
+                genre = genre.trim();
+                if (genre.isEmpty()) {
+                    continue;
+                }
+                Integer bit = genreBits.get(genre);
+                if (bit == null) {
+                    if (genreBits.size() == MAX_GENRES) {
+                        continue;
+                    }
+                    bit = genreBits.size();
+                    genreBits.put(genre, bit);
+                }
+                mask |= 1L << bit;
+            }
+            return mask;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.integrated.imdb.service;
+
+import com.integrated.imdb.model.LikedMovieFeatures;
+import com.integrated.imdb.model.ScoredMovie;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Ranks movies against the features of a user's liked movies. The implementation is selected
+ * with {@code app.recommendations.engine}.
+ */
+public interface RecommendationEngine {
+
+    /**
+     * @return Short name of the engine, used to tag metrics
+     */
+    String name();
+
+    /**
+     * Scores movies sharing genres or actors with the liked movies, or co-liked with them. A
+     * movie's score is
+     * {@code (matchingGenres * 2 + (sharesAnActor ? 3 : 0) + coLikeScore) * (averageRating * 0.1)}.
+     * Equal scores go to the movie with more votes, then to the lower tconst number, so every
+     * engine returns the same ranking.
+     *
+     * @param features Genres and actors of the liked movies
+     * @param coLikeScores Collaborative score of movies liked by the same users, by tconst
+     * @param excludedTconsts Movies never to recommend, e.g. the liked ones
+     * @param limit Maximum number of movies to return
+     * @return The best scoring movies, highest score first
+     */
+    List<ScoredMovie> recommend(LikedMovieFeatures features, Map<String, Double> coLikeScores,
+                                Set<String> excludedTconsts, int limit);
+}
@@ -0,0 +1,90 @@
+package com.integrated.imdb.service;
+
+import com.integrated.imdb.model.LikedMovieFeatures;
+import com.integrated.imdb.model.ScoredMovie;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Scores every eligible movie in one SQL statement. Needs no memory, but each call scans the
+ * rated movies.
+ */
+@Component
+@ConditionalOnProperty(name = "app.recommendations.engine", havingValue = "sql", matchIfMissing = true)
+public class SqlRecommendationEngine implements RecommendationEngine {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int minVotes;
+
+    public SqlRecommendationEngine(JdbcTemplate jdbcTemplate,
+                                   @Value("${app.recommendations.min-votes:1000}") int minVotes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.minVotes = minVotes;
+    }
+
+    @Override
+    public String name() {
+        return "sql";
+    }
+
+    @Override
+    public List<ScoredMovie> recommend(LikedMovieFeatures features, Map<String, Double> coLikeScores,
+                                       Set<String> excludedTconsts, int limit) {
+        String[] coLikedTconsts = coLikeScores.keySet().toArray(new String[0]);
+        double[] coLikeValues = new double[coLikedTconsts.length];
+        for (int i = 0; i < coLikedTconsts.length; i++) {
+            coLikeValues[i] = coLikeScores.get(coLikedTconsts[i]);
+        }
+
+        String sql = """
+            -- Materialized, so the dictionary lookup runs once rather than for every scanned movie
+            WITH liked_genres AS MATERIALIZED (
+                SELECT genre_mask_lookup(?::text[]) AS mask
+            ),
+            co_liked AS (
+                SELECT * FROM unnest(?::text[], ?::float8[]) AS c(tconst, score)
+            ),
+            -- Movies of the liked actors, found through idx_title_principals_nconst
+            actor_movies AS (
+                SELECT DISTINCT tp.tconst
+                FROM title_principals tp
+                WHERE tp.nconst = ANY(?) AND tp.category IN ('actor', 'actress')
+            ),
+            movie_scores AS (
+                SELECT
+                    t.tconst,
+                    r.average_rating,
+                    r.num_votes,
+                    COALESCE(c.score, 0) AS co_like_score,
+                    -- Score based on genre matches
+                    bit_count((t.genre_mask & lg.mask)::bit(64)) AS genre_score,
+                    -- Score based on actor matches
+                    (CASE WHEN a.tconst IS NOT NULL THEN 1 ELSE 0 END) AS actor_score
+                FROM title_basics t
+                CROSS JOIN liked_genres lg
+                JOIN title_ratings r ON t.tconst = r.tconst
+                LEFT JOIN co_liked c ON c.tconst = t.tconst
+                LEFT JOIN actor_movies a ON a.tconst = t.tconst
+                WHERE t.title_type = 'movie'
+                AND r.num_votes > ?
+                AND t.tconst <> ALL(?)
+            )
+            SELECT tconst, (genre_score * 2 + actor_score * 3 + co_like_score) * (average_rating * 0.1) AS score
+            FROM movie_scores
+            WHERE genre_score > 0 OR actor_score > 0 OR co_like_score > 0
+            ORDER BY score DESC, num_votes DESC, substr(tconst, 3)::int
+            LIMIT ?
+            """;
+        return jdbcTemplate.query(sql,
+                (rs, rowNum) -> new ScoredMovie(rs.getString(1), rs.getDouble(2)),
+                features.genres().toArray(new String[0]), coLikedTconsts, coLikeValues,
+                features.actors().keySet().toArray(new String[0]), minVotes,
+                excludedTconsts.toArray(new String[0]), limit);
+    }
+}
@@ -4,26 +4,80 @@ import com.integrated.imdb.dto.FeedbackRequest;
 import com.integrated.imdb.dto.MovieDto;
 import com.integrated.imdb.dto.SuggestResponse;
 import com.integrated.imdb.dto.StartRequest;
+import com.integrated.imdb.model.FeedbackChange;
+import com.integrated.imdb.model.FeedbackEvent;
+import com.integrated.imdb.model.LikedMovieFeatures;
+import com.integrated.imdb.model.ScoredMovie;
+import com.integrated.imdb.model.UserProfile;
+import com.integrated.imdb.repository.FeedbackRepository;
+import com.integrated.imdb.repository.MovieRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 public class SuggestService {
     
     private static final Logger log = LoggerFactory.getLogger(SuggestService.class);
     
+    private static final int RECOMMENDATION_LIMIT = 20;
+
+    /**
+     * Movies scored per request; only recent likes are excluded while scoring, so some
+     * candidates may turn out to be liked already
+     */
+    private static final int RECOMMENDATION_CANDIDATES = 3 * RECOMMENDATION_LIMIT;
+
     private final MovieService movieService;
+    private final MovieRepository movieRepository;
+    private final FeedbackRepository feedbackRepository;
+    private final FeedbackWriteBehind feedbackWriteBehind;
+    private final UserProfileStore userProfileStore;
     private final JdbcTemplate jdbcTemplate;
+    private final RecommendationEngine recommendationEngine;
+    private final double coLikeWeight;
+    private final Timer recommendationTimer;
+    private final Counter storedFeedback;
+    private final Counter rejectedFeedback;
 
-    public SuggestService(MovieService movieService, JdbcTemplate jdbcTemplate) {
+    public SuggestService(MovieService movieService,
+                          MovieRepository movieRepository,
+                          FeedbackRepository feedbackRepository,
+                          FeedbackWriteBehind feedbackWriteBehind,
+                          UserProfileStore userProfileStore,
+                          JdbcTemplate jdbcTemplate,
+                          RecommendationEngine recommendationEngine,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.recommendations.co-likes.weight:2.0}") double coLikeWeight) {
         this.movieService = movieService;
+        this.movieRepository = movieRepository;
+        this.feedbackRepository = feedbackRepository;
+        this.feedbackWriteBehind = feedbackWriteBehind;
+        this.userProfileStore = userProfileStore;
         this.jdbcTemplate = jdbcTemplate;
+        this.recommendationEngine = recommendationEngine;
+        this.coLikeWeight = coLikeWeight;
+        this.recommendationTimer = Timer.builder("movies.recommendations")
+                .description("Latency of scoring personalized recommendations")
+                .tag("engine", recommendationEngine.name())
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.storedFeedback = Counter.builder("movies.feedback.ids")
+                .description("Movie IDs in feedback submissions")
+                .tag("result", "stored")
+                .register(meterRegistry);
+        this.rejectedFeedback = Counter.builder("movies.feedback.ids")
+                .description("Movie IDs in feedback submissions")
+                .tag("result", "rejected")
+                .register(meterRegistry);
         initializeDatabase();
     }
 
@@ -34,7 +88,8 @@ public class SuggestService {
                 CREATE TABLE IF NOT EXISTS user_preferences (
                     user_id VARCHAR(50) PRIMARY KEY,
                     preferences JSONB DEFAULT '{}'::jsonb,
-                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
                 )
             """);
             
@@ -67,14 +122,8 @@ public class SuggestService {
     public SuggestResponse startSession(StartRequest request) {
         String userId = request.getUserId() != null ? request.getUserId() : "user_" + UUID.randomUUID();
         
-        // Save initial query to preferences
-        Map<String, Object> prefs = new HashMap<>();
-        prefs.put("initialQuery", request.getQuery());
-        prefs.put("preferredGenres", new ArrayList<>());
-        prefs.put("preferredActors", new ArrayList<>());
-        prefs.put("lastUpdated", new Date().toString());
-        
-        savePreferences(userId, prefs);
+        // Start a fresh profile from the initial query
+        userProfileStore.update(userId, profile -> profile.restart(request.getQuery()));
         
         // Get initial recommendations based on query
         List<MovieDto> recommendations = movieService.searchMoviesByTitle(request.getQuery(), 10);
@@ -84,197 +133,149 @@ public class SuggestService {
     
     @Transactional
     public SuggestResponse recordFeedback(FeedbackRequest request) {
-        // Save liked movies
-        if (request.getLikedMovieIds() != null && !request.getLikedMovieIds().isEmpty()) {
+        // Liked movies first, so a movie in both lists ends up disliked
+        List<String> movieIds = new ArrayList<>();
+        List<Boolean> liked = new ArrayList<>();
+        if (request.getLikedMovieIds() != null) {
             for (String movieId : request.getLikedMovieIds()) {
-                jdbcTemplate.update("""
-                    INSERT INTO user_feedback (user_id, movie_id, liked) 
-                    VALUES (?, ?, true)
-                    ON CONFLICT (user_id, movie_id) 
-                    DO UPDATE SET liked = EXCLUDED.liked, created_at = CURRENT_TIMESTAMP
-                    """, 
-                    request.getUserId(), movieId);
+                movieIds.add(movieId);
+                liked.add(true);
             }
         }
-        
-        // Save disliked movies
-        if (request.getDislikedMovieIds() != null && !request.getDislikedMovieIds().isEmpty()) {
+        if (request.getDislikedMovieIds() != null) {
             for (String movieId : request.getDislikedMovieIds()) {
-                jdbcTemplate.update("""
-                    INSERT INTO user_feedback (user_id, movie_id, liked) 
-                    VALUES (?, ?, false)
-                    ON CONFLICT (user_id, movie_id) 
-                    DO UPDATE SET liked = EXCLUDED.liked, created_at = CURRENT_TIMESTAMP
-                    """, 
-                    request.getUserId(), movieId);
+                movieIds.add(movieId);
+                liked.add(false);
             }
         }
-        
-        // Get updated recommendations based on feedback
+        FeedbackEvent event = new FeedbackEvent(request.getUserId(), movieIds, liked);
+        if (feedbackWriteBehind.isEnabled() && !movieIds.isEmpty()) {
+            if (!feedbackWriteBehind.submit(event)) {
+                List<FeedbackChange> changes = feedbackWriteBehind.writeThrough(event);
+                countStored(event, changes);
+                userProfileStore.applyFeedback(changes);
+            }
+        } else {
+            saveFeedback(event);
+        }
+
+        // Get updated recommendations based on feedback, including feedback still queued
         return getRecommendations(request.getUserId());
     }
     
     @Transactional(readOnly = true)
     public SuggestResponse getRecommendations(String userId) {
-        // Get user preferences
-        Map<String, Object> prefs = getPreferences(userId);
-        
-        // Get user's liked movies
-        List<String> likedMovies = jdbcTemplate.queryForList(
-            "SELECT movie_id FROM user_feedback WHERE user_id = ? AND liked = true", 
-            String.class, userId);
-            
-        if (likedMovies.isEmpty()) {
+        // Genre and actor weights are kept up to date as feedback is recorded
+        UserProfile profile = userProfileStore.get(userId);
+        Map<String, Boolean> pending = feedbackWriteBehind.pendingRatings(userId);
+
+        // Recent likes, and feedback still queued for the write-behind writer
+        Set<String> likedMovies = new LinkedHashSet<>();
+        List<String> pendingLikes = new ArrayList<>();
+        pending.forEach((movieId, liked) -> {
+            if (liked) {
+                pendingLikes.add(movieId);
+            }
+        });
+        likedMovies.addAll(pendingLikes);
+        profile.recentLikes().stream()
+                .filter(movieId -> !Boolean.FALSE.equals(pending.get(movieId)))
+                .forEach(likedMovies::add);
+
+        LikedMovieFeatures features = likedFeatures(profile, pendingLikes);
+        if (likedMovies.isEmpty() && features.genres().isEmpty() && features.actors().isEmpty()) {
             // If no preferences yet, return popular movies
             return new SuggestResponse(userId, movieService.getTopRatedMovies(10));
         }
         
-        // Get movie details for liked movies to analyze preferences
-        List<MovieDto> likedMovieDetails = likedMovies.stream()
-            .map(movieService::getMovieById)
-            .filter(Objects::nonNull)
-            .collect(Collectors.toList());
-            
-        // Extract preferences
-        Set<String> likedGenres = new HashSet<>();
-        Set<String> likedActors = new HashSet<>();
+        // Get recommendations based on preferences
+        List<MovieDto> recommendations = getPersonalizedRecommendations(userId, features, likedMovies, pending);
         
-        for (MovieDto movie : likedMovieDetails) {
-            if (movie.getGenres() != null) {
-                Arrays.stream(movie.getGenres().split(","))
-                      .map(String::trim)
-                      .filter(g -> !g.isEmpty())
-                      .forEach(likedGenres::add);
+        return new SuggestResponse(userId, recommendations);
+    }
+
+    /**
+     * Genres and actors with a positive weight in the profile, plus those of queued likes. Queued
+     * dislikes only count once committed.
+     */
+    private LikedMovieFeatures likedFeatures(UserProfile profile, List<String> pendingLikes) {
+        Set<String> genres = new HashSet<>();
+        profile.genreWeights().forEach((genre, weight) -> {
+            if (weight > 0) {
+                genres.add(genre);
             }
-            if (movie.getCast() != null) {
-                Arrays.stream(movie.getCast().split(","))
-                      .map(String::trim)
-                      .filter(a -> !a.isEmpty())
-                      .limit(3) // Limit to top 3 actors per movie
-                      .forEach(likedActors::add);
+        });
+        Map<String, String> actors = new HashMap<>();
+        profile.actors().forEach((nconst, actor) -> {
+            if (actor.weight() > 0) {
+                actors.put(nconst, actor.name());
             }
+        });
+        if (!pendingLikes.isEmpty()) {
+            LikedMovieFeatures pendingFeatures = movieRepository.findMovieFeatures(pendingLikes, UserProfileStore.ACTORS_PER_MOVIE);
+            genres.addAll(pendingFeatures.genres());
+            actors.putAll(pendingFeatures.actors());
         }
-        
-        // Update preferences
-        prefs.put("preferredGenres", new ArrayList<>(likedGenres));
-        prefs.put("preferredActors", new ArrayList<>(likedActors));
-        prefs.put("lastUpdated", new Date().toString());
-        savePreferences(userId, prefs);
-        
-        // Get recommendations based on preferences
-        List<MovieDto> recommendations = getPersonalizedRecommendations(userId, likedGenres, likedActors, likedMovies);
-        
-        return new SuggestResponse(userId, recommendations);
+        return new LikedMovieFeatures(genres, actors);
     }
     
+    /**
+     * Stores a feedback submission with one upsert: the IDs are deduplicated (the last
+     * occurrence wins), checked against title_basics and upserted together. The user's profile
+     * is moved by the ratings that changed.
+     */
+    private void saveFeedback(FeedbackEvent event) {
+        if (event.movieIds().isEmpty()) {
+            return;
+        }
+        List<FeedbackChange> changes = feedbackRepository.upsertFeedback(List.of(event));
+        countStored(event, changes);
+        userProfileStore.applyFeedback(changes);
+    }
+
+    private void countStored(FeedbackEvent event, List<FeedbackChange> changes) {
+        long distinct = event.movieIds().stream().distinct().count();
+        int stored = changes.size();
+        storedFeedback.increment(stored);
+        rejectedFeedback.increment(distinct - stored);
+        if (stored < distinct) {
+            log.debug("Ignored {} feedback IDs of user {} that are not in the catalog", distinct - stored, event.userId());
+        }
+    }
+
     /**
      * Get personalized movie recommendations based on user preferences.
      * 
      * @param userId The ID of the user
-     * @param likedGenres Set of genres the user has shown interest in
-     * @param likedActors Set of actors the user has shown interest in
-     * @param likedMovies List of movie IDs the user has liked
+     * @param features Genres and actors of the movies the user has liked
+     * @param likedMovies Movie IDs the user has liked recently
+     * @param pending The user's ratings not committed yet
      * @return List of recommended movies
      */
-    private List<MovieDto> getPersonalizedRecommendations(String userId, 
-                                                         Set<String> likedGenres, 
-                                                         Set<String> likedActors,
-                                                         List<String> likedMovies) {
+    private List<MovieDto> getPersonalizedRecommendations(String userId,
+                                                         LikedMovieFeatures features,
+                                                         Set<String> likedMovies,
+                                                         Map<String, Boolean> pending) {
         try {
-            // If we have both genres and actors, we can make a more targeted query
-            if (!likedGenres.isEmpty() && !likedActors.isEmpty()) {
-                log.debug("Generating recommendations for user {} with {} liked genres and {} liked actors", 
-                         userId, likedGenres.size(), likedActors.size());
-                
-                // Exclude already liked movies
-                String excludeCondition = likedMovies.isEmpty() ? "" : 
-                    " AND t.tconst NOT IN ('" + String.join("','", likedMovies) + "')";
-                
-                // Build the query with dynamic parameters
-                String sql = """
-                    WITH movie_scores AS (
-                        SELECT 
-                            t.tconst,
-                            t.primaryTitle,
-                            t.startYear,
-                            t.genres,
-                            r.averageRating,
-                            r.numVotes,
-                            -- Score based on genre matches
-                            (SELECT COUNT(*) FROM unnest(string_to_array(?, ',')) as g 
-                             WHERE t.genres ILIKE '%' || g || '%') as genre_score,
-                            -- Score based on actor matches (simplified)
-                            (CASE WHEN EXISTS (
-                                SELECT 1 FROM title_principals tp 
-                                JOIN name_basics n ON tp.nconst = n.nconst 
-                                WHERE tp.tconst = t.tconst 
-                                AND n.primaryName ~* ?
-                            ) THEN 1 ELSE 0 END) as actor_score
-                        FROM title_basics t
-                        JOIN title_ratings r ON t.tconst = r.tconst
-                        WHERE t.titleType = 'movie'
-                        AND r.numVotes > 1000  -- Minimum votes threshold
-                        """ + excludeCondition + """
-                    )
-                    SELECT 
-                        ms.tconst, 
-                        ms.primaryTitle, 
-                        ms.startYear, 
-                        ms.genres, 
-                        ms.averageRating, 
-                        ms.numVotes, 
-                        COALESCE(tb.runtimeMinutes, 0) as runtimeMinutes
-                    FROM movie_scores ms
-                    LEFT JOIN title_basics tb ON ms.tconst = tb.tconst
-                    WHERE ms.genre_score > 0 OR ms.actor_score > 0
-                    ORDER BY (ms.genre_score * 2 + ms.actor_score * 3) * (ms.averageRating * 0.1) DESC
-                    LIMIT ?
-                    """;
-                
-                // Prepare query parameters
-                List<Object> queryParams = new ArrayList<>();
-                queryParams.add(String.join(",", likedGenres));  // Single string of comma-separated genres
-                queryParams.add(String.join("|", likedActors));  // Regex pattern for actor names
-                queryParams.add(20); // Limit results to 20
-                
-                log.debug("Executing recommendation query with params: {}", queryParams);
-                
-                // Execute the query with parameters
-                List<MovieDto> results = jdbcTemplate.query(
-                    sql,
-                    (rs, rowNum) -> {
-                        try {
-                            MovieDto movie = new MovieDto();
-                            movie.setTconst(rs.getString("tconst"));
-                            movie.setPrimaryTitle(rs.getString("primaryTitle"));
-                            movie.setStartYear(rs.getString("startYear"));
-                            movie.setGenres(rs.getString("genres"));
-                            movie.setAverageRating(rs.getDouble("averageRating"));
-                            movie.setNumVotes(rs.getInt("numVotes"));
-                            
-                            // Set runtime using the helper method
-                            int runtimeMinutes = rs.getInt("runtimeMinutes");
-                            movie.setRuntimeFromMinutes(runtimeMinutes);
-                            
-                            // Initialize other OMDb data
-                            movie.setPlot("Plot not available");
-                            movie.setPoster("");
-                            movie.setDirector("");
-                            movie.setCast("");
-                            
-                            return movie;
-                        } catch (Exception e) {
-                            log.error("Error mapping movie result: {}", e.getMessage(), e);
-                            return null;
-                        }
-                    },
-                    queryParams.toArray()
-                );
-                
-                // Filter out any null results from the mapping process
-                return results.stream()
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
+            Map<String, Double> coLikeScores = findCoLikeScores(likedMovies);
+            if (!features.genres().isEmpty() || !features.actors().isEmpty() || !coLikeScores.isEmpty()) {
+                log.debug("Generating recommendations for user {} with {} liked genres, {} liked actors and {} co-liked movies ({} engine)",
+                         userId, features.genres().size(), features.actors().size(), coLikeScores.size(),
+                         recommendationEngine.name());
+
+                // Recent likes are excluded while scoring, older ones by probing the candidates
+                List<ScoredMovie> scored = recommendationTimer.record(() -> recommendationEngine.recommend(
+                        features, coLikeScores, likedMovies, RECOMMENDATION_CANDIDATES));
+                List<String> candidates = scored.stream().map(ScoredMovie::tconst).toList();
+                Set<String> liked = feedbackRepository.findLikedAmong(userId, candidates);
+                liked.removeIf(movieId -> Boolean.FALSE.equals(pending.get(movieId)));
+                List<String> recommended = candidates.stream()
+                        .filter(movieId -> !liked.contains(movieId))
+                        .limit(RECOMMENDATION_LIMIT)
+                        .toList();
+                if (!recommended.isEmpty()) {
+                    return movieService.getMovieSummariesByIds(recommended);
+                }
             }
         } catch (Exception e) {
             log.error("Error generating personalized recommendations: {}", e.getMessage(), e);
@@ -282,44 +283,25 @@ public class SuggestService {
         
         // Fallback to top rated movies if we don't have enough preference data or an error occurs
         log.info("Falling back to top-rated movies for user {}", userId);
-        return movieService.getTopRatedMovies(20);
+        return movieService.getTopRatedMovies(RECOMMENDATION_LIMIT);
     }
     
-    private void savePreferences(String userId, Map<String, Object> preferences) {
-        try {
-            jdbcTemplate.update("""
-                INSERT INTO user_preferences (user_id, preferences) 
-                VALUES (?, ?::jsonb)
-                ON CONFLICT (user_id) 
-                DO UPDATE SET preferences = EXCLUDED.preferences, created_at = CURRENT_TIMESTAMP
-                """,
-                userId, new com.fasterxml.jackson.databind.ObjectMapper().writeValueAsString(preferences));
-        } catch (Exception e) {
-            log.error("Error saving preferences for user {}", userId, e);
-            throw new RuntimeException("Failed to save user preferences", e);
-        }
-    }
-    
-    @SuppressWarnings("unchecked")
-    private Map<String, Object> getPreferences(String userId) {
-        try {
-            String json = jdbcTemplate.queryForObject(
-                "SELECT preferences::text FROM user_preferences WHERE user_id = ?",
-                String.class, userId);
-            
-            if (json != null) {
-                return new com.fasterxml.jackson.databind.ObjectMapper()
-                    .readValue(json, Map.class);
-            }
-        } catch (Exception e) {
-            log.warn("Error getting preferences for user {}", userId, e);
-        }
-        
-        // Return default preferences if none found
-        Map<String, Object> defaultPrefs = new HashMap<>();
-        defaultPrefs.put("preferredGenres", new ArrayList<>());
-        defaultPrefs.put("preferredActors", new ArrayList<>());
-        defaultPrefs.put("lastUpdated", new Date().toString());
-        return defaultPrefs;
+    /**
+     * Looks up the precomputed co-like neighbors of the liked movies. A movie's score is the sum of
+     * its similarities to the liked movies, times {@code app.recommendations.co-likes.weight}.
+     */
+    private Map<String, Double> findCoLikeScores(Collection<String> likedMovies) {
+        Map<String, Double> scores = new HashMap<>();
+        jdbcTemplate.query("""
+            SELECT n.neighbor_id, SUM(n.similarity)
+            FROM item_neighbors n
+            WHERE n.movie_id = ANY(?)
+            GROUP BY n.neighbor_id
+            """,
+            rs -> {
+                scores.put(rs.getString(1), coLikeWeight * rs.getDouble(2));
+            },
+            (Object) likedMovies.toArray(new String[0]));
+        return scores;
     }
 }
@@ -0,0 +1,64 @@
+package com.integrated.imdb.service;
+
+/**
+ * Thread-safe token bucket. Tokens refill continuously at a fixed rate up to the bucket capacity;
+ * each permitted call takes one token.
+ */
+public class TokenBucketRateLimiter {
+
+    private final double capacity;
+    private final double refillPerNano;
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * @param capacity Maximum burst size
+     * @param refillPerSecond Tokens added per second
+     */
+    public TokenBucketRateLimiter(double capacity, double refillPerSecond) {
+        this.capacity = capacity;
+        this.refillPerNano = refillPerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @return true if the call may proceed
+     */
+    public synchronized boolean tryAcquire() {
+        return tryAcquire(0);
+    }
+
+    /**
+     * Takes a token only if more than {@code reserve} tokens would remain afterwards.
+     * Lets low-priority callers use spare capacity without starving regular callers.
+     *
+     * @param reserve Number of tokens to leave in the bucket
+     * @return true if the call may proceed
+     */
+    public synchronized boolean tryAcquire(double reserve) {
+        refill();
+        if (tokens - 1 < reserve) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    public synchronized double availableTokens() {
+        refill();
+        return tokens;
+    }
+
+    public double getCapacity() {
+        return capacity;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * refillPerNano);
+        lastRefillNanos = now;
+    }
+}
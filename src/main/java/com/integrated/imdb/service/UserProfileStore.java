@@ -0,0 +1,372 @@
+package com.integrated.imdb.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.integrated.imdb.model.FeedbackChange;
+import com.integrated.imdb.model.LikedMovieFeatures;
+import com.integrated.imdb.model.UserProfile;
+import com.integrated.imdb.repository.FeedbackRepository;
+import com.integrated.imdb.repository.MovieRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Typed access to user_preferences. Hot profiles are cached in memory; a change only marks the
+ * profile dirty, and dirty profiles are written back in batches by a scheduled flush, one
+ * statement per batch. Updates that leave the profile unchanged write nothing.
+ * <p>
+ * A dirty profile stays in {@code dirty} until it is written, so evicting it from the cache
+ * cannot lose the change. The flush only replaces a row with a higher version.
+ * <p>
+ * Genre and actor weights are running sums over the user's feedback: a like adds 1 to the
+ * genres and top billed actors of the movie, a dislike subtracts {@code dislike-weight}, and a
+ * reversal moves a movie from one side to the other. {@link #applyFeedback(List)} applies the
+ * difference of each stored rating, so reading a profile costs the same whatever the length of
+ * the history. Profiles written before the weights were kept are backfilled from user_feedback
+ * once, when first loaded.
+ * <p>
+ * The deltas are applied before the transaction that stored the ratings commits. If it rolls
+ * back, the weights of the affected users are discarded and rebuilt from user_feedback on next
+ * use, so neither a rollback nor a retry of the same ratings leaves them counted.
+ */
+@Component
+public class UserProfileStore {
+
+    private static final Logger log = LoggerFactory.getLogger(UserProfileStore.class);
+
+    /**
+     * Top billed actors of each rated movie that are weighted
+     */
+    public static final int ACTORS_PER_MOVIE = 3;
+
+    /**
+     * Weights closer to zero than this are dropped
+     */
+    private static final double ZERO_WEIGHT = 1e-9;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final FeedbackRepository feedbackRepository;
+    private final MovieRepository movieRepository;
+    private final int batchSize;
+    private final double dislikeWeight;
+    private final int maxActors;
+    private final int recentLikes;
+    private final Cache<String, UserProfile> cache;
+    private final Map<String, UserProfile> dirty = new ConcurrentHashMap<>();
+    private final DistributionSummary flushBatch;
+    private final Counter backfills;
+
+    public UserProfileStore(JdbcTemplate jdbcTemplate,
+                            ObjectMapper objectMapper,
+                            FeedbackRepository feedbackRepository,
+                            MovieRepository movieRepository,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.recommendations.profiles.cache-size:10000}") long cacheSize,
+                            @Value("${app.recommendations.profiles.expire-after-access-ms:1800000}") long expireAfterAccessMs,
+                            @Value("${app.recommendations.profiles.batch-size:500}") int batchSize,
+                            @Value("${app.recommendations.profiles.dislike-weight:0.5}") double dislikeWeight,
+                            @Value("${app.recommendations.profiles.max-actors:200}") int maxActors,
+                            @Value("${app.recommendations.profiles.recent-likes:50}") int recentLikes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.feedbackRepository = feedbackRepository;
+        this.movieRepository = movieRepository;
+        this.batchSize = batchSize;
+        this.dislikeWeight = dislikeWeight;
+        this.maxActors = maxActors;
+        this.recentLikes = recentLikes;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterAccess(Duration.ofMillis(expireAfterAccessMs))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "user-profiles");
+        Gauge.builder("movies.profiles.dirty", dirty, Map::size)
+                .description("Changed user profiles waiting to be written")
+                .register(meterRegistry);
+        this.flushBatch = DistributionSummary.builder("movies.profiles.flush.batch")
+                .description("User profiles written per flush statement")
+                .register(meterRegistry);
+        this.backfills = Counter.builder("movies.profiles.backfills")
+                .description("User profiles whose weights were rebuilt from the whole feedback history")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return The user's profile, {@link UserProfile#EMPTY} for an unknown user
+     */
+    public UserProfile get(String userId) {
+        return cache.get(userId, this::load);
+    }
+
+    /**
+     * Applies a change to the user's profile. The profile is marked dirty, with the next
+     * version, only when the change returns different content.
+     *
+     * @return The updated profile
+     */
+    public UserProfile update(String userId, UnaryOperator<UserProfile> change) {
+        return cache.asMap().compute(userId, (id, cached) -> {
+            UserProfile current = cached != null ? cached : load(id);
+            return markChanged(id, current, change.apply(current));
+        });
+    }
+
+    /**
+     * Moves the weights of the affected profiles by the difference each stored rating makes.
+     * Call it in the transaction that stored the ratings: a profile that is backfilled here reads
+     * them along with the rest of the history, and gets no delta on top.
+     *
+     * @param changes Ratings returned by {@link FeedbackRepository#upsertFeedback}
+     */
+    public void applyFeedback(List<FeedbackChange> changes) {
+        List<FeedbackChange> changed = changes.stream().filter(FeedbackChange::changed).toList();
+        if (changed.isEmpty()) {
+            return;
+        }
+        Map<String, LikedMovieFeatures> features = movieRepository.findFeaturesByMovie(
+                changed.stream().map(FeedbackChange::movieId).collect(Collectors.toSet()), ACTORS_PER_MOVIE);
+        Map<String, List<FeedbackChange>> byUser = changed.stream()
+                .collect(Collectors.groupingBy(FeedbackChange::userId));
+
+        // Registered first, so that a failure half way through still discards every applied delta
+        Map<String, UserProfile> applied = new ConcurrentHashMap<>();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        applied.forEach(UserProfileStore.this::discardAggregates);
+                    }
+                }
+            });
+        }
+        byUser.forEach((userId, userChanges) -> cache.asMap().compute(userId, (id, cached) -> {
+            UserProfile current = cached != null ? cached : loadStored(id);
+            UserProfile next = current.aggregated()
+                    ? withChanges(current, userChanges, features)
+                    : backfill(id, current);
+            UserProfile result = markChanged(id, current, next);
+            applied.put(id, result);
+            return result;
+        }));
+    }
+
+    @Scheduled(initialDelayString = "${app.recommendations.profiles.flush-interval-ms:1000}",
+               fixedDelayString = "${app.recommendations.profiles.flush-interval-ms:1000}")
+    public void flush() {
+        try {
+            while (!dirty.isEmpty()) {
+                List<Map.Entry<String, UserProfile>> batch = new ArrayList<>(batchSize);
+                for (Map.Entry<String, UserProfile> entry : dirty.entrySet()) {
+                    batch.add(Map.entry(entry.getKey(), entry.getValue()));
+                    if (batch.size() == batchSize) {
+                        break;
+                    }
+                }
+                write(batch);
+                // A profile changed again since it was taken stays dirty
+                batch.forEach(entry -> dirty.remove(entry.getKey(), entry.getValue()));
+            }
+        } catch (Exception e) {
+            log.warn("Failed to flush {} changed user profiles: {}", dirty.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void write(List<Map.Entry<String, UserProfile>> batch) throws JsonProcessingException {
+        String[] userIds = new String[batch.size()];
+        String[] profiles = new String[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            userIds[i] = batch.get(i).getKey();
+            profiles[i] = objectMapper.writeValueAsString(batch.get(i).getValue());
+        }
+        jdbcTemplate.update("""
+            INSERT INTO user_preferences (user_id, preferences)
+            SELECT p.user_id, p.preferences
+            FROM unnest(?::text[], ?::text[]::jsonb[]) AS p(user_id, preferences)
+            ON CONFLICT (user_id)
+            DO UPDATE SET preferences = EXCLUDED.preferences, updated_at = CURRENT_TIMESTAMP
+            WHERE COALESCE((user_preferences.preferences->>'version')::bigint, 0)
+                  < (EXCLUDED.preferences->>'version')::bigint
+            """,
+            userIds, profiles);
+        flushBatch.record(batch.size());
+    }
+
+    /**
+     * Gives a changed profile the next version and marks it dirty
+     */
+    private UserProfile markChanged(String userId, UserProfile current, UserProfile changed) {
+        if (changed.equals(current)) {
+            return current;
+        }
+        UserProfile next = changed.withVersion(current.version() + 1, Instant.now().toString());
+        dirty.put(userId, next);
+        return next;
+    }
+
+    /**
+     * Marks the weights of a profile for a rebuild after a rollback. The marker gets the next
+     * version, so it also replaces a profile that was flushed before the rollback, and the
+     * profile leaves the cache so that the next read rebuilds it.
+     *
+     * @param applied The profile as it was left by the rolled back changes
+     */
+    private void discardAggregates(String userId, UserProfile applied) {
+        cache.asMap().compute(userId, (id, cached) -> {
+            UserProfile current = cached != null ? cached : dirty.getOrDefault(id, applied);
+            if (current != null && current.aggregated()) {
+                dirty.put(id, current.withoutAggregates().withVersion(current.version() + 1, Instant.now().toString()));
+            }
+            return null;
+        });
+        log.debug("Discarded the weights of user {} after a rollback", userId);
+    }
+
+    private UserProfile withChanges(UserProfile profile, List<FeedbackChange> changes,
+                                    Map<String, LikedMovieFeatures> features) {
+        Map<String, Double> genreWeights = new HashMap<>(profile.genreWeights());
+        Map<String, UserProfile.ActorWeight> actors = new HashMap<>(profile.actors());
+        Set<String> likes = new LinkedHashSet<>();
+        for (FeedbackChange change : changes) {
+            double delta = contribution(change.liked())
+                    - (change.previous() == null ? 0 : contribution(change.previous()));
+            addWeights(genreWeights, actors, features.get(change.movieId()), delta);
+            if (change.liked()) {
+                likes.add(change.movieId());
+            }
+        }
+
+        // Newest first; a movie no longer liked leaves the list
+        Set<String> changedMovies = changes.stream().map(FeedbackChange::movieId).collect(Collectors.toSet());
+        profile.recentLikes().stream().filter(movieId -> !changedMovies.contains(movieId)).forEach(likes::add);
+        return profile.withAggregates(genreWeights, bounded(actors), likes.stream().limit(recentLikes).toList());
+    }
+
+    /**
+     * Rebuilds the weights from the user's whole feedback history
+     */
+    private UserProfile backfill(String userId, UserProfile profile) {
+        Map<String, Boolean> ratings = feedbackRepository.findRatings(userId);
+        Map<String, LikedMovieFeatures> features = movieRepository.findFeaturesByMovie(ratings.keySet(), ACTORS_PER_MOVIE);
+        Map<String, Double> genreWeights = new HashMap<>();
+        Map<String, UserProfile.ActorWeight> actors = new HashMap<>();
+        List<String> likes = new ArrayList<>();
+        ratings.forEach((movieId, liked) -> {
+            addWeights(genreWeights, actors, features.get(movieId), contribution(liked));
+            if (liked && likes.size() < recentLikes) {
+                likes.add(movieId);
+            }
+        });
+        backfills.increment();
+        log.debug("Backfilled the profile of user {} from {} ratings", userId, ratings.size());
+        return profile.withAggregates(genreWeights, bounded(actors), likes);
+    }
+
+    private double contribution(boolean liked) {
+        return liked ? 1 : -dislikeWeight;
+    }
+
+    private static void addWeights(Map<String, Double> genreWeights, Map<String, UserProfile.ActorWeight> actors,
+                                   LikedMovieFeatures movie, double delta) {
+        if (movie == null) {
+            return;
+        }
+        for (String genre : movie.genres()) {
+            double weight = genreWeights.getOrDefault(genre, 0.0) + delta;
+            if (Math.abs(weight) < ZERO_WEIGHT) {
+                genreWeights.remove(genre);
+            } else {
+                genreWeights.put(genre, weight);
+            }
+        }
+        movie.actors().forEach((nconst, name) -> {
+            UserProfile.ActorWeight actor = actors.get(nconst);
+            double weight = (actor == null ? 0 : actor.weight()) + delta;
+            if (Math.abs(weight) < ZERO_WEIGHT) {
+                actors.remove(nconst);
+            } else {
+                actors.put(nconst, new UserProfile.ActorWeight(name, weight));
+            }
+        });
+    }
+
+    /**
+     * Keeps the {@code max-actors} highest weighted actors. A dropped actor that is rated again
+     * starts over from the new rating.
+     */
+    private Map<String, UserProfile.ActorWeight> bounded(Map<String, UserProfile.ActorWeight> actors) {
+        if (actors.size() <= maxActors) {
+            return actors;
+        }
+        return actors.entrySet().stream()
+                .sorted(Comparator.comparingDouble(
+                        (Map.Entry<String, UserProfile.ActorWeight> entry) -> entry.getValue().weight()).reversed())
+                .limit(maxActors)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    /**
+     * Loads a profile, backfilling its weights if they were never computed
+     */
+    private UserProfile load(String userId) {
+        UserProfile stored = loadStored(userId);
+        if (stored.aggregated() || !feedbackRepository.hasRatings(userId)) {
+            return stored;
+        }
+        return markChanged(userId, stored, backfill(userId, stored));
+    }
+
+    private UserProfile loadStored(String userId) {
+        UserProfile pending = dirty.get(userId);
+        if (pending != null) {
+            return pending;
+        }
+        List<String> rows = jdbcTemplate.queryForList(
+            "SELECT preferences::text FROM user_preferences WHERE user_id = ?",
+            String.class, userId);
+        if (rows.isEmpty() || rows.get(0) == null) {
+            return UserProfile.EMPTY;
+        }
+        try {
+            return objectMapper.readValue(rows.get(0), UserProfile.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Ignoring unreadable preferences of user {}: {}", userId, e.getMessage());
+            return UserProfile.EMPTY;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+-- ===========================================
+-- Per-entry expiry of cached OMDb responses
+-- ===========================================
+
+-- Responses fetched by the warm-up job are cached for app.omdb.warmup.ttl instead of
+-- app.cache.ttl. NULL for rows cached before: those expire app.cache.ttl after fetched_at.
+ALTER TABLE omdb_cache ADD COLUMN IF NOT EXISTS expires_at TIMESTAMP;
@@ -0,0 +1,11 @@
+-- ===========================================
+-- Persistent tier of the OMDb response cache
+-- ===========================================
+
+CREATE TABLE IF NOT EXISTS omdb_cache (
+    imdb_id TEXT PRIMARY KEY,
+    payload JSONB NOT NULL,
+    fetched_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_omdb_cache_fetched_at ON omdb_cache(fetched_at);
@@ -0,0 +1,17 @@
+-- ===========================================
+-- Progress of the background OMDb warm-up job
+-- ===========================================
+
+CREATE TABLE IF NOT EXISTS omdb_warmup_checkpoint (
+    job_name TEXT PRIMARY KEY,
+    phase TEXT NOT NULL,           -- TOP_RATED, BY_VOTES or DONE
+    position INTEGER NOT NULL DEFAULT 0,
+    last_num_votes INTEGER,
+    last_tconst TEXT,
+    budget_day DATE NOT NULL,
+    requests_used INTEGER NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Lets the warm-up job walk titles by popularity with a keyset seek
+CREATE INDEX IF NOT EXISTS idx_title_ratings_votes ON title_ratings(num_votes DESC, tconst DESC);
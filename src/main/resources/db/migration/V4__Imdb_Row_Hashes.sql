@@ -0,0 +1,10 @@
+-- ===========================================
+-- Per-row hashes used by the IMDb delta sync
+-- ===========================================
+
+CREATE TABLE IF NOT EXISTS imdb_row_hash (
+    dataset TEXT NOT NULL,         -- table name, e.g. title_ratings
+    row_key TEXT NOT NULL,         -- tconst
+    row_hash BIGINT NOT NULL,      -- first 64 bits of md5 over the row
+    PRIMARY KEY (dataset, row_key)
+);
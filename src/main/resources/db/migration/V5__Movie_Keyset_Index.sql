@@ -0,0 +1,7 @@
+-- ===========================================
+-- Keyset pagination of movie listings
+-- ===========================================
+
+-- Matches ORDER BY average_rating DESC, num_votes DESC, tconst DESC so each page is an index seek
+CREATE INDEX IF NOT EXISTS idx_title_ratings_rating_votes
+    ON title_ratings(average_rating DESC, num_votes DESC, tconst DESC);
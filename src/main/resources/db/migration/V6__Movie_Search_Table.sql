@@ -0,0 +1,183 @@
+-- ===========================================
+-- Incrementally maintained movie search table
+-- ===========================================
+
+-- movie_search replaces movie_search_view, whose statement-level trigger re-ran
+-- REFRESH MATERIALIZED VIEW inside every write to title_basics. Row triggers now enqueue the
+-- affected titles and the application refreshes only those rows in batches.
+DROP TRIGGER IF EXISTS refresh_movie_search_after_update ON title_basics;
+DROP FUNCTION IF EXISTS trigger_refresh_movie_search() CASCADE;
+DROP FUNCTION IF EXISTS refresh_movie_search() CASCADE;
+DROP MATERIALIZED VIEW IF EXISTS movie_search_view CASCADE;
+
+CREATE TABLE IF NOT EXISTS movie_search (
+    tconst TEXT PRIMARY KEY,
+    primary_title TEXT,
+    original_title TEXT,
+    start_year INTEGER,
+    genres TEXT,
+    average_rating FLOAT,
+    num_votes INTEGER,
+    actors TEXT,
+    search_vector TSVECTOR
+);
+
+CREATE INDEX IF NOT EXISTS idx_movie_search_vector ON movie_search USING GIN (search_vector);
+
+-- Titles whose movie_search row is stale, drained in batches by the application
+CREATE TABLE IF NOT EXISTS movie_search_queue (
+    tconst TEXT PRIMARY KEY,
+    enqueued_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_movie_search_queue_enqueued_at ON movie_search_queue(enqueued_at);
+
+-- What a movie_search row should contain; filtering on tconst is pushed below the aggregation
+CREATE OR REPLACE VIEW movie_search_source AS
+SELECT 
+    tb.tconst, 
+    tb.primary_title, 
+    tb.original_title, 
+    tb.start_year, 
+    tb.genres, 
+    tr.average_rating, 
+    tr.num_votes, 
+    string_agg(DISTINCT n.primary_name, ', ' ORDER BY n.primary_name) AS actors, 
+    setweight(to_tsvector('english', COALESCE(tb.primary_title, '')), 'A') || 
+    setweight(to_tsvector('english', COALESCE(tb.original_title, '')), 'B') || 
+    setweight(to_tsvector('english', COALESCE(tb.genres, '')), 'C') || 
+    setweight(to_tsvector('english', COALESCE(string_agg(n.primary_name, ' '), '')), 'D') AS search_vector 
+FROM title_basics tb
+    LEFT JOIN title_ratings tr ON tb.tconst = tr.tconst 
+    LEFT JOIN title_principals tp ON tb.tconst = tp.tconst 
+    LEFT JOIN name_basics n ON tp.nconst = n.nconst 
+WHERE 
+    tb.title_type = 'movie' 
+GROUP BY tb.tconst, tb.primary_title, tb.original_title, tb.start_year, tb.genres, tr.average_rating, tr.num_votes;
+
+-- Recomputes the movie_search rows of the given titles
+CREATE OR REPLACE FUNCTION movie_search_refresh(tconsts TEXT[])
+RETURNS INTEGER AS $$
+DECLARE
+    refreshed INTEGER;
+BEGIN
+    DELETE FROM movie_search ms WHERE ms.tconst = ANY(tconsts);
+    INSERT INTO movie_search
+    SELECT * FROM movie_search_source s WHERE s.tconst = ANY(tconsts);
+    GET DIAGNOSTICS refreshed = ROW_COUNT;
+    RETURN refreshed;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Recomputes every movie_search row, e.g. after a bulk load that ran with triggers disabled
+CREATE OR REPLACE FUNCTION movie_search_rebuild()
+RETURNS VOID AS $$
+BEGIN
+    TRUNCATE movie_search_queue;
+    TRUNCATE movie_search;
+    INSERT INTO movie_search SELECT * FROM movie_search_source;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Row triggers on title_basics, title_ratings and title_principals: enqueue the affected title
+CREATE OR REPLACE FUNCTION movie_search_enqueue_title()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP <> 'INSERT' THEN
+        INSERT INTO movie_search_queue (tconst) VALUES (OLD.tconst) ON CONFLICT DO NOTHING;
+    END IF;
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO movie_search_queue (tconst) VALUES (NEW.tconst) ON CONFLICT DO NOTHING;
+    ELSIF TG_OP = 'UPDATE' AND NEW.tconst IS DISTINCT FROM OLD.tconst THEN
+        INSERT INTO movie_search_queue (tconst) VALUES (NEW.tconst) ON CONFLICT DO NOTHING;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Row trigger on name_basics: enqueue every title the person is credited on
+CREATE OR REPLACE FUNCTION movie_search_enqueue_name()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP <> 'INSERT' THEN
+        INSERT INTO movie_search_queue (tconst)
+        SELECT DISTINCT tp.tconst FROM title_principals tp WHERE tp.nconst = OLD.nconst
+        ON CONFLICT DO NOTHING;
+    END IF;
+    IF TG_OP = 'INSERT' OR (TG_OP = 'UPDATE' AND NEW.nconst IS DISTINCT FROM OLD.nconst) THEN
+        INSERT INTO movie_search_queue (tconst)
+        SELECT DISTINCT tp.tconst FROM title_principals tp WHERE tp.nconst = NEW.nconst
+        ON CONFLICT DO NOTHING;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS movie_search_title_basics ON title_basics;
+CREATE TRIGGER movie_search_title_basics
+AFTER INSERT OR DELETE OR UPDATE OF tconst, title_type, primary_title, original_title, start_year, genres
+ON title_basics
+FOR EACH ROW
+EXECUTE FUNCTION movie_search_enqueue_title();
+
+DROP TRIGGER IF EXISTS movie_search_title_ratings ON title_ratings;
+CREATE TRIGGER movie_search_title_ratings
+AFTER INSERT OR DELETE OR UPDATE OF tconst, average_rating, num_votes
+ON title_ratings
+FOR EACH ROW
+EXECUTE FUNCTION movie_search_enqueue_title();
+
+DROP TRIGGER IF EXISTS movie_search_title_principals ON title_principals;
+CREATE TRIGGER movie_search_title_principals
+AFTER INSERT OR DELETE OR UPDATE OF tconst, nconst
+ON title_principals
+FOR EACH ROW
+EXECUTE FUNCTION movie_search_enqueue_title();
+
+DROP TRIGGER IF EXISTS movie_search_name_basics ON name_basics;
+CREATE TRIGGER movie_search_name_basics
+AFTER INSERT OR DELETE OR UPDATE OF nconst, primary_name
+ON name_basics
+FOR EACH ROW
+EXECUTE FUNCTION movie_search_enqueue_name();
+
+-- =====================================
+-- Full-text search function
+-- =====================================
+
+CREATE OR REPLACE FUNCTION search_movies(query TEXT)
+RETURNS TABLE (
+    tconst TEXT,
+    primary_title TEXT,
+    original_title TEXT,
+    start_year INTEGER,
+    genres TEXT,
+    average_rating FLOAT,
+    num_votes INTEGER,
+    actors TEXT,
+    rank FLOAT
+) AS $$
+BEGIN
+    RETURN QUERY
+    SELECT
+        ms.tconst,
+        ms.primary_title,
+        ms.original_title,
+        ms.start_year,
+        ms.genres,
+        ms.average_rating,
+        ms.num_votes,
+        ms.actors,
+        ts_rank(ms.search_vector, websearch_to_tsquery('english', query))::FLOAT AS rank
+    FROM
+        movie_search ms
+    WHERE
+        ms.search_vector @@ websearch_to_tsquery('english', query)
+    ORDER BY
+        rank DESC,
+        ms.num_votes DESC
+    LIMIT 100;
+END;
+$$ LANGUAGE plpgsql;
+
+SELECT movie_search_rebuild();
@@ -0,0 +1,196 @@
+-- ===========================================
+-- Item-to-item co-like similarity
+-- ===========================================
+
+-- Statement triggers on user_feedback keep like and co-like counts current and enqueue the
+-- affected movies in item_neighbors_queue; the application recomputes their top-k neighbor lists.
+
+-- Users who like each movie
+CREATE TABLE IF NOT EXISTS item_like_counts (
+    movie_id TEXT PRIMARY KEY,
+    likes INTEGER NOT NULL
+);
+
+-- Users who like both movies; every pair is stored in both directions
+CREATE TABLE IF NOT EXISTS item_co_likes (
+    movie_a TEXT NOT NULL,
+    movie_b TEXT NOT NULL,
+    co_likes INTEGER NOT NULL,
+    PRIMARY KEY (movie_a, movie_b)
+);
+
+-- Most similar movies of each movie by cosine similarity of their likers
+CREATE TABLE IF NOT EXISTS item_neighbors (
+    movie_id TEXT NOT NULL,
+    neighbor_id TEXT NOT NULL,
+    similarity REAL NOT NULL,
+    PRIMARY KEY (movie_id, neighbor_id)
+);
+
+-- Movies whose neighbor list is stale, drained in batches by the application
+CREATE TABLE IF NOT EXISTS item_neighbors_queue (
+    movie_id TEXT PRIMARY KEY,
+    enqueued_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_item_neighbors_queue_enqueued_at ON item_neighbors_queue(enqueued_at);
+
+-- Applies like changes: +1 for a new like, -1 for a removed one, per (user, movie).
+-- The affected users are locked first, so concurrent feedback of one user is counted in turn
+-- and each statement sees the likes committed before it.
+CREATE OR REPLACE FUNCTION item_co_likes_apply(user_ids TEXT[], movie_ids TEXT[], deltas INTEGER[])
+RETURNS VOID AS $$
+BEGIN
+    IF user_ids IS NULL THEN
+        RETURN;
+    END IF;
+    PERFORM pg_advisory_xact_lock(hashtext(u.user_id))
+    FROM (SELECT DISTINCT unnest(user_ids) AS user_id ORDER BY 1) u;
+
+    WITH changed AS (
+        SELECT c.user_id, c.movie_id, SUM(c.delta)::INTEGER AS delta
+        FROM unnest(user_ids, movie_ids, deltas) AS c(user_id, movie_id, delta)
+        GROUP BY c.user_id, c.movie_id
+        HAVING SUM(c.delta) <> 0
+    ),
+    liked_after AS (
+        SELECT f.user_id::TEXT AS user_id, f.movie_id::TEXT AS movie_id
+        FROM user_feedback f
+        WHERE f.liked AND f.user_id IN (SELECT c.user_id FROM changed c)
+    ),
+    liked_before AS (
+        SELECT a.user_id, a.movie_id
+        FROM liked_after a
+        WHERE NOT EXISTS (SELECT 1 FROM changed c
+                          WHERE c.user_id = a.user_id AND c.movie_id = a.movie_id AND c.delta > 0)
+        UNION ALL
+        SELECT c.user_id, c.movie_id FROM changed c WHERE c.delta < 0
+    ),
+    -- Only pairs with a changed movie can differ between the two states
+    pair_deltas AS (
+        SELECT p.movie_a, p.movie_b, SUM(p.delta)::INTEGER AS delta
+        FROM (
+            SELECT a.movie_id AS movie_a, b.movie_id AS movie_b, 1 AS delta
+            FROM liked_after a
+            JOIN liked_after b ON b.user_id = a.user_id AND b.movie_id <> a.movie_id
+            WHERE EXISTS (SELECT 1 FROM changed c
+                          WHERE c.user_id = a.user_id AND c.movie_id IN (a.movie_id, b.movie_id))
+            UNION ALL
+            SELECT a.movie_id, b.movie_id, -1
+            FROM liked_before a
+            JOIN liked_before b ON b.user_id = a.user_id AND b.movie_id <> a.movie_id
+            WHERE EXISTS (SELECT 1 FROM changed c
+                          WHERE c.user_id = a.user_id AND c.movie_id IN (a.movie_id, b.movie_id))
+        ) p
+        GROUP BY p.movie_a, p.movie_b
+        HAVING SUM(p.delta) <> 0
+    ),
+    counted AS (
+        INSERT INTO item_like_counts AS l (movie_id, likes)
+        SELECT c.movie_id, SUM(c.delta) FROM changed c GROUP BY c.movie_id
+        ON CONFLICT (movie_id) DO UPDATE SET likes = l.likes + EXCLUDED.likes
+    ),
+    co_counted AS (
+        INSERT INTO item_co_likes AS co (movie_a, movie_b, co_likes)
+        SELECT d.movie_a, d.movie_b, d.delta FROM pair_deltas d
+        ON CONFLICT (movie_a, movie_b) DO UPDATE SET co_likes = co.co_likes + EXCLUDED.co_likes
+    )
+    INSERT INTO item_neighbors_queue (movie_id)
+    SELECT c.movie_id FROM changed c
+    UNION
+    SELECT d.movie_a FROM pair_deltas d
+    ON CONFLICT DO NOTHING;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Statement triggers on user_feedback: collect like changes from the transition tables
+CREATE OR REPLACE FUNCTION item_co_likes_track()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM item_co_likes_apply(array_agg(n.user_id::TEXT), array_agg(n.movie_id::TEXT), array_agg(1))
+        FROM new_rows n WHERE n.liked;
+    ELSIF TG_OP = 'DELETE' THEN
+        PERFORM item_co_likes_apply(array_agg(o.user_id::TEXT), array_agg(o.movie_id::TEXT), array_agg(-1))
+        FROM old_rows o WHERE o.liked;
+    ELSE
+        PERFORM item_co_likes_apply(array_agg(c.user_id::TEXT), array_agg(c.movie_id::TEXT), array_agg(c.delta))
+        FROM (
+            SELECT n.user_id, n.movie_id, 1 AS delta FROM new_rows n WHERE n.liked
+            UNION ALL
+            SELECT o.user_id, o.movie_id, -1 FROM old_rows o WHERE o.liked
+        ) c;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS item_co_likes_insert ON user_feedback;
+CREATE TRIGGER item_co_likes_insert
+AFTER INSERT ON user_feedback
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE FUNCTION item_co_likes_track();
+
+DROP TRIGGER IF EXISTS item_co_likes_update ON user_feedback;
+CREATE TRIGGER item_co_likes_update
+AFTER UPDATE ON user_feedback
+REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE FUNCTION item_co_likes_track();
+
+DROP TRIGGER IF EXISTS item_co_likes_delete ON user_feedback;
+CREATE TRIGGER item_co_likes_delete
+AFTER DELETE ON user_feedback
+REFERENCING OLD TABLE AS old_rows
+FOR EACH STATEMENT
+EXECUTE FUNCTION item_co_likes_track();
+
+-- Recomputes the neighbor lists of the given movies, keeping the top `neighbors` of each
+CREATE OR REPLACE FUNCTION item_neighbors_refresh(movie_ids TEXT[], neighbors INTEGER)
+RETURNS INTEGER AS $$
+DECLARE
+    refreshed INTEGER;
+BEGIN
+    DELETE FROM item_co_likes co WHERE co.movie_a = ANY(movie_ids) AND co.co_likes <= 0;
+    DELETE FROM item_like_counts l WHERE l.movie_id = ANY(movie_ids) AND l.likes <= 0;
+    DELETE FROM item_neighbors n WHERE n.movie_id = ANY(movie_ids);
+    INSERT INTO item_neighbors (movie_id, neighbor_id, similarity)
+    SELECT ranked.movie_a, ranked.movie_b, ranked.similarity
+    FROM (
+        SELECT co.movie_a, co.movie_b, s.similarity,
+               row_number() OVER (PARTITION BY co.movie_a ORDER BY s.similarity DESC, co.movie_b) AS rank
+        FROM item_co_likes co
+        JOIN item_like_counts la ON la.movie_id = co.movie_a
+        JOIN item_like_counts lb ON lb.movie_id = co.movie_b
+        CROSS JOIN LATERAL (SELECT (co.co_likes / sqrt(la.likes::FLOAT * lb.likes))::REAL AS similarity) s
+        WHERE co.movie_a = ANY(movie_ids) AND co.co_likes > 0 AND la.likes > 0 AND lb.likes > 0
+    ) ranked
+    WHERE ranked.rank <= neighbors;
+    GET DIAGNOSTICS refreshed = ROW_COUNT;
+    RETURN refreshed;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Recomputes all counts and neighbor lists from user_feedback
+CREATE OR REPLACE FUNCTION item_co_likes_rebuild(neighbors INTEGER)
+RETURNS VOID AS $$
+BEGIN
+    TRUNCATE item_neighbors_queue;
+    TRUNCATE item_neighbors;
+    TRUNCATE item_co_likes;
+    TRUNCATE item_like_counts;
+    INSERT INTO item_like_counts (movie_id, likes)
+    SELECT f.movie_id, COUNT(*) FROM user_feedback f WHERE f.liked GROUP BY f.movie_id;
+    INSERT INTO item_co_likes (movie_a, movie_b, co_likes)
+    SELECT a.movie_id, b.movie_id, COUNT(*)
+    FROM user_feedback a
+    JOIN user_feedback b ON b.user_id = a.user_id AND b.movie_id <> a.movie_id
+    WHERE a.liked AND b.liked
+    GROUP BY a.movie_id, b.movie_id;
+    PERFORM item_neighbors_refresh(ARRAY(SELECT l.movie_id FROM item_like_counts l), neighbors);
+END;
+$$ LANGUAGE plpgsql;
+
+-- Counts and neighbor lists for the feedback recorded so far
+SELECT item_co_likes_rebuild(50);
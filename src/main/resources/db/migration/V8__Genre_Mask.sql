@@ -0,0 +1,99 @@
+-- ===========================================
+-- Genre dictionary and per-title genre bitmask
+-- ===========================================
+
+-- Genre filters and genre-overlap scoring test bits of title_basics.genre_mask instead of
+-- matching substrings of title_basics.genres.
+ALTER TABLE title_basics ADD COLUMN IF NOT EXISTS genre_mask BIGINT NOT NULL DEFAULT 0;
+
+-- Genre bits; every IMDb genre gets a fixed bit of title_basics.genre_mask
+CREATE TABLE IF NOT EXISTS genre_dictionary (
+    genre TEXT PRIMARY KEY,
+    bit SMALLINT NOT NULL UNIQUE CHECK (bit BETWEEN 0 AND 62)
+);
+
+INSERT INTO genre_dictionary (genre, bit) VALUES
+    ('Action', 0), ('Adult', 1), ('Adventure', 2), ('Animation', 3), ('Biography', 4),
+    ('Comedy', 5), ('Crime', 6), ('Documentary', 7), ('Drama', 8), ('Family', 9),
+    ('Fantasy', 10), ('Film-Noir', 11), ('Game-Show', 12), ('History', 13), ('Horror', 14),
+    ('Music', 15), ('Musical', 16), ('Mystery', 17), ('News', 18), ('Reality-TV', 19),
+    ('Romance', 20), ('Sci-Fi', 21), ('Short', 22), ('Sport', 23), ('Talk-Show', 24),
+    ('Thriller', 25), ('War', 26), ('Western', 27)
+ON CONFLICT DO NOTHING;
+
+-- Mask of a comma separated genre list; genres not in the dictionary yet are given the next free bit
+CREATE OR REPLACE FUNCTION genre_mask_of(genre_list TEXT)
+RETURNS BIGINT AS $$
+DECLARE
+    mask BIGINT := 0;
+    genre_name TEXT;
+    genre_bit SMALLINT;
+BEGIN
+    IF genre_list IS NULL THEN
+        RETURN 0;
+    END IF;
+    FOREACH genre_name IN ARRAY string_to_array(genre_list, ',') LOOP
+        genre_name := trim(genre_name);
+        CONTINUE WHEN genre_name = '';
+        SELECT d.bit INTO genre_bit FROM genre_dictionary d WHERE d.genre = genre_name;
+        IF genre_bit IS NULL THEN
+            LOCK TABLE genre_dictionary IN SHARE ROW EXCLUSIVE MODE;
+            INSERT INTO genre_dictionary (genre, bit)
+            SELECT genre_name, COALESCE(MAX(d.bit) + 1, 0) FROM genre_dictionary d
+            HAVING COALESCE(MAX(d.bit) + 1, 0) <= 62
+            ON CONFLICT (genre) DO NOTHING;
+            SELECT d.bit INTO genre_bit FROM genre_dictionary d WHERE d.genre = genre_name;
+        END IF;
+        IF genre_bit IS NOT NULL THEN
+            mask := mask | (1::BIGINT << genre_bit);
+        END IF;
+    END LOOP;
+    RETURN mask;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Mask of the named genres, matched case-insensitively; unknown names add nothing
+CREATE OR REPLACE FUNCTION genre_mask_lookup(genre_names TEXT[])
+RETURNS BIGINT AS $$
+    SELECT COALESCE(bit_or(1::BIGINT << d.bit), 0)
+    FROM genre_dictionary d
+    WHERE lower(d.genre) = ANY(SELECT lower(trim(g)) FROM unnest(genre_names) AS g);
+$$ LANGUAGE sql STABLE;
+
+-- Row trigger on title_basics: keep genre_mask in step with genres
+CREATE OR REPLACE FUNCTION title_basics_set_genre_mask()
+RETURNS TRIGGER AS $$
+BEGIN
+    NEW.genre_mask := genre_mask_of(NEW.genres);
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS title_basics_genre_mask ON title_basics;
+CREATE TRIGGER title_basics_genre_mask
+BEFORE INSERT OR UPDATE OF genres
+ON title_basics
+FOR EACH ROW
+EXECUTE FUNCTION title_basics_set_genre_mask();
+
+-- Recomputes every genre_mask, once per distinct genre list, e.g. after a bulk load that ran
+-- with triggers disabled
+CREATE OR REPLACE FUNCTION title_basics_fill_genre_masks()
+RETURNS VOID AS $$
+BEGIN
+    UPDATE title_basics t
+    SET genre_mask = m.mask
+    FROM (
+        SELECT d.genres, genre_mask_of(d.genres) AS mask
+        FROM (SELECT DISTINCT tb.genres FROM title_basics tb WHERE tb.genres IS NOT NULL) d
+    ) m
+    WHERE t.genres = m.genres AND t.genre_mask IS DISTINCT FROM m.mask;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Compact copy of the movie masks, so genre filters can scan the index instead of the table
+CREATE INDEX IF NOT EXISTS idx_title_basics_movie_genre_mask
+    ON title_basics (genre_mask) INCLUDE (tconst)
+    WHERE title_type = 'movie';
+
+SELECT title_basics_fill_genre_masks();
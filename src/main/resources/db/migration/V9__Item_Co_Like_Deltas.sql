@@ -0,0 +1,143 @@
+-- ===========================================
+-- Co-like count deltas folded off the request path
+-- ===========================================
+
+-- item_co_likes_apply used to upsert item_like_counts and item_co_likes from every feedback
+-- transaction. Two transactions touching the same movies in different orders could deadlock on
+-- those rows, and popular movies serialized all feedback. The triggers now append raw deltas;
+-- the application folds them into the counters in batches, in key order.
+
+-- Like and co-like count changes not folded into the counters yet, appended by feedback
+-- transactions and folded in batches by the application
+CREATE TABLE IF NOT EXISTS item_co_like_deltas (
+    id BIGSERIAL PRIMARY KEY,
+    movie_a TEXT NOT NULL,
+    movie_b TEXT,                -- NULL for a change of the like count of movie_a
+    delta INTEGER NOT NULL
+);
+
+-- Records like changes: +1 for a new like, -1 for a removed one, per (user, movie).
+-- The affected users are locked first, so concurrent feedback of one user is counted in turn
+-- and each statement sees the likes committed before it. Only raw deltas are appended here;
+-- feedback transactions never update the shared counters, so they cannot deadlock on them.
+CREATE OR REPLACE FUNCTION item_co_likes_apply(user_ids TEXT[], movie_ids TEXT[], deltas INTEGER[])
+RETURNS VOID AS $$
+BEGIN
+    IF user_ids IS NULL THEN
+        RETURN;
+    END IF;
+    PERFORM pg_advisory_xact_lock(hashtext(u.user_id))
+    FROM (SELECT DISTINCT unnest(user_ids) AS user_id ORDER BY 1) u;
+
+    WITH changed AS (
+        SELECT c.user_id, c.movie_id, SUM(c.delta)::INTEGER AS delta
+        FROM unnest(user_ids, movie_ids, deltas) AS c(user_id, movie_id, delta)
+        GROUP BY c.user_id, c.movie_id
+        HAVING SUM(c.delta) <> 0
+    ),
+    liked_after AS (
+        SELECT f.user_id::TEXT AS user_id, f.movie_id::TEXT AS movie_id
+        FROM user_feedback f
+        WHERE f.liked AND f.user_id IN (SELECT c.user_id FROM changed c)
+    ),
+    liked_before AS (
+        SELECT a.user_id, a.movie_id
+        FROM liked_after a
+        WHERE NOT EXISTS (SELECT 1 FROM changed c
+                          WHERE c.user_id = a.user_id AND c.movie_id = a.movie_id AND c.delta > 0)
+        UNION ALL
+        SELECT c.user_id, c.movie_id FROM changed c WHERE c.delta < 0
+    ),
+    -- Only pairs with a changed movie can differ between the two states
+    pair_deltas AS (
+        SELECT p.movie_a, p.movie_b, SUM(p.delta)::INTEGER AS delta
+        FROM (
+            SELECT a.movie_id AS movie_a, b.movie_id AS movie_b, 1 AS delta
+            FROM liked_after a
+            JOIN liked_after b ON b.user_id = a.user_id AND b.movie_id <> a.movie_id
+            WHERE EXISTS (SELECT 1 FROM changed c
+                          WHERE c.user_id = a.user_id AND c.movie_id IN (a.movie_id, b.movie_id))
+            UNION ALL
+            SELECT a.movie_id, b.movie_id, -1
+            FROM liked_before a
+            JOIN liked_before b ON b.user_id = a.user_id AND b.movie_id <> a.movie_id
+            WHERE EXISTS (SELECT 1 FROM changed c
+                          WHERE c.user_id = a.user_id AND c.movie_id IN (a.movie_id, b.movie_id))
+        ) p
+        GROUP BY p.movie_a, p.movie_b
+        HAVING SUM(p.delta) <> 0
+    )
+    INSERT INTO item_co_like_deltas (movie_a, movie_b, delta)
+    SELECT c.movie_id, NULL, SUM(c.delta)::INTEGER FROM changed c GROUP BY c.movie_id
+    UNION ALL
+    SELECT d.movie_a, d.movie_b, d.delta FROM pair_deltas d;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Folds up to `batch` deltas into the counters and enqueues the movies whose neighbor list they
+-- change. Deltas are claimed with SKIP LOCKED and the counters are upserted in key order, so
+-- concurrent folds neither count a delta twice nor deadlock.
+CREATE OR REPLACE FUNCTION item_co_likes_fold(batch INTEGER)
+RETURNS INTEGER AS $$
+DECLARE
+    folded INTEGER;
+BEGIN
+    WITH claimed AS (
+        DELETE FROM item_co_like_deltas
+        WHERE id IN (
+            SELECT d.id FROM item_co_like_deltas d
+            ORDER BY d.id
+            LIMIT batch
+            FOR UPDATE SKIP LOCKED
+        )
+        RETURNING movie_a, movie_b, delta
+    ),
+    counted AS (
+        INSERT INTO item_like_counts AS l (movie_id, likes)
+        SELECT c.movie_a, SUM(c.delta) FROM claimed c
+        WHERE c.movie_b IS NULL
+        GROUP BY c.movie_a
+        HAVING SUM(c.delta) <> 0
+        ORDER BY c.movie_a
+        ON CONFLICT (movie_id) DO UPDATE SET likes = l.likes + EXCLUDED.likes
+    ),
+    co_counted AS (
+        INSERT INTO item_co_likes AS co (movie_a, movie_b, co_likes)
+        SELECT c.movie_a, c.movie_b, SUM(c.delta) FROM claimed c
+        WHERE c.movie_b IS NOT NULL
+        GROUP BY c.movie_a, c.movie_b
+        HAVING SUM(c.delta) <> 0
+        ORDER BY c.movie_a, c.movie_b
+        ON CONFLICT (movie_a, movie_b) DO UPDATE SET co_likes = co.co_likes + EXCLUDED.co_likes
+    ),
+    queued AS (
+        INSERT INTO item_neighbors_queue (movie_id)
+        SELECT DISTINCT c.movie_a FROM claimed c
+        ORDER BY 1
+        ON CONFLICT DO NOTHING
+    )
+    SELECT COUNT(*) INTO folded FROM claimed;
+    RETURN folded;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Recomputes all counts and neighbor lists from user_feedback
+CREATE OR REPLACE FUNCTION item_co_likes_rebuild(neighbors INTEGER)
+RETURNS VOID AS $$
+BEGIN
+    TRUNCATE item_co_like_deltas;
+    TRUNCATE item_neighbors_queue;
+    TRUNCATE item_neighbors;
+    TRUNCATE item_co_likes;
+    TRUNCATE item_like_counts;
+    INSERT INTO item_like_counts (movie_id, likes)
+    SELECT f.movie_id, COUNT(*) FROM user_feedback f WHERE f.liked GROUP BY f.movie_id;
+    INSERT INTO item_co_likes (movie_a, movie_b, co_likes)
+    SELECT a.movie_id, b.movie_id, COUNT(*)
+    FROM user_feedback a
+    JOIN user_feedback b ON b.user_id = a.user_id AND b.movie_id <> a.movie_id
+    WHERE a.liked AND b.liked
+    GROUP BY a.movie_id, b.movie_id;
+    PERFORM item_neighbors_refresh(ARRAY(SELECT l.movie_id FROM item_like_counts l), neighbors);
+END;
+$$ LANGUAGE plpgsql;
@@ -9,6 +9,14 @@ DROP TABLE IF EXISTS title_ratings CASCADE;
 DROP TABLE IF EXISTS title_principals CASCADE;
 DROP TABLE IF EXISTS title_basics CASCADE;
 DROP TABLE IF EXISTS name_basics CASCADE;
+DROP TABLE IF EXISTS movie_search_queue CASCADE;
+DROP TABLE IF EXISTS movie_search CASCADE;
+DROP TABLE IF EXISTS item_co_like_deltas CASCADE;
+DROP TABLE IF EXISTS item_neighbors_queue CASCADE;
+DROP TABLE IF EXISTS item_neighbors CASCADE;
+DROP TABLE IF EXISTS item_co_likes CASCADE;
+DROP TABLE IF EXISTS item_like_counts CASCADE;
+DROP TABLE IF EXISTS genre_dictionary CASCADE;
 
 CREATE TABLE IF NOT EXISTS name_basics (
     nconst TEXT PRIMARY KEY,
@@ -28,7 +36,8 @@ CREATE TABLE IF NOT EXISTS title_basics (
     start_year INTEGER,
     end_year INTEGER,
     runtime_minutes INTEGER,
-    genres TEXT
+    genres TEXT,
+    genre_mask BIGINT NOT NULL DEFAULT 0
 );
 
 CREATE TABLE IF NOT EXISTS title_principals (
@@ -67,6 +76,43 @@ CREATE TABLE IF NOT EXISTS user_feedback (
     UNIQUE(user_id, movie_id)
 );
 
+-- =====================================
+-- OMDb Cache Tables
+-- =====================================
+
+-- Not dropped above: cached OMDb responses should survive restarts
+CREATE TABLE IF NOT EXISTS omdb_cache (
+    imdb_id TEXT PRIMARY KEY,
+    payload JSONB NOT NULL,
+    fetched_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    expires_at TIMESTAMP
+);
+
+-- NULL for rows cached before entries had their own expiry: those expire app.cache.ttl after fetched_at
+ALTER TABLE omdb_cache ADD COLUMN IF NOT EXISTS expires_at TIMESTAMP;
+
+CREATE TABLE IF NOT EXISTS omdb_warmup_checkpoint (
+    job_name TEXT PRIMARY KEY,
+    phase TEXT NOT NULL,
+    position INTEGER NOT NULL DEFAULT 0,
+    last_num_votes INTEGER,
+    last_tconst TEXT,
+    budget_day DATE NOT NULL,
+    requests_used INTEGER NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- =====================================
+-- IMDb Sync Tables
+-- =====================================
+
+CREATE TABLE IF NOT EXISTS imdb_row_hash (
+    dataset TEXT NOT NULL,
+    row_key TEXT NOT NULL,
+    row_hash BIGINT NOT NULL,
+    PRIMARY KEY (dataset, row_key)
+);
+
 -- =====================================
 -- Indexes
 -- =====================================
@@ -75,17 +121,53 @@ CREATE INDEX IF NOT EXISTS idx_name_basics_primary_name ON name_basics(primary_n
 CREATE INDEX IF NOT EXISTS idx_title_basics_primary_title ON title_basics(primary_title);
 CREATE INDEX IF NOT EXISTS idx_title_principals_nconst ON title_principals(nconst);
 CREATE INDEX IF NOT EXISTS idx_title_ratings_rating ON title_ratings(average_rating);
+CREATE INDEX IF NOT EXISTS idx_title_ratings_votes ON title_ratings(num_votes DESC, tconst DESC);
+CREATE INDEX IF NOT EXISTS idx_title_ratings_rating_votes ON title_ratings(average_rating DESC, num_votes DESC, tconst DESC);
 CREATE INDEX IF NOT EXISTS idx_user_feedback_user_id ON user_feedback(user_id);
 CREATE INDEX IF NOT EXISTS idx_user_feedback_movie_id ON user_feedback(movie_id);
+CREATE INDEX IF NOT EXISTS idx_omdb_cache_fetched_at ON omdb_cache(fetched_at);
 
 -- Enable pg_trgm for text search
 CREATE EXTENSION IF NOT EXISTS pg_trgm;
 
 CREATE INDEX IF NOT EXISTS idx_title_basics_gin ON title_basics USING GIN (primary_title gin_trgm_ops);
--- Materialized View for Movie Search
+
+-- =====================================
+-- Movie Search Table
+-- Kept up to date row by row: triggers enqueue changed titles in movie_search_queue and the
+-- application refreshes them in batches
 -- =====================================
 
-CREATE MATERIALIZED VIEW IF NOT EXISTS movie_search_view AS 
+-- Replaced by movie_search
+DROP TRIGGER IF EXISTS refresh_movie_search_after_update ON title_basics;
+DROP FUNCTION IF EXISTS trigger_refresh_movie_search() CASCADE;
+DROP FUNCTION IF EXISTS refresh_movie_search() CASCADE;
+DROP MATERIALIZED VIEW IF EXISTS movie_search_view CASCADE;
+
+CREATE TABLE IF NOT EXISTS movie_search (
+    tconst TEXT PRIMARY KEY,
+    primary_title TEXT,
+    original_title TEXT,
+    start_year INTEGER,
+    genres TEXT,
+    average_rating FLOAT,
+    num_votes INTEGER,
+    actors TEXT,
+    search_vector TSVECTOR
+);
+
+CREATE INDEX IF NOT EXISTS idx_movie_search_vector ON movie_search USING GIN (search_vector);
+
+-- Titles whose movie_search row is stale, drained in batches by the application
+CREATE TABLE IF NOT EXISTS movie_search_queue (
+    tconst TEXT PRIMARY KEY,
+    enqueued_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_movie_search_queue_enqueued_at ON movie_search_queue(enqueued_at);
+
+-- What a movie_search row should contain; filtering on tconst is pushed below the aggregation
+CREATE OR REPLACE VIEW movie_search_source AS
 SELECT 
     tb.tconst, 
     tb.primary_title, 
@@ -95,8 +177,8 @@ SELECT
     tr.average_rating, 
     tr.num_votes, 
     string_agg(DISTINCT n.primary_name, ', ' ORDER BY n.primary_name) AS actors, 
-    setweight(to_tsvector('english', tb.primary_title), 'A') || 
-    setweight(to_tsvector('english', tb.original_title), 'B') || 
+    setweight(to_tsvector('english', COALESCE(tb.primary_title, '')), 'A') || 
+    setweight(to_tsvector('english', COALESCE(tb.original_title, '')), 'B') || 
     setweight(to_tsvector('english', COALESCE(tb.genres, '')), 'C') || 
     setweight(to_tsvector('english', COALESCE(string_agg(n.primary_name, ' '), '')), 'D') AS search_vector 
 FROM title_basics tb
@@ -107,46 +189,92 @@ WHERE
     tb.title_type = 'movie' 
 GROUP BY tb.tconst, tb.primary_title, tb.original_title, tb.start_year, tb.genres, tr.average_rating, tr.num_votes;
 
-CREATE INDEX IF NOT EXISTS idx_movie_search_vector ON movie_search_view USING GIN (search_vector);
-
--- Unique index required for concurrent refresh
-CREATE UNIQUE INDEX IF NOT EXISTS idx_movie_search_tconst 
-ON movie_search_view (tconst);
-
--- =====================================
--- Functions & Triggers
--- Function and Trigger for refreshing materialized view
+-- Recomputes the movie_search rows of the given titles
+CREATE OR REPLACE FUNCTION movie_search_refresh(tconsts TEXT[])
+RETURNS INTEGER AS $$
+DECLARE
+    refreshed INTEGER;
+BEGIN
+    DELETE FROM movie_search ms WHERE ms.tconst = ANY(tconsts);
+    INSERT INTO movie_search
+    SELECT * FROM movie_search_source s WHERE s.tconst = ANY(tconsts);
+    GET DIAGNOSTICS refreshed = ROW_COUNT;
+    RETURN refreshed;
+END;
+$$ LANGUAGE plpgsql;
 
--- Drop existing functions first (safe cleanup)
-DROP FUNCTION IF EXISTS refresh_movie_search() CASCADE;
-DROP TRIGGER IF EXISTS refresh_movie_search_after_update ON title_basics;
-DROP FUNCTION IF EXISTS trigger_refresh_movie_search() CASCADE;
+-- Recomputes every movie_search row, e.g. after a bulk load that ran with triggers disabled
+CREATE OR REPLACE FUNCTION movie_search_rebuild()
+RETURNS VOID AS $$
+BEGIN
+    TRUNCATE movie_search_queue;
+    TRUNCATE movie_search;
+    INSERT INTO movie_search SELECT * FROM movie_search_source;
+END;
+$$ LANGUAGE plpgsql;
 
--- Create refresh function
-CREATE OR REPLACE FUNCTION refresh_movie_search()
-RETURNS VOID
-LANGUAGE plpgsql
-AS $$
+-- Row triggers on title_basics, title_ratings and title_principals: enqueue the affected title
+CREATE OR REPLACE FUNCTION movie_search_enqueue_title()
+RETURNS TRIGGER AS $$
 BEGIN
-    REFRESH MATERIALIZED VIEW CONCURRENTLY movie_search_view;
+    IF TG_OP <> 'INSERT' THEN
+        INSERT INTO movie_search_queue (tconst) VALUES (OLD.tconst) ON CONFLICT DO NOTHING;
+    END IF;
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO movie_search_queue (tconst) VALUES (NEW.tconst) ON CONFLICT DO NOTHING;
+    ELSIF TG_OP = 'UPDATE' AND NEW.tconst IS DISTINCT FROM OLD.tconst THEN
+        INSERT INTO movie_search_queue (tconst) VALUES (NEW.tconst) ON CONFLICT DO NOTHING;
+    END IF;
+    RETURN NULL;
 END;
-$$;
+$$ LANGUAGE plpgsql;
 
--- Create trigger function
-CREATE OR REPLACE FUNCTION trigger_refresh_movie_search()
+-- Row trigger on name_basics: enqueue every title the person is credited on
+CREATE OR REPLACE FUNCTION movie_search_enqueue_name()
 RETURNS TRIGGER AS $$
 BEGIN
-    PERFORM refresh_movie_search();
+    IF TG_OP <> 'INSERT' THEN
+        INSERT INTO movie_search_queue (tconst)
+        SELECT DISTINCT tp.tconst FROM title_principals tp WHERE tp.nconst = OLD.nconst
+        ON CONFLICT DO NOTHING;
+    END IF;
+    IF TG_OP = 'INSERT' OR (TG_OP = 'UPDATE' AND NEW.nconst IS DISTINCT FROM OLD.nconst) THEN
+        INSERT INTO movie_search_queue (tconst)
+        SELECT DISTINCT tp.tconst FROM title_principals tp WHERE tp.nconst = NEW.nconst
+        ON CONFLICT DO NOTHING;
+    END IF;
     RETURN NULL;
 END;
 $$ LANGUAGE plpgsql;
 
--- Create trigger
-CREATE TRIGGER refresh_movie_search_after_update
-AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE
+DROP TRIGGER IF EXISTS movie_search_title_basics ON title_basics;
+CREATE TRIGGER movie_search_title_basics
+AFTER INSERT OR DELETE OR UPDATE OF tconst, title_type, primary_title, original_title, start_year, genres
 ON title_basics
-FOR EACH STATEMENT
-EXECUTE FUNCTION trigger_refresh_movie_search();
+FOR EACH ROW
+EXECUTE FUNCTION movie_search_enqueue_title();
+
+DROP TRIGGER IF EXISTS movie_search_title_ratings ON title_ratings;
+CREATE TRIGGER movie_search_title_ratings
+AFTER INSERT OR DELETE OR UPDATE OF tconst, average_rating, num_votes
+ON title_ratings
+FOR EACH ROW
+EXECUTE FUNCTION movie_search_enqueue_title();
+
+DROP TRIGGER IF EXISTS movie_search_title_principals ON title_principals;
+CREATE TRIGGER movie_search_title_principals
+AFTER INSERT OR DELETE OR UPDATE OF tconst, nconst
+ON title_principals
+FOR EACH ROW
+EXECUTE FUNCTION movie_search_enqueue_title();
+
+DROP TRIGGER IF EXISTS movie_search_name_basics ON name_basics;
+CREATE TRIGGER movie_search_name_basics
+AFTER INSERT OR DELETE OR UPDATE OF nconst, primary_name
+ON name_basics
+FOR EACH ROW
+EXECUTE FUNCTION movie_search_enqueue_name();
+
 -- =====================================
 -- Full-text search function
 -- =====================================
@@ -166,22 +294,356 @@ RETURNS TABLE (
 BEGIN
     RETURN QUERY
     SELECT
-        msv.tconst,
-        msv.primary_title,
-        msv.original_title,
-        msv.start_year,
-        msv.genres,
-        msv.average_rating,
-        msv.num_votes,
-        msv.actors,
-        ts_rank(msv.search_vector, websearch_to_tsquery('english', query)) AS rank
+        ms.tconst,
+        ms.primary_title,
+        ms.original_title,
+        ms.start_year,
+        ms.genres,
+        ms.average_rating,
+        ms.num_votes,
+        ms.actors,
+        ts_rank(ms.search_vector, websearch_to_tsquery('english', query))::FLOAT AS rank
     FROM
-        movie_search_view msv
+        movie_search ms
     WHERE
-        msv.search_vector @@ websearch_to_tsquery('english', query)
+        ms.search_vector @@ websearch_to_tsquery('english', query)
     ORDER BY
         rank DESC,
-        msv.num_votes DESC
+        ms.num_votes DESC
     LIMIT 100;
 END;
 $$ LANGUAGE plpgsql;
+
+-- =====================================
+-- Item-to-item co-like similarity
+-- Statement triggers on user_feedback append like and co-like count deltas to
+-- item_co_like_deltas; the application folds them into the counters, which enqueues the
+-- affected movies in item_neighbors_queue, and recomputes their top-k neighbor lists
+-- =====================================
+
+-- Users who like each movie
+CREATE TABLE IF NOT EXISTS item_like_counts (
+    movie_id TEXT PRIMARY KEY,
+    likes INTEGER NOT NULL
+);
+
+-- Users who like both movies; every pair is stored in both directions
+CREATE TABLE IF NOT EXISTS item_co_likes (
+    movie_a TEXT NOT NULL,
+    movie_b TEXT NOT NULL,
+    co_likes INTEGER NOT NULL,
+    PRIMARY KEY (movie_a, movie_b)
+);
+
+-- Most similar movies of each movie by cosine similarity of their likers
+CREATE TABLE IF NOT EXISTS item_neighbors (
+    movie_id TEXT NOT NULL,
+    neighbor_id TEXT NOT NULL,
+    similarity REAL NOT NULL,
+    PRIMARY KEY (movie_id, neighbor_id)
+);
+
+-- Movies whose neighbor list is stale, drained in batches by the application
+CREATE TABLE IF NOT EXISTS item_neighbors_queue (
+    movie_id TEXT PRIMARY KEY,
+    enqueued_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_item_neighbors_queue_enqueued_at ON item_neighbors_queue(enqueued_at);
+
+-- Like and co-like count changes not folded into the counters yet, appended by feedback
+-- transactions and folded in batches by the application
+CREATE TABLE IF NOT EXISTS item_co_like_deltas (
+    id BIGSERIAL PRIMARY KEY,
+    movie_a TEXT NOT NULL,
+    movie_b TEXT,                -- NULL for a change of the like count of movie_a
+    delta INTEGER NOT NULL
+);
+
+-- Records like changes: +1 for a new like, -1 for a removed one, per (user, movie).
+-- The affected users are locked first, so concurrent feedback of one user is counted in turn
+-- and each statement sees the likes committed before it. Only raw deltas are appended here;
+-- feedback transactions never update the shared counters, so they cannot deadlock on them.
+CREATE OR REPLACE FUNCTION item_co_likes_apply(user_ids TEXT[], movie_ids TEXT[], deltas INTEGER[])
+RETURNS VOID AS $$
+BEGIN
+    IF user_ids IS NULL THEN
+        RETURN;
+    END IF;
+    PERFORM pg_advisory_xact_lock(hashtext(u.user_id))
+    FROM (SELECT DISTINCT unnest(user_ids) AS user_id ORDER BY 1) u;
+
+    WITH changed AS (
+        SELECT c.user_id, c.movie_id, SUM(c.delta)::INTEGER AS delta
+        FROM unnest(user_ids, movie_ids, deltas) AS c(user_id, movie_id, delta)
+        GROUP BY c.user_id, c.movie_id
+        HAVING SUM(c.delta) <> 0
+    ),
+    liked_after AS (
+        SELECT f.user_id::TEXT AS user_id, f.movie_id::TEXT AS movie_id
+        FROM user_feedback f
+        WHERE f.liked AND f.user_id IN (SELECT c.user_id FROM changed c)
+    ),
+    liked_before AS (
+        SELECT a.user_id, a.movie_id
+        FROM liked_after a
+        WHERE NOT EXISTS (SELECT 1 FROM changed c
+                          WHERE c.user_id = a.user_id AND c.movie_id = a.movie_id AND c.delta > 0)
+        UNION ALL
+        SELECT c.user_id, c.movie_id FROM changed c WHERE c.delta < 0
+    ),
+    -- Only pairs with a changed movie can differ between the two states
+    pair_deltas AS (
+        SELECT p.movie_a, p.movie_b, SUM(p.delta)::INTEGER AS delta
+        FROM (
+            SELECT a.movie_id AS movie_a, b.movie_id AS movie_b, 1 AS delta
+            FROM liked_after a
+            JOIN liked_after b ON b.user_id = a.user_id AND b.movie_id <> a.movie_id
+            WHERE EXISTS (SELECT 1 FROM changed c
+                          WHERE c.user_id = a.user_id AND c.movie_id IN (a.movie_id, b.movie_id))
+            UNION ALL
+            SELECT a.movie_id, b.movie_id, -1
+            FROM liked_before a
+            JOIN liked_before b ON b.user_id = a.user_id AND b.movie_id <> a.movie_id
+            WHERE EXISTS (SELECT 1 FROM changed c
+                          WHERE c.user_id = a.user_id AND c.movie_id IN (a.movie_id, b.movie_id))
+        ) p
+        GROUP BY p.movie_a, p.movie_b
+        HAVING SUM(p.delta) <> 0
+    )
+    INSERT INTO item_co_like_deltas (movie_a, movie_b, delta)
+    SELECT c.movie_id, NULL, SUM(c.delta)::INTEGER FROM changed c GROUP BY c.movie_id
+    UNION ALL
+    SELECT d.movie_a, d.movie_b, d.delta FROM pair_deltas d;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Statement triggers on user_feedback: collect like changes from the transition tables
+CREATE OR REPLACE FUNCTION item_co_likes_track()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM item_co_likes_apply(array_agg(n.user_id::TEXT), array_agg(n.movie_id::TEXT), array_agg(1))
+        FROM new_rows n WHERE n.liked;
+    ELSIF TG_OP = 'DELETE' THEN
+        PERFORM item_co_likes_apply(array_agg(o.user_id::TEXT), array_agg(o.movie_id::TEXT), array_agg(-1))
+        FROM old_rows o WHERE o.liked;
+    ELSE
+        PERFORM item_co_likes_apply(array_agg(c.user_id::TEXT), array_agg(c.movie_id::TEXT), array_agg(c.delta))
+        FROM (
+            SELECT n.user_id, n.movie_id, 1 AS delta FROM new_rows n WHERE n.liked
+            UNION ALL
+            SELECT o.user_id, o.movie_id, -1 FROM old_rows o WHERE o.liked
+        ) c;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS item_co_likes_insert ON user_feedback;
+CREATE TRIGGER item_co_likes_insert
+AFTER INSERT ON user_feedback
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE FUNCTION item_co_likes_track();
+
+DROP TRIGGER IF EXISTS item_co_likes_update ON user_feedback;
+CREATE TRIGGER item_co_likes_update
+AFTER UPDATE ON user_feedback
+REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE FUNCTION item_co_likes_track();
+
+DROP TRIGGER IF EXISTS item_co_likes_delete ON user_feedback;
+CREATE TRIGGER item_co_likes_delete
+AFTER DELETE ON user_feedback
+REFERENCING OLD TABLE AS old_rows
+FOR EACH STATEMENT
+EXECUTE FUNCTION item_co_likes_track();
+
+-- Folds up to `batch` deltas into the counters and enqueues the movies whose neighbor list they
+-- change. Deltas are claimed with SKIP LOCKED and the counters are upserted in key order, so
+-- concurrent folds neither count a delta twice nor deadlock.
+CREATE OR REPLACE FUNCTION item_co_likes_fold(batch INTEGER)
+RETURNS INTEGER AS $$
+DECLARE
+    folded INTEGER;
+BEGIN
+    WITH claimed AS (
+        DELETE FROM item_co_like_deltas
+        WHERE id IN (
+            SELECT d.id FROM item_co_like_deltas d
+            ORDER BY d.id
+            LIMIT batch
+            FOR UPDATE SKIP LOCKED
+        )
+        RETURNING movie_a, movie_b, delta
+    ),
+    counted AS (
+        INSERT INTO item_like_counts AS l (movie_id, likes)
+        SELECT c.movie_a, SUM(c.delta) FROM claimed c
+        WHERE c.movie_b IS NULL
+        GROUP BY c.movie_a
+        HAVING SUM(c.delta) <> 0
+        ORDER BY c.movie_a
+        ON CONFLICT (movie_id) DO UPDATE SET likes = l.likes + EXCLUDED.likes
+    ),
+    co_counted AS (
+        INSERT INTO item_co_likes AS co (movie_a, movie_b, co_likes)
+        SELECT c.movie_a, c.movie_b, SUM(c.delta) FROM claimed c
+        WHERE c.movie_b IS NOT NULL
+        GROUP BY c.movie_a, c.movie_b
+        HAVING SUM(c.delta) <> 0
+        ORDER BY c.movie_a, c.movie_b
+        ON CONFLICT (movie_a, movie_b) DO UPDATE SET co_likes = co.co_likes + EXCLUDED.co_likes
+    ),
+    queued AS (
+        INSERT INTO item_neighbors_queue (movie_id)
+        SELECT DISTINCT c.movie_a FROM claimed c
+        ORDER BY 1
+        ON CONFLICT DO NOTHING
+    )
+    SELECT COUNT(*) INTO folded FROM claimed;
+    RETURN folded;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Recomputes the neighbor lists of the given movies, keeping the top `neighbors` of each
+CREATE OR REPLACE FUNCTION item_neighbors_refresh(movie_ids TEXT[], neighbors INTEGER)
+RETURNS INTEGER AS $$
+DECLARE
+    refreshed INTEGER;
+BEGIN
+    DELETE FROM item_co_likes co WHERE co.movie_a = ANY(movie_ids) AND co.co_likes <= 0;
+    DELETE FROM item_like_counts l WHERE l.movie_id = ANY(movie_ids) AND l.likes <= 0;
+    DELETE FROM item_neighbors n WHERE n.movie_id = ANY(movie_ids);
+    INSERT INTO item_neighbors (movie_id, neighbor_id, similarity)
+    SELECT ranked.movie_a, ranked.movie_b, ranked.similarity
+    FROM (
+        SELECT co.movie_a, co.movie_b, s.similarity,
+               row_number() OVER (PARTITION BY co.movie_a ORDER BY s.similarity DESC, co.movie_b) AS rank
+        FROM item_co_likes co
+        JOIN item_like_counts la ON la.movie_id = co.movie_a
+        JOIN item_like_counts lb ON lb.movie_id = co.movie_b
+        CROSS JOIN LATERAL (SELECT (co.co_likes / sqrt(la.likes::FLOAT * lb.likes))::REAL AS similarity) s
+        WHERE co.movie_a = ANY(movie_ids) AND co.co_likes > 0 AND la.likes > 0 AND lb.likes > 0
+    ) ranked
+    WHERE ranked.rank <= neighbors;
+    GET DIAGNOSTICS refreshed = ROW_COUNT;
+    RETURN refreshed;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Recomputes all counts and neighbor lists from user_feedback
+CREATE OR REPLACE FUNCTION item_co_likes_rebuild(neighbors INTEGER)
+RETURNS VOID AS $$
+BEGIN
+    TRUNCATE item_co_like_deltas;
+    TRUNCATE item_neighbors_queue;
+    TRUNCATE item_neighbors;
+    TRUNCATE item_co_likes;
+    TRUNCATE item_like_counts;
+    INSERT INTO item_like_counts (movie_id, likes)
+    SELECT f.movie_id, COUNT(*) FROM user_feedback f WHERE f.liked GROUP BY f.movie_id;
+    INSERT INTO item_co_likes (movie_a, movie_b, co_likes)
+    SELECT a.movie_id, b.movie_id, COUNT(*)
+    FROM user_feedback a
+    JOIN user_feedback b ON b.user_id = a.user_id AND b.movie_id <> a.movie_id
+    WHERE a.liked AND b.liked
+    GROUP BY a.movie_id, b.movie_id;
+    PERFORM item_neighbors_refresh(ARRAY(SELECT l.movie_id FROM item_like_counts l), neighbors);
+END;
+$$ LANGUAGE plpgsql;
+
+-- =====================================
+-- Genre dictionary and per-title genre bitmask
+-- =====================================
+
+-- Genre bits; every IMDb genre gets a fixed bit of title_basics.genre_mask
+CREATE TABLE IF NOT EXISTS genre_dictionary (
+    genre TEXT PRIMARY KEY,
+    bit SMALLINT NOT NULL UNIQUE CHECK (bit BETWEEN 0 AND 62)
+);
+
+INSERT INTO genre_dictionary (genre, bit) VALUES
+    ('Action', 0), ('Adult', 1), ('Adventure', 2), ('Animation', 3), ('Biography', 4),
+    ('Comedy', 5), ('Crime', 6), ('Documentary', 7), ('Drama', 8), ('Family', 9),
+    ('Fantasy', 10), ('Film-Noir', 11), ('Game-Show', 12), ('History', 13), ('Horror', 14),
+    ('Music', 15), ('Musical', 16), ('Mystery', 17), ('News', 18), ('Reality-TV', 19),
+    ('Romance', 20), ('Sci-Fi', 21), ('Short', 22), ('Sport', 23), ('Talk-Show', 24),
+    ('Thriller', 25), ('War', 26), ('Western', 27)
+ON CONFLICT DO NOTHING;
+
+-- Mask of a comma separated genre list; genres not in the dictionary yet are given the next free bit
+CREATE OR REPLACE FUNCTION genre_mask_of(genre_list TEXT)
+RETURNS BIGINT AS $$
+DECLARE
+    mask BIGINT := 0;
+    genre_name TEXT;
+    genre_bit SMALLINT;
+BEGIN
+    IF genre_list IS NULL THEN
+        RETURN 0;
+    END IF;
+    FOREACH genre_name IN ARRAY string_to_array(genre_list, ',') LOOP
+        genre_name := trim(genre_name);
+        CONTINUE WHEN genre_name = '';
+        SELECT d.bit INTO genre_bit FROM genre_dictionary d WHERE d.genre = genre_name;
+        IF genre_bit IS NULL THEN
+            LOCK TABLE genre_dictionary IN SHARE ROW EXCLUSIVE MODE;
+            INSERT INTO genre_dictionary (genre, bit)
+            SELECT genre_name, COALESCE(MAX(d.bit) + 1, 0) FROM genre_dictionary d
+            HAVING COALESCE(MAX(d.bit) + 1, 0) <= 62
+            ON CONFLICT (genre) DO NOTHING;
+            SELECT d.bit INTO genre_bit FROM genre_dictionary d WHERE d.genre = genre_name;
+        END IF;
+        IF genre_bit IS NOT NULL THEN
+            mask := mask | (1::BIGINT << genre_bit);
+        END IF;
+    END LOOP;
+    RETURN mask;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Mask of the named genres, matched case-insensitively; unknown names add nothing
+CREATE OR REPLACE FUNCTION genre_mask_lookup(genre_names TEXT[])
+RETURNS BIGINT AS $$
+    SELECT COALESCE(bit_or(1::BIGINT << d.bit), 0)
+    FROM genre_dictionary d
+    WHERE lower(d.genre) = ANY(SELECT lower(trim(g)) FROM unnest(genre_names) AS g);
+$$ LANGUAGE sql STABLE;
+
+-- Row trigger on title_basics: keep genre_mask in step with genres
+CREATE OR REPLACE FUNCTION title_basics_set_genre_mask()
+RETURNS TRIGGER AS $$
+BEGIN
+    NEW.genre_mask := genre_mask_of(NEW.genres);
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS title_basics_genre_mask ON title_basics;
+CREATE TRIGGER title_basics_genre_mask
+BEFORE INSERT OR UPDATE OF genres
+ON title_basics
+FOR EACH ROW
+EXECUTE FUNCTION title_basics_set_genre_mask();
+
+-- Recomputes every genre_mask, once per distinct genre list, e.g. to backfill existing rows
+CREATE OR REPLACE FUNCTION title_basics_fill_genre_masks()
+RETURNS VOID AS $$
+BEGIN
+    UPDATE title_basics t
+    SET genre_mask = m.mask
+    FROM (
+        SELECT d.genres, genre_mask_of(d.genres) AS mask
+        FROM (SELECT DISTINCT tb.genres FROM title_basics tb WHERE tb.genres IS NOT NULL) d
+    ) m
+    WHERE t.genres = m.genres AND t.genre_mask IS DISTINCT FROM m.mask;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Compact copy of the movie masks, so genre filters can scan the index instead of the table
+CREATE INDEX IF NOT EXISTS idx_title_basics_movie_genre_mask
+    ON title_basics (genre_mask) INCLUDE (tconst)
+    WHERE title_type = 'movie';
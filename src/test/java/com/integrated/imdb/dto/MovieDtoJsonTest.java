@@ -0,0 +1,53 @@
+package com.integrated.imdb.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * JSON shape of the full and compact movie views.
+ */
+class MovieDtoJsonTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void fullViewKeepsUnsetRatingAndVotes() {
+        MovieDto movie = new MovieDto();
+        movie.setTconst("tt0000001");
+        movie.setPrimaryTitle("Unrated");
+
+        JsonNode json = objectMapper.valueToTree(movie);
+
+        assertThat(json.has("averageRating")).isTrue();
+        assertThat(json.get("averageRating").isNull()).isTrue();
+        assertThat(json.get("numVotes").isNull()).isTrue();
+        assertThat(json.get("runtimeInMinutes").asInt()).isZero();
+        assertThat(json.has("partiallyEnriched")).isFalse();
+    }
+
+    @Test
+    void fullViewWritesPartialEnrichment() {
+        MovieDto movie = new MovieDto();
+        movie.setPartiallyEnriched(true);
+
+        assertThat(objectMapper.valueToTree(movie).get("partiallyEnriched").asBoolean()).isTrue();
+    }
+
+    @Test
+    void compactViewCarriesOnlyItsFields() {
+        JsonNode json = objectMapper.valueToTree(new CompactMovieDto("tt0111161", "The Shawshank Redemption", "1994", 9.3));
+
+        assertThat(json.fieldNames()).toIterable()
+                .containsExactlyInAnyOrder("tconst", "primaryTitle", "startYear", "averageRating");
+    }
+
+    @Test
+    void compactViewLeavesOutAMissingRating() {
+        JsonNode json = objectMapper.valueToTree(new CompactMovieDto("tt0000001", "Unrated", "", null));
+
+        assertThat(json.fieldNames()).toIterable().containsExactlyInAnyOrder("tconst", "primaryTitle", "startYear");
+    }
+}
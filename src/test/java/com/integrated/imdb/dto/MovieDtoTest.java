@@ -0,0 +1,67 @@
+package com.integrated.imdb.dto;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runtime handling of {@link MovieDto}: the display string and the parsed minutes stay in step.
+ */
+class MovieDtoTest {
+
+    @Test
+    void parsesMinutesFromOmdbRuntime() {
+        assertThat(runtimeOf("142 min")).isEqualTo(142);
+        assertThat(runtimeOf("90")).isEqualTo(90);
+        assertThat(runtimeOf("  7 min")).isEqualTo(7);
+    }
+
+    @Test
+    void takesTheFirstRunOfDigits() {
+        assertThat(runtimeOf("1h 30min")).isEqualTo(1);
+        assertThat(runtimeOf("approx. 95 min (120 director's cut)")).isEqualTo(95);
+    }
+
+    @Test
+    void unknownRuntimesAreZero() {
+        assertThat(runtimeOf(null)).isZero();
+        assertThat(runtimeOf("")).isZero();
+        assertThat(runtimeOf("N/A")).isZero();
+    }
+
+    @Test
+    void overlongNumbersStopAtNineDigits() {
+        assertThat(runtimeOf("12345678901 min")).isEqualTo(123_456_789);
+    }
+
+    @Test
+    void constructorParsesTheRuntime() {
+        MovieDto dto = new MovieDto("tt0111161", "The Shawshank Redemption", "1994", "Drama", 9.3, 2_900_000,
+                null, null, "142 min", null, null, null);
+
+        assertThat(dto.getRuntimeInMinutes()).isEqualTo(142);
+    }
+
+    @Test
+    void runtimeFromMinutesFormatsTheDisplayString() {
+        MovieDto dto = new MovieDto();
+
+        dto.setRuntimeFromMinutes(142);
+        assertThat(dto.getRuntime()).isEqualTo("142 min");
+        assertThat(dto.getRuntimeInMinutes()).isEqualTo(142);
+
+        dto.setRuntimeFromMinutes(0);
+        assertThat(dto.getRuntime()).isEqualTo("N/A");
+        assertThat(dto.getRuntimeInMinutes()).isZero();
+
+        dto.setRuntimeFromMinutes(-5);
+        assertThat(dto.getRuntime()).isEqualTo("N/A");
+        assertThat(dto.getRuntimeInMinutes()).isZero();
+    }
+
+    private static int runtimeOf(String runtime) {
+        MovieDto dto = new MovieDto();
+        dto.setRuntime(runtime);
+        return dto.getRuntimeInMinutes();
+    }
+}
@@ -0,0 +1,74 @@
+package com.integrated.imdb.repository;
+
+import com.integrated.imdb.model.FeedbackChange;
+import com.integrated.imdb.model.FeedbackEvent;
+import com.integrated.imdb.support.CountingDataSource;
+import com.integrated.imdb.support.TestDatabase;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The feedback upsert against schema.sql. Needs a PostgreSQL database, see {@link TestDatabase}.
+ */
+@EnabledIfEnvironmentVariable(named = TestDatabase.URL_VARIABLE, matches = ".+")
+class FeedbackRepositoryTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private TestDatabase database;
+    private CountingDataSource dataSource;
+    private FeedbackRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        database = TestDatabase.withSchema("feedback_repository");
+        database.jdbcTemplate().execute("""
+            INSERT INTO title_basics (tconst, title_type, primary_title) VALUES
+                ('tt0000001', 'movie', 'One'),
+                ('tt0000002', 'movie', 'Two')
+            """);
+        dataSource = new CountingDataSource(database.dataSource());
+        repository = new FeedbackRepository(new JdbcTemplate(dataSource), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+
+    @Test
+    void storesTheLastRatingOfEachCatalogMovieAndReturnsWhatItReplaced() {
+        repository.upsertFeedback(List.of(new FeedbackEvent("user-1", List.of("tt0000001"), List.of(true))));
+
+        List<FeedbackChange> changes = repository.upsertFeedback(List.of(
+                new FeedbackEvent("user-1", List.of("tt0000001", "tt0000002", "tt9999999"), List.of(true, true, true)),
+                new FeedbackEvent("user-1", List.of("tt0000001"), List.of(false))));
+
+        assertThat(changes).containsExactlyInAnyOrder(
+                new FeedbackChange("user-1", "tt0000001", true, false),
+                new FeedbackChange("user-1", "tt0000002", null, true));
+    }
+
+    @Test
+    void recordsTheStatementsItRan() {
+        repository.upsertFeedback(List.of(
+                new FeedbackEvent("user-1", List.of("tt0000001"), List.of(true)),
+                new FeedbackEvent("user-2", List.of("tt0000002"), List.of(false))));
+        int ran = dataSource.statements();
+        repository.upsertFeedback(List.of(new FeedbackEvent("user-1", List.of(), List.of())));
+
+        DistributionSummary statements = meterRegistry.get("movies.feedback.statements").summary();
+        assertThat(statements.count()).isEqualTo(2);
+        assertThat(statements.totalAmount()).isEqualTo(ran);
+        assertThat(statements.max()).isEqualTo(ran);
+        assertThat(dataSource.statements()).isEqualTo(ran);
+    }
+}
@@ -0,0 +1,51 @@
+package com.integrated.imdb.repository;
+
+import com.integrated.imdb.support.Latency;
+import com.integrated.imdb.support.SyntheticImdb;
+import com.integrated.imdb.support.TestDatabase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Latency of {@link MovieRepository#findMovieFeatures} by number of liked movies, next to one
+ * query per liked movie. Needs a PostgreSQL database, see {@link TestDatabase}; not part of the
+ * default test run: {@code mvn test -Dtest=MovieFeaturesBenchmark}.
+ */
+@EnabledIfEnvironmentVariable(named = TestDatabase.URL_VARIABLE, matches = ".+")
+class MovieFeaturesBenchmark {
+
+    private static final int MOVIES = 50_000;
+    private static final int PEOPLE = 100_000;
+    private static final int PRINCIPALS_PER_MOVIE = 10;
+    private static final int ACTORS_PER_MOVIE = 5;
+
+    @Test
+    void findMovieFeatures() {
+        try (TestDatabase database = TestDatabase.withSchema("movie_features_benchmark")) {
+            JdbcTemplate jdbcTemplate = database.jdbcTemplate();
+            SyntheticImdb.load(jdbcTemplate, MOVIES, PEOPLE, PRINCIPALS_PER_MOVIE);
+            MovieRepository repository = new MovieRepository(jdbcTemplate);
+
+            for (int likes : new int[] {1, 10, 100, 1_000}) {
+                int rounds = likes >= 1_000 ? 50 : 200;
+                Latency.measure("one query, " + likes + " likes", rounds / 4, rounds,
+                        round -> repository.findMovieFeatures(liked(round, likes), ACTORS_PER_MOVIE));
+                Latency.measure("query per movie, " + likes + " likes", rounds / 4, rounds,
+                        round -> liked(round, likes).forEach(tconst ->
+                                repository.findMovieFeatures(List.of(tconst), ACTORS_PER_MOVIE)));
+            }
+        }
+    }
+
+    private static List<String> liked(int round, int likes) {
+        List<String> tconsts = new ArrayList<>(likes);
+        for (int i = 0; i < likes; i++) {
+            tconsts.add(SyntheticImdb.tconst(1 + (round * 31 + i * 997) % MOVIES));
+        }
+        return tconsts;
+    }
+}
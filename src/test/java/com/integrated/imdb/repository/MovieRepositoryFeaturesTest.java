@@ -0,0 +1,114 @@
+package com.integrated.imdb.repository;
+
+import com.integrated.imdb.model.LikedMovieFeatures;
+import com.integrated.imdb.support.CountingDataSource;
+import com.integrated.imdb.support.TestDatabase;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Feature extraction of liked movies against schema.sql. Needs a PostgreSQL database, see
+ * {@link TestDatabase}; {@link MovieFeaturesBenchmark} measures it by like count.
+ */
+@EnabledIfEnvironmentVariable(named = TestDatabase.URL_VARIABLE, matches = ".+")
+class MovieRepositoryFeaturesTest {
+
+    private static TestDatabase database;
+    private static CountingDataSource dataSource;
+    private static MovieRepository repository;
+
+    @BeforeAll
+    static void setUp() {
+        database = TestDatabase.withSchema("movie_features");
+        JdbcTemplate jdbcTemplate = database.jdbcTemplate();
+        jdbcTemplate.execute("""
+            INSERT INTO title_basics (tconst, title_type, primary_title, genres) VALUES
+                ('tt0000001', 'movie', 'One', 'Drama,Comedy'),
+                ('tt0000002', 'movie', 'Two', 'Comedy,Thriller'),
+                ('tt0000003', 'movie', 'Three', NULL);
+            INSERT INTO name_basics (nconst, primary_name) VALUES
+                ('nm0000001', 'Director'),
+                ('nm0000002', 'Lead Actor'),
+                ('nm0000003', 'Lead Actress'),
+                ('nm0000004', 'Third Billed'),
+                ('nm0000005', 'Other Lead');
+            INSERT INTO title_principals (tconst, ordering, nconst, category) VALUES
+                ('tt0000001', 1, 'nm0000001', 'director'),
+                ('tt0000001', 2, 'nm0000003', 'actress'),
+                ('tt0000001', 3, 'nm0000002', 'actor'),
+                ('tt0000001', 4, 'nm0000004', 'actor'),
+                ('tt0000002', 1, 'nm0000009', 'actor'),
+                ('tt0000002', 2, 'nm0000002', 'actor'),
+                ('tt0000002', 3, 'nm0000005', 'actor'),
+                ('tt0000003', 1, 'nm0000005', 'actor');
+            """);
+        dataSource = new CountingDataSource(database.dataSource());
+        repository = new MovieRepository(new JdbcTemplate(dataSource));
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (database != null) {
+            database.close();
+        }
+    }
+
+    @BeforeEach
+    void resetCount() {
+        dataSource.reset();
+    }
+
+    @Test
+    void extractsDistinctGenresAndTopBilledActorsInOneQuery() {
+        LikedMovieFeatures features = repository.findMovieFeatures(
+                List.of("tt0000001", "tt0000002", "tt0000003", "tt9999999"), 2);
+
+        assertThat(features.genres()).containsExactlyInAnyOrder("Drama", "Comedy", "Thriller");
+        // The director is not billed as an actor; nm0000009 has no name_basics row
+        assertThat(features.actors()).containsExactlyInAnyOrderEntriesOf(Map.of(
+                "nm0000003", "Lead Actress",
+                "nm0000002", "Lead Actor",
+                "nm0000005", "Other Lead"));
+        assertThat(dataSource.statements()).isEqualTo(1);
+    }
+
+    @Test
+    void takesActorsFromTheTopOfEachBilling() {
+        assertThat(repository.findMovieFeatures(List.of("tt0000001"), 1).actors())
+                .containsOnlyKeys("nm0000003");
+        assertThat(repository.findMovieFeatures(List.of("tt0000001"), 10).actors())
+                .containsOnlyKeys("nm0000003", "nm0000002", "nm0000004");
+    }
+
+    @Test
+    void keepsFeaturesOfEachMovieApart() {
+        Map<String, LikedMovieFeatures> features = repository.findFeaturesByMovie(
+                List.of("tt0000001", "tt0000002", "tt9999999"), 2);
+
+        assertThat(features).containsOnlyKeys("tt0000001", "tt0000002");
+        assertThat(features.get("tt0000001").genres()).containsExactlyInAnyOrder("Drama", "Comedy");
+        assertThat(features.get("tt0000001").actors()).containsOnlyKeys("nm0000003", "nm0000002");
+        assertThat(features.get("tt0000002").genres()).containsExactlyInAnyOrder("Comedy", "Thriller");
+        assertThat(features.get("tt0000002").actors()).containsOnlyKeys("nm0000002", "nm0000005");
+        assertThat(dataSource.statements()).isEqualTo(1);
+    }
+
+    @Test
+    void noLikesNeedNoQuery() {
+        LikedMovieFeatures features = repository.findMovieFeatures(List.of(), 3);
+
+        assertThat(features.genres()).isEmpty();
+        assertThat(features.actors()).isEmpty();
+        assertThat(repository.findFeaturesByMovie(List.of(), 3)).isEmpty();
+        assertThat(dataSource.statements()).isZero();
+    }
+}
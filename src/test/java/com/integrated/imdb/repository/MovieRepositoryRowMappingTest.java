@@ -0,0 +1,150 @@
+package com.integrated.imdb.repository;
+
+import com.integrated.imdb.model.MovieDetailsRecord;
+import com.integrated.imdb.model.MovieRecord;
+import com.integrated.imdb.model.MovieVoteCount;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.lang.reflect.Proxy;
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The row mappers of {@link MovieRepository}, fed rows from memory instead of a database.
+ */
+class MovieRepositoryRowMappingTest {
+
+    private final RowsJdbcTemplate jdbcTemplate = new RowsJdbcTemplate();
+    private final MovieRepository repository = new MovieRepository(jdbcTemplate);
+
+    @Test
+    void readsMovieColumnsByIndex() {
+        jdbcTemplate.rows = List.<Object[]>of(
+                new Object[] {"tt0111161", "The Shawshank Redemption", 1994, "Drama", 9.3, 2_900_000, 142, "Tim Robbins"});
+
+        assertThat(repository.findTopMoviesByActor("Robbins", 10)).containsExactly(new MovieRecord("tt0111161",
+                "The Shawshank Redemption", 1994, "Drama", 9.3, 2_900_000, 142, "Tim Robbins"));
+    }
+
+    @Test
+    void keepsMissingRatingsNullAndMissingNumbersZero() {
+        jdbcTemplate.rows = List.<Object[]>of(new Object[] {"tt0000001", "Unrated", null, null, null, null, null, null});
+
+        MovieRecord movie = repository.searchMoviesByTitle("Unrated", 10).get(0);
+
+        assertThat(movie.averageRating()).isNull();
+        assertThat(movie.numVotes()).isNull();
+        assertThat(movie.startYear()).isZero();
+        assertThat(movie.runtimeMinutes()).isZero();
+        assertThat(movie.genres()).isNull();
+        assertThat(movie.actorName()).isNull();
+    }
+
+    @Test
+    void readsNullRatingAfterARatedRow() {
+        // wasNull must follow each column read, not stick to the first row
+        jdbcTemplate.rows = List.<Object[]>of(
+                new Object[] {"tt0000001", "Rated", 2000, "Drama", 7.0, 1_500, 90, null},
+                new Object[] {"tt0000002", "Unrated", 2001, "Drama", null, null, 95, null});
+
+        List<MovieRecord> movies = repository.getTopRatedMovies(10, 0);
+
+        assertThat(movies).extracting(MovieRecord::averageRating).containsExactly(7.0, null);
+        assertThat(movies).extracting(MovieRecord::numVotes).containsExactly(1_500, null);
+    }
+
+    @Test
+    void readsCastArrayAndDirectorAfterTheMovieColumns() {
+        jdbcTemplate.rows = List.<Object[]>of(
+                new Object[] {"tt0000001", "Cast", 2000, "Drama", 7.0, 1_500, 90, null,
+                        new String[] {"Lead", "Second"}, "Director"},
+                new Object[] {"tt0000002", "No cast", 2001, "Drama", 6.0, 1_200, 95, null, null, null});
+
+        List<MovieDetailsRecord> details = repository.findMovieDetailsByIds(List.of("tt0000001", "tt0000002"));
+
+        assertThat(details.get(0).movie().tconst()).isEqualTo("tt0000001");
+        assertThat(details.get(0).cast()).containsExactly("Lead", "Second");
+        assertThat(details.get(0).director()).isEqualTo("Director");
+        assertThat(details.get(1).cast()).isEmpty();
+        assertThat(details.get(1).director()).isNull();
+    }
+
+    @Test
+    void readsVoteCounts() {
+        jdbcTemplate.rows = List.<Object[]>of(new Object[] {"tt0000001", 2_500}, new Object[] {"tt0000002", 1_000});
+
+        assertThat(repository.findMovieIdsByVotes(null, null, 10)).containsExactly(
+                new MovieVoteCount("tt0000001", 2_500), new MovieVoteCount("tt0000002", 1_000));
+    }
+
+    /**
+     * Runs every row mapper query over {@link #rows}
+     */
+    private static class RowsJdbcTemplate extends JdbcTemplate {
+
+        private List<Object[]> rows = List.of();
+
+        @Override
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            ResultSet rs = resultSet(rows);
+            List<T> mapped = new ArrayList<>();
+            try {
+                for (int rowNum = 0; rs.next(); rowNum++) {
+                    mapped.add(rowMapper.mapRow(rs, rowNum));
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            return mapped;
+        }
+    }
+
+    /**
+     * A forward-only result set over the given rows, typed like PGJDBC's: numbers read from a
+     * NULL column are 0 and set wasNull.
+     */
+    private static ResultSet resultSet(List<Object[]> rows) {
+        int[] row = {-1};
+        boolean[] wasNull = {false};
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] {ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next":
+                            return ++row[0] < rows.size();
+                        case "wasNull":
+                            return wasNull[0];
+                        case "close":
+                            return null;
+                        default:
+                            break;
+                    }
+                    Object value = rows.get(row[0])[(Integer) args[0] - 1];
+                    wasNull[0] = value == null;
+                    return switch (method.getName()) {
+                        case "getString" -> (String) value;
+                        case "getInt" -> value == null ? 0 : ((Number) value).intValue();
+                        case "getDouble" -> value == null ? 0d : ((Number) value).doubleValue();
+                        case "getArray" -> value == null ? null : array((String[]) value);
+                        default -> throw new UnsupportedOperationException(method.getName() + Arrays.toString(args));
+                    };
+                });
+    }
+
+    private static Array array(String[] values) {
+        return (Array) Proxy.newProxyInstance(Array.class.getClassLoader(), new Class<?>[] {Array.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getArray") && args == null) {
+                        return values;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
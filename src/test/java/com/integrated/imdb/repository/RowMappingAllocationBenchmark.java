@@ -0,0 +1,62 @@
+package com.integrated.imdb.repository;
+
+import com.integrated.imdb.support.SyntheticImdb;
+import com.integrated.imdb.support.TestDatabase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.function.IntSupplier;
+
+/**
+ * Heap allocated per row when reading movies into {@code MovieRecord}s through the repository's
+ * row mappers, next to {@code queryForList} column maps as the repository returned before. Both
+ * run the same query, so the driver's own allocation is included on both sides. Needs a
+ * PostgreSQL database, see {@link TestDatabase}; not part of the default test run:
+ * {@code mvn test -Dtest=RowMappingAllocationBenchmark}.
+ */
+@EnabledIfEnvironmentVariable(named = TestDatabase.URL_VARIABLE, matches = ".+")
+class RowMappingAllocationBenchmark {
+
+    private static final int ROWS = 10_000;
+    private static final String TOP_RATED_SQL = """
+        SELECT t.tconst, t.primary_title, t.start_year, t.genres,
+               r.average_rating, r.num_votes, t.runtime_minutes, NULL
+        FROM title_basics t
+        JOIN title_ratings r ON t.tconst = r.tconst
+        WHERE t.title_type = 'movie'
+        AND r.num_votes >= ?
+        ORDER BY r.average_rating DESC, r.num_votes DESC, r.tconst DESC
+        LIMIT ?
+        """;
+
+    @Test
+    void allocationPerRow() {
+        try (TestDatabase database = TestDatabase.withSchema("row_mapping_benchmark")) {
+            JdbcTemplate jdbcTemplate = database.jdbcTemplate();
+            SyntheticImdb.load(jdbcTemplate, ROWS * 2, 1_000, 1);
+            MovieRepository repository = new MovieRepository(jdbcTemplate);
+
+            measure("row mapper into MovieRecord", () -> repository.getTopRatedMovies(ROWS, 0).size());
+            measure("queryForList column maps", () -> jdbcTemplate.queryForList(TOP_RATED_SQL, 0, ROWS).size());
+        }
+    }
+
+    private static void measure(String name, IntSupplier query) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < 20; i++) {
+            query.getAsInt();
+        }
+        long rows = 0;
+        long before = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < 50; i++) {
+            rows += query.getAsInt();
+        }
+        long nanos = System.nanoTime() - start;
+        long bytes = threads.getCurrentThreadAllocatedBytes() - before;
+        System.out.printf(Locale.ROOT, "%-32s %6d bytes/row   %6.0f ns/row%n", name, bytes / rows, (double) nanos / rows);
+    }
+}
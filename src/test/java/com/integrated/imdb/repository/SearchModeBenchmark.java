@@ -0,0 +1,62 @@
+package com.integrated.imdb.repository;
+
+import com.integrated.imdb.support.Latency;
+import com.integrated.imdb.support.SyntheticImdb;
+import com.integrated.imdb.support.TestDatabase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Latency of the title search modes by query shape: the ILIKE substring match, full-text search
+ * on movie_search and trigram word similarity. Needs a PostgreSQL database, see
+ * {@link TestDatabase}; not part of the default test run: {@code mvn test -Dtest=SearchModeBenchmark}.
+ */
+@EnabledIfEnvironmentVariable(named = TestDatabase.URL_VARIABLE, matches = ".+")
+class SearchModeBenchmark {
+
+    private static final int TITLES = 200_000;
+    private static final int LIMIT = 20;
+
+    @Test
+    void search() {
+        try (TestDatabase database = TestDatabase.withSchema("search_mode_benchmark")) {
+            JdbcTemplate jdbcTemplate = database.jdbcTemplate();
+            SyntheticImdb.load(jdbcTemplate, TITLES, 20_000, 4);
+            jdbcTemplate.execute("SELECT movie_search_rebuild()");
+            jdbcTemplate.execute("ANALYZE");
+            MovieRepository repository = new MovieRepository(jdbcTemplate);
+            // The first two words of titles that have more
+            List<String> pairs = jdbcTemplate.queryForList("""
+                SELECT split_part(primary_title, ' ', 1) || ' ' || split_part(primary_title, ' ', 2)
+                FROM title_basics WHERE primary_title LIKE '% % %' ORDER BY tconst LIMIT 400
+                """, String.class);
+
+            measure(repository, "two title words", round -> pairs.get(round % pairs.size()));
+            // A dropped letter, as a typo would
+            measure(repository, "two title words, misspelled", round -> {
+                String pair = pairs.get(round % pairs.size());
+                return pair.substring(0, 2) + pair.substring(3);
+            });
+            measure(repository, "one word", round -> SyntheticImdb.word(round * 37 % 400));
+            measure(repository, "two letters", round -> SyntheticImdb.word(round * 37 % 400).substring(0, 2));
+        }
+    }
+
+    private static void measure(MovieRepository repository, String shape, IntFunction<String> query) {
+        Latency.measure("ilike, " + shape, 10, 100,
+                round -> repository.searchMoviesByTitle(query.apply(round), LIMIT));
+        Latency.measure("fulltext, " + shape, 10, 100,
+                round -> repository.searchMoviesFullText(query.apply(round), LIMIT));
+        Latency.measure("trigram, " + shape, 10, 100,
+                round -> repository.searchMoviesByTrigram(query.apply(round), LIMIT));
+        String example = query.apply(0);
+        System.out.printf("  \"%s\" finds: ilike %d, fulltext %d, trigram %d of at most %d%n", example,
+                repository.searchMoviesByTitle(example, LIMIT).size(),
+                repository.searchMoviesFullText(example, LIMIT).size(),
+                repository.searchMoviesByTrigram(example, LIMIT).size(), LIMIT);
+    }
+}
@@ -0,0 +1,106 @@
+package com.integrated.imdb.service;
+
+import com.integrated.imdb.model.LikedMovieFeatures;
+import com.integrated.imdb.model.ScoredMovie;
+import com.integrated.imdb.support.Latency;
+import com.integrated.imdb.support.SyntheticImdb;
+import com.integrated.imdb.support.TestDatabase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Latency of {@link SqlRecommendationEngine#recommend}, which finds the liked actors' movies by
+ * nconst, next to the same statement matching their names as a regex over name_basics, as it
+ * did before. Needs a PostgreSQL database, see {@link TestDatabase}; not part of the default test
+ * run: {@code mvn test -Dtest=ActorMatchBenchmark}.
+ */
+@EnabledIfEnvironmentVariable(named = TestDatabase.URL_VARIABLE, matches = ".+")
+class ActorMatchBenchmark {
+
+    private static final int MOVIES = 50_000;
+    private static final int PEOPLE = 200_000;
+    private static final int PRINCIPALS_PER_MOVIE = 10;
+    private static final int MIN_VOTES = 1_000;
+
+    private static final String NAME_REGEX_SQL = """
+        WITH liked_genres AS MATERIALIZED (
+            SELECT genre_mask_lookup(?::text[]) AS mask
+        ),
+        co_liked AS (
+            SELECT * FROM unnest(?::text[], ?::float8[]) AS c(tconst, score)
+        ),
+        movie_scores AS (
+            SELECT
+                t.tconst,
+                r.average_rating,
+                r.num_votes,
+                COALESCE(c.score, 0) AS co_like_score,
+                bit_count((t.genre_mask & lg.mask)::bit(64)) AS genre_score,
+                (CASE WHEN ? <> '' AND EXISTS (
+                    SELECT 1 FROM title_principals tp
+                    JOIN name_basics n ON tp.nconst = n.nconst
+                    WHERE tp.tconst = t.tconst
+                    AND tp.category IN ('actor', 'actress')
+                    AND n.primary_name ~* ?
+                ) THEN 1 ELSE 0 END) AS actor_score
+            FROM title_basics t
+            CROSS JOIN liked_genres lg
+            JOIN title_ratings r ON t.tconst = r.tconst
+            LEFT JOIN co_liked c ON c.tconst = t.tconst
+            WHERE t.title_type = 'movie'
+            AND r.num_votes > ?
+            AND t.tconst <> ALL(?)
+        )
+        SELECT tconst, (genre_score * 2 + actor_score * 3 + co_like_score) * (average_rating * 0.1) AS score
+        FROM movie_scores
+        WHERE genre_score > 0 OR actor_score > 0 OR co_like_score > 0
+        ORDER BY score DESC, num_votes DESC, substr(tconst, 3)::int
+        LIMIT ?
+        """;
+
+    @Test
+    void recommend() {
+        try (TestDatabase database = TestDatabase.withSchema("actor_match_benchmark")) {
+            JdbcTemplate jdbcTemplate = database.jdbcTemplate();
+            SyntheticImdb.load(jdbcTemplate, MOVIES, PEOPLE, PRINCIPALS_PER_MOVIE);
+            SqlRecommendationEngine engine = new SqlRecommendationEngine(jdbcTemplate, MIN_VOTES);
+
+            for (int likedActors : new int[] {3, 30}) {
+                assertThat(byNameRegex(jdbcTemplate, features(0, likedActors)))
+                        .isEqualTo(engine.recommend(features(0, likedActors), Map.of(), Set.of(), 60));
+                Latency.measure("by nconst, " + likedActors + " liked actors", 5, 30,
+                        round -> engine.recommend(features(round, likedActors), Map.of(), Set.of(), 60));
+                Latency.measure("by name regex, " + likedActors + " liked actors", 1, 5,
+                        round -> byNameRegex(jdbcTemplate, features(round, likedActors)));
+            }
+        }
+    }
+
+    private static List<ScoredMovie> byNameRegex(JdbcTemplate jdbcTemplate, LikedMovieFeatures features) {
+        String actorPattern = features.actors().values().stream()
+                .map(name -> name.replaceAll("[\\\\^$.|?*+()\\[\\]{}]", "\\\\$0"))
+                .collect(Collectors.joining("|"));
+        return jdbcTemplate.query(NAME_REGEX_SQL,
+                (rs, rowNum) -> new ScoredMovie(rs.getString(1), rs.getDouble(2)),
+                features.genres().toArray(new String[0]), new String[0], new double[0],
+                actorPattern, actorPattern, MIN_VOTES, new String[0], 60);
+    }
+
+    private static LikedMovieFeatures features(int round, int likedActors) {
+        Map<String, String> actors = new LinkedHashMap<>();
+        for (int i = 0; i < likedActors; i++) {
+            int person = 1 + (round * 7919 + i * 104_729) % PEOPLE;
+            actors.put(SyntheticImdb.nconst(person), SyntheticImdb.name(person));
+        }
+        return new LikedMovieFeatures(Set.of("Sci-Fi"), actors);
+    }
+}
@@ -0,0 +1,101 @@
+package com.integrated.imdb.service;
+
+import com.integrated.imdb.model.ScoredMovie;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Deterministic synthetic movies for the recommendation engine tests and benchmarks, with a
+ * brute-force reference ranking.
+ */
+final class CatalogFixture {
+
+    static final List<String> GENRES = List.of("Action", "Comedy", "Drama", "Horror", "Romance", "Sci-Fi",
+            "Thriller", "Western");
+
+    record Movie(String tconst, String genres, double rating, int votes, List<String> actors) {
+    }
+
+    private CatalogFixture() {
+    }
+
+    /**
+     * Movies in ascending tconst order. Ratings have one decimal and votes come from a small
+     * range, so equal scores and equal vote counts are common.
+     */
+    static List<Movie> movies(long seed, int count, int people, int actorsPerMovie) {
+        Random random = new Random(seed);
+        List<Movie> movies = new ArrayList<>(count);
+        int id = 1;
+        for (int i = 0; i < count; i++) {
+            id += 1 + random.nextInt(3);
+            Set<String> genres = new HashSet<>();
+            int genreCount = 1 + random.nextInt(3);
+            while (genres.size() < genreCount) {
+                genres.add(GENRES.get(random.nextInt(GENRES.size())));
+            }
+            List<String> actors = new ArrayList<>(actorsPerMovie);
+            for (int a = 0; a < actorsPerMovie; a++) {
+                actors.add(nconst(random.nextInt(people)));
+            }
+            movies.add(new Movie(tconst(id), String.join(",", genres), (10 + random.nextInt(81)) / 10.0,
+                    1_000 + random.nextInt(20), actors));
+        }
+        return movies;
+    }
+
+    static RecommendationCatalog catalog(List<Movie> movies) {
+        RecommendationCatalog.Builder builder = new RecommendationCatalog.Builder();
+        movies.forEach(movie -> builder.addMovie(movie.tconst(), movie.genres(), movie.rating(), movie.votes()));
+        movies.forEach(movie -> movie.actors().forEach(actor -> builder.addActor(movie.tconst(), actor)));
+        return builder.build();
+    }
+
+    /**
+     * Scores every movie with the formula of {@link RecommendationEngine#recommend} and sorts
+     * them all by its tie-breaks.
+     */
+    static List<ScoredMovie> reference(List<Movie> movies, Collection<String> genres, Collection<String> actors,
+                                       Map<String, Double> coLikeScores, Collection<String> excluded, int limit) {
+        record Ranked(Movie movie, double score) {
+        }
+        List<Ranked> ranked = new ArrayList<>();
+        for (Movie movie : movies) {
+            if (excluded.contains(movie.tconst())) {
+                continue;
+            }
+            int genreMatches = 0;
+            for (String genre : movie.genres().split(",")) {
+                if (genres.contains(genre)) {
+                    genreMatches++;
+                }
+            }
+            boolean actorMatch = movie.actors().stream().anyMatch(actors::contains);
+            double coLikeScore = coLikeScores.getOrDefault(movie.tconst(), 0.0);
+            if (genreMatches == 0 && !actorMatch && coLikeScore <= 0) {
+                continue;
+            }
+            ranked.add(new Ranked(movie,
+                    (genreMatches * 2 + (actorMatch ? 3 : 0) + coLikeScore) * (movie.rating() * 0.1)));
+        }
+        ranked.sort(Comparator.comparingDouble(Ranked::score).reversed()
+                .thenComparing(Comparator.comparingInt((Ranked r) -> r.movie().votes()).reversed())
+                .thenComparingInt(r -> Integer.parseInt(r.movie().tconst().substring(2))));
+        return ranked.stream().limit(limit).map(r -> new ScoredMovie(r.movie().tconst(), r.score())).toList();
+    }
+
+    static String tconst(int id) {
+        return "tt" + String.format("%07d", id);
+    }
+
+    static String nconst(int id) {
+        return "nm" + String.format("%07d", id);
+    }
+}
@@ -0,0 +1,284 @@
+package com.integrated.imdb.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.integrated.imdb.model.FeedbackEvent;
+import com.integrated.imdb.repository.FeedbackRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The write-behind log, queue and overlay of {@link FeedbackWriteBehind}, with the repository
+ * and the transaction manager mocked.
+ */
+class FeedbackWriteBehindTest {
+
+    @TempDir
+    Path directory;
+
+    private final FeedbackRepository feedbackRepository = mock(FeedbackRepository.class);
+    private final UserProfileStore userProfileStore = mock(UserProfileStore.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<FeedbackEvent> stored = new CopyOnWriteArrayList<>();
+    private long compactBytes = 1_048_576;
+    private FeedbackWriteBehind writeBehind;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (writeBehind != null) {
+            writeBehind.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsSubmissionsThatCouldNeverBeStoredBeforeLoggingThem() throws Exception {
+        start();
+
+        assertThatThrownBy(() -> writeBehind.submit(new FeedbackEvent(null, List.of("tt1"), List.of(true))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> writeBehind.submit(new FeedbackEvent("u".repeat(51), List.of("tt1"), List.of(true))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> writeBehind.submit(new FeedbackEvent("user-1", List.of("tt1", "tt2"), List.of(true))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> writeBehind.submit(new FeedbackEvent("user-1", Arrays.asList("tt1", null),
+                List.of(true, false)))).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(Files.size(logFile())).isZero();
+        assertThat(writeBehind.pendingRatings("user-1")).isEmpty();
+
+        FeedbackEvent valid = new FeedbackEvent("user-1", List.of("tt1"), List.of(true));
+        assertThat(writeBehind.submit(valid)).isTrue();
+        verify(feedbackRepository, timeout(5_000)).upsertFeedback(List.of(valid));
+    }
+
+    @Test
+    void replaySkipsLinesThatFailValidation() throws Exception {
+        FeedbackEvent valid = new FeedbackEvent("user-1", List.of("tt1"), List.of(true));
+        writeLog(objectMapper.writeValueAsString(new FeedbackEvent(null, List.of("tt1"), List.of(true))),
+                objectMapper.writeValueAsString(new FeedbackEvent("u".repeat(51), List.of("tt1"), List.of(true))),
+                objectMapper.writeValueAsString(valid));
+
+        start();
+
+        verify(feedbackRepository, timeout(5_000)).upsertFeedback(List.of(valid));
+    }
+
+    @Test
+    void replaysTheLogAfterACrashSkippingATornLastLine() throws Exception {
+        FeedbackEvent first = new FeedbackEvent("user-1", List.of("tt1", "tt2"), List.of(true, false));
+        FeedbackEvent second = new FeedbackEvent("user-2", List.of("tt1"), List.of(true));
+        writeLog(objectMapper.writeValueAsString(first), objectMapper.writeValueAsString(second),
+                "{\"userId\":\"user-3\",\"movieIds\":[\"tt");
+
+        start();
+
+        verify(feedbackRepository, timeout(5_000)).upsertFeedback(List.of(first, second));
+        verify(userProfileStore, timeout(5_000)).applyFeedback(List.of());
+        await(() -> logFile().toFile().length() == 0);
+        assertThat(writeBehind.pendingRatings("user-1")).isEmpty();
+    }
+
+    @Test
+    void compactsTheLogToTheSubmissionsStillQueued() throws Exception {
+        compactBytes = 1;
+        FeedbackEvent a = new FeedbackEvent("user-1", List.of("tt1"), List.of(true));
+        FeedbackEvent b = new FeedbackEvent("user-2", List.of("tt2"), List.of(true));
+        FeedbackEvent c = new FeedbackEvent("user-3", List.of("tt3"), List.of(false));
+        CountDownLatch inCommit = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        CountDownLatch releaseSecond = new CountDownLatch(1);
+        AtomicInteger commits = new AtomicInteger();
+        when(feedbackRepository.upsertFeedback(anyCollection())).thenAnswer(invocation -> {
+            if (commits.incrementAndGet() == 1) {
+                inCommit.countDown();
+                releaseFirst.await();
+            } else {
+                releaseSecond.await();
+            }
+            return List.of();
+        });
+        start();
+
+        writeBehind.submit(a);
+        assertThat(inCommit.await(5, TimeUnit.SECONDS)).isTrue();
+        writeBehind.submit(b);
+        writeBehind.submit(c);
+        assertThat(Files.readAllLines(logFile())).hasSize(3);
+
+        releaseFirst.countDown();
+        await(() -> commits.get() == 2);
+        assertThat(Files.readAllLines(logFile()))
+                .containsExactly(objectMapper.writeValueAsString(b), objectMapper.writeValueAsString(c));
+
+        releaseSecond.countDown();
+        await(() -> logFile().toFile().length() == 0);
+        verify(feedbackRepository).upsertFeedback(List.of(b, c));
+    }
+
+    @Test
+    void submissionThatKeepsFailingIsDeadLetteredWithoutHoldingUpTheRest() throws Exception {
+        FeedbackEvent poison = new FeedbackEvent("poison", List.of("tt1"), List.of(true));
+        FeedbackEvent good = new FeedbackEvent("user-1", List.of("tt2"), List.of(true));
+        when(feedbackRepository.upsertFeedback(anyCollection())).thenAnswer(invocation -> {
+            Collection<FeedbackEvent> events = invocation.getArgument(0);
+            if (events.stream().anyMatch(event -> event.userId().equals("poison"))) {
+                throw new DataIntegrityViolationException("value too long for type character varying(50)");
+            }
+            return List.of();
+        });
+        start();
+
+        writeBehind.submit(poison);
+        writeBehind.submit(good);
+
+        verify(feedbackRepository, timeout(5_000)).upsertFeedback(List.of(good));
+        await(() -> Files.exists(deadLetterFile()) && meterRegistry.counter("movies.feedback.dead-lettered").count() == 1);
+        assertThat(Files.readAllLines(deadLetterFile())).containsExactly(objectMapper.writeValueAsString(poison));
+        assertThat(writeBehind.pendingRatings("poison")).isEmpty();
+
+        FeedbackEvent next = new FeedbackEvent("user-2", List.of("tt3"), List.of(false));
+        writeBehind.submit(next);
+        verify(feedbackRepository, timeout(5_000)).upsertFeedback(List.of(next));
+        await(() -> logFile().toFile().length() == 0);
+    }
+
+    @Test
+    void unreachableDatabaseNeverDeadLetters() throws Exception {
+        FeedbackEvent event = new FeedbackEvent("user-1", List.of("tt1"), List.of(true));
+        AtomicInteger calls = new AtomicInteger();
+        when(feedbackRepository.upsertFeedback(anyCollection())).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() <= 10) {
+                throw new DataAccessResourceFailureException("connection refused");
+            }
+            return List.of();
+        });
+        start();
+
+        writeBehind.submit(event);
+
+        await(() -> calls.get() > 10 && writeBehind.pendingRatings("user-1").isEmpty());
+        assertThat(Files.exists(deadLetterFile())).isFalse();
+    }
+
+    @Test
+    void writeThroughDropsQueuedRatingsOnlyOnceItCommits() throws Exception {
+        FeedbackEvent queued = new FeedbackEvent("user-1", List.of("tt1", "tt2"), List.of(true, true));
+        FeedbackEvent written = new FeedbackEvent("user-1", List.of("tt1"), List.of(false));
+        AtomicBoolean databaseUp = holdOffWriter();
+        start();
+        writeBehind.submit(queued);
+
+        writeThrough(written, TransactionSynchronization.STATUS_COMMITTED);
+        databaseUp.set(true);
+
+        await(() -> writeBehind.pendingRatings("user-1").isEmpty());
+        assertThat(stored).containsExactly(written, new FeedbackEvent("user-1", List.of("tt2"), List.of(true)));
+    }
+
+    @Test
+    void rolledBackWriteThroughLeavesQueuedRatingsToTheWriter() throws Exception {
+        FeedbackEvent queued = new FeedbackEvent("user-1", List.of("tt1"), List.of(true));
+        AtomicBoolean databaseUp = holdOffWriter();
+        start();
+        writeBehind.submit(queued);
+
+        writeThrough(new FeedbackEvent("user-1", List.of("tt1"), List.of(false)),
+                TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertThat(writeBehind.pendingRatings("user-1")).isEqualTo(Map.of("tt1", true));
+        databaseUp.set(true);
+
+        await(() -> writeBehind.pendingRatings("user-1").isEmpty());
+        assertThat(stored).endsWith(queued);
+    }
+
+    /**
+     * Fails the writer's commits as if the database were unreachable until the returned flag is
+     * set, so submissions stay queued. Writes through from the test thread succeed. Successful
+     * upserts go to {@link #stored}.
+     */
+    private AtomicBoolean holdOffWriter() {
+        AtomicBoolean databaseUp = new AtomicBoolean();
+        when(feedbackRepository.upsertFeedback(anyCollection())).thenAnswer(invocation -> {
+            if (!databaseUp.get() && Thread.currentThread().getName().equals("feedback-write-behind")) {
+                throw new DataAccessResourceFailureException("connection refused");
+            }
+            stored.addAll(invocation.getArgument(0));
+            return List.of();
+        });
+        return databaseUp;
+    }
+
+    /**
+     * Writes through in a transaction that ends with the given status; the overlay shows the
+     * written ratings until then.
+     */
+    private void writeThrough(FeedbackEvent event, int status) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            writeBehind.writeThrough(event);
+            Map<String, Boolean> overlay = writeBehind.pendingRatings(event.userId());
+            for (int i = 0; i < event.movieIds().size(); i++) {
+                assertThat(overlay).containsEntry(event.movieIds().get(i), event.liked().get(i));
+            }
+            TransactionSynchronizationManager.getSynchronizations().forEach(sync -> sync.afterCompletion(status));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private void start() {
+        writeBehind = new FeedbackWriteBehind(feedbackRepository, userProfileStore, transactionManager, objectMapper,
+                meterRegistry, true, 100, 100, 10, 2, compactBytes, logFile().toString(), deadLetterFile().toString());
+        writeBehind.start();
+    }
+
+    private static void await(BooleanSupplier condition) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition met in time").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private Path deadLetterFile() {
+        return directory.resolve("feedback-dead-letter.log");
+    }
+
+    private void writeLog(String... lines) throws Exception {
+        Files.writeString(logFile(), String.join("\n", lines) + "\n", StandardCharsets.UTF_8);
+    }
+
+    private Path logFile() {
+        return directory.resolve("feedback.log");
+    }
+}
@@ -0,0 +1,85 @@
+package com.integrated.imdb.service;
+
+import com.integrated.imdb.model.LikedMovieFeatures;
+import com.integrated.imdb.repository.MovieRepository;
+import com.integrated.imdb.support.Latency;
+import com.integrated.imdb.support.SyntheticImdb;
+import com.integrated.imdb.support.TestDatabase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Genre filtering and genre-overlap scoring on title_basics.genre_mask, next to the substring
+ * matching on title_basics.genres they replaced. Needs a PostgreSQL database, see
+ * {@link TestDatabase}; not part of the default test run: {@code mvn test -Dtest=GenreMaskBenchmark}.
+ */
+@EnabledIfEnvironmentVariable(named = TestDatabase.URL_VARIABLE, matches = ".+")
+class GenreMaskBenchmark {
+
+    private static final int TITLES = 200_000;
+    private static final int MIN_VOTES = 1_000;
+
+    private static final String FILTER_BY_SUBSTRING_SQL = """
+        SELECT DISTINCT t.tconst, t.primary_title, t.start_year, t.genres,
+               r.average_rating, r.num_votes, t.runtime_minutes, NULL
+        FROM title_basics t
+        LEFT JOIN title_ratings r ON t.tconst = r.tconst
+        WHERE t.title_type = 'movie' AND t.genres ILIKE ?
+        ORDER BY r.average_rating DESC NULLS LAST LIMIT ?
+        """;
+
+    private static final String SCORE_BY_SUBSTRING_SQL = """
+        WITH movie_scores AS (
+            SELECT
+                t.tconst,
+                r.average_rating,
+                r.num_votes,
+                (SELECT COUNT(*) FROM unnest(?::text[]) AS g
+                 WHERE t.genres ILIKE '%' || g || '%') AS genre_score
+            FROM title_basics t
+            JOIN title_ratings r ON t.tconst = r.tconst
+            WHERE t.title_type = 'movie'
+            AND r.num_votes > ?
+        )
+        SELECT tconst, genre_score * 2 * (average_rating * 0.1) AS score
+        FROM movie_scores
+        WHERE genre_score > 0
+        ORDER BY score DESC, num_votes DESC, substr(tconst, 3)::int
+        LIMIT ?
+        """;
+
+    @Test
+    void genres() {
+        try (TestDatabase database = TestDatabase.withSchema("genre_mask_benchmark")) {
+            JdbcTemplate jdbcTemplate = database.jdbcTemplate();
+            SyntheticImdb.load(jdbcTemplate, TITLES, 1_000, 1);
+            MovieRepository repository = new MovieRepository(jdbcTemplate);
+            SqlRecommendationEngine engine = new SqlRecommendationEngine(jdbcTemplate, MIN_VOTES);
+
+            Latency.measure("filter by genre_mask", 20, 200,
+                    round -> repository.filterMovies(null, genre(round), null, null, 50));
+            Latency.measure("filter by genres ILIKE", 20, 200,
+                    round -> jdbcTemplate.queryForList(FILTER_BY_SUBSTRING_SQL,
+                            "%" + genre(round) + "%", 50));
+
+            Latency.measure("score 2 genres by genre_mask", 10, 100,
+                    round -> engine.recommend(new LikedMovieFeatures(likedGenres(round), Map.of()), Map.of(),
+                            Set.of(), 60));
+            Latency.measure("score 2 genres by genres ILIKE", 10, 100,
+                    round -> jdbcTemplate.queryForList(SCORE_BY_SUBSTRING_SQL,
+                            likedGenres(round).toArray(new String[0]), MIN_VOTES, 60));
+        }
+    }
+
+    private static String genre(int round) {
+        return SyntheticImdb.GENRES[round % SyntheticImdb.GENRES.length];
+    }
+
+    private static Set<String> likedGenres(int round) {
+        return Set.of(genre(round), genre(round + 5));
+    }
+}
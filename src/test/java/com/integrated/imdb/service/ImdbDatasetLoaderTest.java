@@ -0,0 +1,191 @@
+package com.integrated.imdb.service;
+
+import com.integrated.imdb.model.DatasetLoadProgress;
+import com.integrated.imdb.model.ImdbDataset;
+import com.integrated.imdb.support.TestDatabase;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+/**
+ * Full loads and delta syncs against schema.sql. Needs a PostgreSQL database, see {@link TestDatabase}.
+ */
+@EnabledIfEnvironmentVariable(named = TestDatabase.URL_VARIABLE, matches = ".+")
+class ImdbDatasetLoaderTest {
+
+    @TempDir
+    Path sourceDir;
+
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private TestDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private ImdbDatasetLoader loader;
+
+    @BeforeEach
+    void setUp() {
+        database = TestDatabase.withSchema("imdb_loader");
+        jdbcTemplate = database.jdbcTemplate();
+        // Two keys per sync batch, so a delta spans several batches
+        loader = new ImdbDatasetLoader(database.dataSource(), eventPublisher,
+                meterRegistry, sourceDir.toString(), "http://localhost/", false, 1, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        loader.shutdown();
+        database.close();
+    }
+
+    @Test
+    void fullLoadComputesGenreMasksWhileInserting() throws Exception {
+        writeDump("title.basics.tsv.gz", List.of(
+                "tconst\ttitleType\tprimaryTitle\toriginalTitle\tisAdult\tstartYear\tendYear\truntimeMinutes\tgenres",
+                "tt0000001\tmovie\tOne\tOne\t0\t1990\t\\N\t90\tDrama,Comedy",
+                "tt0000002\tmovie\tTwo\tTwo\t0\t1991\t\\N\t100\tComedy",
+                "tt0000003\tmovie\tThree\tThree\t0\t1992\t\\N\t80\t\\N",
+                "tt0000004\tshort\tFour\tFour\t0\t1993\t\\N\t10\tDrama,Comedy",
+                "tt0000005\tmovie\tFive\tFive\t0\t1994\t\\N\t95\tCyberpunk"));
+
+        load(ImdbDataset.TITLE_BASICS);
+
+        Map<String, Long> masks = new HashMap<>();
+        jdbcTemplate.query("SELECT tconst, genre_mask FROM title_basics",
+                rs -> {
+                    masks.put(rs.getString(1), rs.getLong(2));
+                });
+        long drama = 1L << 8;
+        long comedy = 1L << 5;
+        assertThat(masks).containsEntry("tt0000001", drama | comedy)
+                .containsEntry("tt0000002", comedy)
+                .containsEntry("tt0000003", 0L)
+                .containsEntry("tt0000004", drama | comedy);
+        // Genres missing from the dictionary get the next free bit
+        assertThat(masks.get("tt0000005")).isEqualTo(1L << jdbcTemplate.queryForObject(
+                "SELECT bit FROM genre_dictionary WHERE genre = 'Cyberpunk'", Integer.class));
+
+        // The row trigger is back on after the load
+        jdbcTemplate.update("UPDATE title_basics SET genres = 'Drama' WHERE tconst = 'tt0000002'");
+        assertThat(jdbcTemplate.queryForObject("SELECT genre_mask FROM title_basics WHERE tconst = 'tt0000002'",
+                Long.class)).isEqualTo(drama);
+    }
+
+    @Test
+    void deltaSyncAppliesOnlyChangedRowsAndPublishesTheirTitles() throws Exception {
+        writeDump("title.ratings.tsv.gz", List.of(
+                "tconst\taverageRating\tnumVotes",
+                "tt0000001\t8.0\t100",
+                "tt0000002\t7.0\t200",
+                "tt0000003\t6.0\t300"));
+        load(ImdbDataset.TITLE_RATINGS);
+        verify(eventPublisher).publishEvent(new ImdbDataChangedEvent(Set.of(ImdbDataset.TITLE_RATINGS), null));
+
+        writeDump("title.ratings.tsv.gz", List.of(
+                "tconst\taverageRating\tnumVotes",
+                "tt0000001\t8.0\t100",
+                "tt0000002\t7.5\t250",
+                "tt0000004\t5.0\t400",
+                "tt0000005\t9.0\t500"));
+        load(ImdbDataset.TITLE_RATINGS, ImdbDatasetLoader.Mode.DELTA);
+
+        Map<String, Integer> votes = new HashMap<>();
+        jdbcTemplate.query("SELECT tconst, num_votes FROM title_ratings",
+                rs -> {
+                    votes.put(rs.getString(1), rs.getInt(2));
+                });
+        assertThat(votes).containsOnly(Map.entry("tt0000001", 100), Map.entry("tt0000002", 250),
+                Map.entry("tt0000004", 400), Map.entry("tt0000005", 500));
+        // The full load left no hashes, so the sync seeded them from the table before diffing:
+        // the unchanged tt0000001 is neither rewritten nor reported
+        assertThat(changedTconsts()).containsExactlyInAnyOrder("tt0000002", "tt0000003", "tt0000004", "tt0000005");
+        assertThat(syncedRows("upsert")).isEqualTo(3);
+        assertThat(syncedRows("delete")).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForList(
+                "SELECT row_key FROM imdb_row_hash WHERE dataset = 'title_ratings' ORDER BY row_key", String.class))
+                .containsExactly("tt0000001", "tt0000002", "tt0000004", "tt0000005");
+
+        // The stored hashes now describe the table, so syncing the same dump again changes nothing
+        load(ImdbDataset.TITLE_RATINGS, ImdbDatasetLoader.Mode.DELTA);
+        verifyNoMoreInteractions(eventPublisher);
+    }
+
+    @Test
+    void deltaSyncReseedsHashesThatNoLongerMatchTheTable() throws Exception {
+        writeDump("title.ratings.tsv.gz", List.of(
+                "tconst\taverageRating\tnumVotes",
+                "tt0000001\t8.0\t100",
+                "tt0000002\t7.0\t200"));
+        load(ImdbDataset.TITLE_RATINGS);
+        load(ImdbDataset.TITLE_RATINGS, ImdbDatasetLoader.Mode.DELTA);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM imdb_row_hash WHERE dataset = 'title_ratings'", Integer.class)).isEqualTo(2);
+
+        // A row added outside of a sync leaves one hash missing
+        jdbcTemplate.update("INSERT INTO title_ratings VALUES ('tt0000003', 6.0, 300)");
+        load(ImdbDataset.TITLE_RATINGS, ImdbDatasetLoader.Mode.DELTA);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM title_ratings", Integer.class)).isEqualTo(2);
+        assertThat(changedTconsts()).containsExactly("tt0000003");
+    }
+
+    private Set<String> changedTconsts() {
+        ArgumentCaptor<ImdbDataChangedEvent> events = ArgumentCaptor.forClass(ImdbDataChangedEvent.class);
+        verify(eventPublisher, atLeastOnce()).publishEvent(events.capture());
+        ImdbDataChangedEvent last = events.getValue();
+        assertThat(last.datasets()).containsExactly(ImdbDataset.TITLE_RATINGS);
+        return last.changedTconsts();
+    }
+
+    private double syncedRows(String change) {
+        return meterRegistry.get("imdb.sync.rows").tag("change", change).counter().count();
+    }
+
+    private void load(ImdbDataset dataset) throws InterruptedException {
+        load(dataset, ImdbDatasetLoader.Mode.FULL);
+    }
+
+    private void load(ImdbDataset dataset, ImdbDatasetLoader.Mode mode) throws InterruptedException {
+        assertThat(loader.startLoad(Set.of(dataset), mode)).isTrue();
+        for (int i = 0; i < 300 && loader.isRunning(); i++) {
+            Thread.sleep(100);
+        }
+        assertThat(loader.isRunning()).isFalse();
+        assertThat(loader.getProgress()).extracting(DatasetLoadProgress::getState)
+                .containsExactly(DatasetLoadProgress.State.COMPLETED);
+    }
+
+    private void writeDump(String fileName, List<String> lines) throws IOException {
+        try (OutputStream file = Files.newOutputStream(sourceDir.resolve(fileName));
+             Writer writer = new OutputStreamWriter(new GZIPOutputStream(file), StandardCharsets.UTF_8)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.integrated.imdb.service;
+
+import com.integrated.imdb.dto.MovieDto;
+import com.integrated.imdb.dto.MovieView;
+import com.integrated.imdb.dto.OmdbMovieDetails;
+import com.integrated.imdb.model.ImdbDataset;
+import com.integrated.imdb.model.MovieRecord;
+import com.integrated.imdb.repository.MovieRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The top rated snapshot of {@link MovieService}: when it is built and what callers get from it.
+ */
+class MovieServiceTest {
+
+    private final MovieRepository movieRepository = mock(MovieRepository.class);
+    private final OmdbClient omdbClient = mock(OmdbClient.class);
+    private final MovieService service = new MovieService(movieRepository, omdbClient, new SimpleMeterRegistry(),
+            4, 2, 50, 5_000, 600_000);
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void applicationReadyBuildsTheSnapshot() {
+        when(movieRepository.getTopRatedMovies(anyInt(), anyInt())).thenReturn(List.of(movie("tt0111161")));
+
+        service.onApplicationReady();
+
+        verify(movieRepository, timeout(5_000)).getTopRatedMovies(anyInt(), anyInt());
+    }
+
+    @Test
+    void topRatedCallersCannotChangeTheSnapshot() {
+        when(movieRepository.getTopRatedMovies(anyInt(), anyInt())).thenReturn(List.of(movie("tt0111161")));
+        service.refreshTopRatedSnapshot();
+
+        service.getTopRatedMovies(10).get(0).setPlot("changed");
+        service.getMoviesPage(null, null, 10, MovieView.FULL).movies().get(0).setPoster("changed");
+
+        MovieDto served = service.getTopRatedMovies(10).get(0);
+        assertThat(served.getPlot()).isEqualTo("Plot not available");
+        assertThat(served.getPoster()).isEmpty();
+    }
+
+    @Test
+    void snapshotIsEnrichedWithoutTheRequestDeadline() {
+        when(movieRepository.getTopRatedMovies(anyInt(), anyInt())).thenReturn(List.of(movie("tt0111161")));
+        when(omdbClient.fetchMovieDetails("tt0111161")).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return details("A banker is sent to prison.");
+        });
+
+        service.refreshTopRatedSnapshot();
+
+        MovieDto served = service.getTopRatedMovies(10).get(0);
+        assertThat(served.isPartiallyEnriched()).isFalse();
+        assertThat(served.getPlot()).isEqualTo("A banker is sent to prison.");
+    }
+
+    @Test
+    void partialSnapshotIsRebuiltEarly() {
+        when(movieRepository.getTopRatedMovies(anyInt(), anyInt())).thenReturn(List.of(movie("tt0111161")));
+        when(omdbClient.fetchMovieDetails("tt0111161"))
+                .thenThrow(new OmdbUnavailableException("OMDb request quota exhausted"))
+                .thenReturn(details("A banker is sent to prison."));
+        service.refreshTopRatedSnapshot();
+        assertThat(service.getTopRatedMovies(10).get(0).isPartiallyEnriched()).isTrue();
+
+        service.refreshTopRatedSnapshotIfDue();
+        assertThat(service.getTopRatedMovies(10).get(0).getPlot()).isEqualTo("A banker is sent to prison.");
+
+        // Complete and fresh: nothing to do until the refresh interval has passed
+        service.refreshTopRatedSnapshotIfDue();
+        verify(movieRepository, times(2)).getTopRatedMovies(anyInt(), anyInt());
+    }
+
+    @Test
+    void dataChangesRefreshOffTheLoaderThread() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(movieRepository.getTopRatedMovies(anyInt(), anyInt())).thenAnswer(invocation -> {
+            release.await();
+            return List.of(movie("tt0111161"));
+        });
+
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () ->
+                    service.onImdbDataChanged(new ImdbDataChangedEvent(Set.of(ImdbDataset.TITLE_RATINGS), null)));
+        } finally {
+            release.countDown();
+        }
+
+        verify(movieRepository, timeout(5_000)).getTopRatedMovies(anyInt(), anyInt());
+    }
+
+    private static OmdbMovieDetails details(String plot) {
+        return new OmdbMovieDetails("The Shawshank Redemption", "1994", "142 min", "Drama", "Frank Darabont",
+                "Tim Robbins", plot, "https://example.org/poster.jpg", "9.3", "True", null);
+    }
+
+    private static MovieRecord movie(String tconst) {
+        return new MovieRecord(tconst, "The Shawshank Redemption", 1994, "Drama", 9.3, 2_900_000, 142, null);
+    }
+}
@@ -0,0 +1,135 @@
+package com.integrated.imdb.service;
+
+import com.integrated.imdb.dto.OmdbMovieDetails;
+import com.integrated.imdb.service.OmdbClient.PrefetchOutcome;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Callers that join an OMDb lookup already in flight for the same title, and what gets cached.
+ */
+class OmdbClientTest {
+
+    private static final String TCONST = "tt0111161";
+
+    private final RestClient restClient = mock(RestClient.class, Answers.RETURNS_DEEP_STUBS);
+    private final OmdbCache cache = mock(OmdbCache.class);
+    private final OmdbCircuitBreaker circuitBreaker = mock(OmdbCircuitBreaker.class);
+    private final OmdbClient client = new OmdbClient(restClient, cache, circuitBreaker, new SimpleMeterRegistry(),
+            "key", 1_000, 100, 50, 100);
+
+    private final CountDownLatch callStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseCall = new CountDownLatch(1);
+
+    @Test
+    void joinedCallerSeesAnErrorOfTheCallInFlight() throws Exception {
+        when(circuitBreaker.tryAcquirePermission()).thenReturn(true);
+        when(restClient.get().uri(anyString(), any(Object[].class)).retrieve().body(OmdbMovieDetails.class))
+                .thenAnswer(invocation -> {
+                    callStarted.countDown();
+                    releaseCall.await();
+                    throw new StackOverflowError("remote call failed");
+                });
+
+        CompletableFuture<OmdbMovieDetails> leader = CompletableFuture.supplyAsync(() -> client.fetchMovieDetails(TCONST));
+        assertThat(callStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<OmdbMovieDetails> joined = CompletableFuture.supplyAsync(() -> client.fetchMovieDetails(TCONST));
+        Thread.sleep(20);
+        releaseCall.countDown();
+
+        assertThat(joined.get(1, TimeUnit.SECONDS)).isNull();
+        assertThatThrownBy(leader::join).hasRootCauseInstanceOf(StackOverflowError.class);
+    }
+
+    @Test
+    void joinedCallerStopsWaitingAfterTheHttpTimeouts() throws Exception {
+        when(circuitBreaker.tryAcquirePermission()).thenReturn(true);
+        when(restClient.get().uri(anyString(), any(Object[].class)).retrieve().body(OmdbMovieDetails.class))
+                .thenAnswer(invocation -> {
+                    callStarted.countDown();
+                    releaseCall.await();
+                    return null;
+                });
+
+        CompletableFuture<OmdbMovieDetails> leader = CompletableFuture.supplyAsync(() -> client.fetchMovieDetails(TCONST));
+        try {
+            assertThat(callStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            long start = System.nanoTime();
+
+            assertThatThrownBy(() -> client.fetchMovieDetails(TCONST)).isInstanceOf(OmdbUnavailableException.class);
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isBetween(140L, 2_000L);
+        } finally {
+            releaseCall.countDown();
+            leader.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void notFoundResponseIsCachedAsANegativeEntry() {
+        OmdbMovieDetails notFound = failure("Incorrect IMDb ID.");
+        when(circuitBreaker.tryAcquirePermission()).thenReturn(true);
+        when(restClient.get().uri(anyString(), any(Object[].class)).retrieve().body(OmdbMovieDetails.class))
+                .thenReturn(notFound);
+
+        assertThat(client.fetchMovieDetails(TCONST)).isNull();
+
+        verify(cache).putNotFound(TCONST, notFound);
+        verify(cache, never()).put(eq(TCONST), any());
+    }
+
+    @Test
+    void cachedNotFoundResponseIsServedWithoutARemoteCall() {
+        when(cache.get(TCONST)).thenReturn(failure("Movie not found!"));
+
+        assertThat(client.fetchMovieDetails(TCONST)).isNull();
+        assertThat(client.fetchCachedMovieDetails(TCONST)).isNull();
+
+        verifyNoInteractions(circuitBreaker);
+    }
+
+    @Test
+    void rejectedRequestIsNotCached() {
+        when(circuitBreaker.tryAcquirePermission()).thenReturn(true);
+        when(restClient.get().uri(anyString(), any(Object[].class)).retrieve().body(OmdbMovieDetails.class))
+                .thenReturn(failure("Request limit reached!"));
+
+        assertThat(client.fetchMovieDetails(TCONST)).isNull();
+
+        verify(cache, never()).putNotFound(anyString(), any());
+    }
+
+    @Test
+    void failedPrefetchIsReportedAsFailed() {
+        when(circuitBreaker.tryAcquirePermission()).thenReturn(true);
+        when(restClient.get().uri(anyString(), any(Object[].class)).retrieve().body(OmdbMovieDetails.class))
+                .thenThrow(new IllegalStateException("connection reset"))
+                .thenReturn(failure("Request limit reached!"))
+                .thenReturn(failure("Movie not found!"));
+
+        assertThat(client.prefetchMovieDetails(TCONST, 0, Duration.ofDays(7))).isEqualTo(PrefetchOutcome.FAILED);
+        assertThat(client.prefetchMovieDetails(TCONST, 0, Duration.ofDays(7))).isEqualTo(PrefetchOutcome.FAILED);
+        assertThat(client.prefetchMovieDetails(TCONST, 0, Duration.ofDays(7))).isEqualTo(PrefetchOutcome.FETCHED);
+    }
+
+    private static OmdbMovieDetails failure(String error) {
+        return new OmdbMovieDetails(null, null, null, null, null, null, null, null, null, "False", error);
+    }
+}
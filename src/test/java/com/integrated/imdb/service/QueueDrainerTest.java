@@ -0,0 +1,91 @@
+package com.integrated.imdb.service;
+
+import com.integrated.imdb.support.TestDatabase;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Claiming and refreshing batches of a work queue table. Needs a PostgreSQL database, see
+ * {@link TestDatabase}.
+ */
+@EnabledIfEnvironmentVariable(named = TestDatabase.URL_VARIABLE, matches = ".+")
+class QueueDrainerTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<List<String>> batches = new ArrayList<>();
+    private TestDatabase database;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        database = TestDatabase.empty("queue_drainer");
+        jdbcTemplate = database.jdbcTemplate();
+        jdbcTemplate.execute("CREATE TABLE work_queue (key TEXT PRIMARY KEY, enqueued_at TIMESTAMPTZ NOT NULL)");
+        jdbcTemplate.update("""
+            INSERT INTO work_queue
+            SELECT 'k' || i, TIMESTAMPTZ '2024-01-01' + i * INTERVAL '1 second'
+            FROM generate_series(1, 5) i
+            """);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+
+    @Test
+    void drainsInEnqueueOrderUntilABatchComesBackShort() {
+        drainer(2, 10, keys -> batches.add(List.of(keys))).drain();
+
+        assertThat(batches).containsExactly(List.of("k1", "k2"), List.of("k3", "k4"), List.of("k5"));
+        assertThat(queued()).isZero();
+        assertThat(meterRegistry.get("test.refreshed").counter().count()).isEqualTo(5);
+        assertThat(meterRegistry.get("test.batch").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    void stopsAfterMaxBatchesPerRun() {
+        drainer(2, 1, keys -> batches.add(List.of(keys))).drain();
+
+        assertThat(batches).containsExactly(List.of("k1", "k2"));
+        assertThat(queued()).isEqualTo(3);
+    }
+
+    @Test
+    void failedRefreshLeavesItsBatchQueued() {
+        QueueDrainer drainer = drainer(2, 10, keys -> {
+            throw new IllegalStateException("refresh failed");
+        });
+
+        assertThatThrownBy(drainer::drain).isInstanceOf(IllegalStateException.class);
+        assertThat(queued()).isEqualTo(5);
+    }
+
+    private QueueDrainer drainer(int batchSize, int maxBatchesPerRun, Consumer<String[]> refresh) {
+        return new QueueDrainer(jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(database.dataSource())),
+                "work_queue", "key", batchSize, maxBatchesPerRun, refresh,
+                Counter.builder("test.refreshed").register(meterRegistry),
+                Timer.builder("test.batch").register(meterRegistry));
+    }
+
+    private int queued() {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM work_queue", Integer.class);
+    }
+}
@@ -0,0 +1,46 @@
+package com.integrated.imdb.service;
+
+import com.integrated.imdb.support.Latency;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Latency of {@link RecommendationCatalog#recommend} on a catalog the size of the IMDb movies
+ * with more than 1000 votes. Not part of the default test run:
+ * {@code mvn test -Dtest=RecommendationCatalogBenchmark}. {@link RecommendationEngineParityTest}
+ * compares both engines on a database.
+ */
+class RecommendationCatalogBenchmark {
+
+    private static final int MOVIES = 40_000;
+    private static final int PEOPLE = 150_000;
+
+    @Test
+    void recommend() {
+        List<CatalogFixture.Movie> movies = CatalogFixture.movies(3, MOVIES, PEOPLE, 10);
+        long start = System.nanoTime();
+        RecommendationCatalog catalog = CatalogFixture.catalog(movies);
+        System.out.printf("catalog of %d movies built in %d ms, ~%d KB%n", catalog.size(),
+                (System.nanoTime() - start) / 1_000_000, catalog.estimatedHeapBytes() / 1024);
+
+        for (int likedActors : new int[] {3, 30, 300}) {
+            Latency.measure("memory engine, " + likedActors + " liked actors, limit 60", 500, 5_000, round -> {
+                Set<String> genres = Set.of(CatalogFixture.GENRES.get(round % CatalogFixture.GENRES.size()));
+                Map<String, Double> coLikes = new HashMap<>();
+                for (int i = 0; i < 50; i++) {
+                    coLikes.put(movies.get((round * 31 + i * 997) % MOVIES).tconst(), 0.5);
+                }
+                Set<String> actors = new HashSet<>();
+                for (int i = 0; i < likedActors; i++) {
+                    actors.add(CatalogFixture.nconst((round * 7919 + i * 104_729) % PEOPLE));
+                }
+                catalog.recommend(genres, actors, coLikes, Set.of(), 60);
+            });
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.integrated.imdb.service;
+
+import com.integrated.imdb.model.ScoredMovie;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RecommendationCatalogTest {
+
+    @Test
+    void ranksLikeTheReferenceAcrossScanChunks() {
+        // More movies than one scan chunk, so the per-chunk heaps are merged
+        List<CatalogFixture.Movie> movies = CatalogFixture.movies(7, 50_000, 5_000, 3);
+        RecommendationCatalog catalog = CatalogFixture.catalog(movies);
+        Set<String> actors = Set.of(CatalogFixture.nconst(1), CatalogFixture.nconst(42), CatalogFixture.nconst(4_999));
+        Map<String, Double> coLikes = Map.of(movies.get(10).tconst(), 1.5, movies.get(40_000).tconst(), 0.25);
+        Set<String> excluded = Set.of(movies.get(3).tconst(), movies.get(20_000).tconst());
+
+        for (int limit : new int[] {1, 20, 500}) {
+            List<ScoredMovie> expected = CatalogFixture.reference(movies, Set.of("Drama", "Sci-Fi"), actors, coLikes,
+                    excluded, limit);
+            assertThat(catalog.recommend(Set.of("Drama", "Sci-Fi"), actors, coLikes, excluded, limit))
+                    .as("limit %d", limit)
+                    .isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void breaksTiesByVotesThenTconst() {
+        RecommendationCatalog catalog = new RecommendationCatalog.Builder()
+                .addMovie("tt0000002", "Drama", 8.0, 1_000)
+                .addMovie("tt0000010", "Drama", 8.0, 5_000)
+                .addMovie("tt0000011", "Drama", 8.0, 1_000)
+                .addMovie("tt0000100", "Drama", 9.0, 10)
+                .build();
+
+        assertThat(catalog.recommend(Set.of("Drama"), Set.of(), Map.of(), Set.of(), 10))
+                .extracting(ScoredMovie::tconst)
+                .containsExactly("tt0000100", "tt0000010", "tt0000002", "tt0000011");
+    }
+
+    @Test
+    void keepsTheBestMoviesWhenTheLimitCutsATie() {
+        RecommendationCatalog catalog = new RecommendationCatalog.Builder()
+                .addMovie("tt0000004", "Comedy", 7.0, 100)
+                .addMovie("tt0000005", "Comedy", 7.0, 200)
+                .addMovie("tt0000006", "Comedy", 7.0, 200)
+                .build();
+
+        assertThat(catalog.recommend(Set.of("Comedy"), Set.of(), Map.of(), Set.of(), 1))
+                .extracting(ScoredMovie::tconst)
+                .containsExactly("tt0000005");
+    }
+
+    @Test
+    void findsTheMoviesOfLikedActorsThroughTheInvertedIndex() {
+        RecommendationCatalog catalog = new RecommendationCatalog.Builder()
+                .addMovie("tt0000001", "Drama", 5.0, 100)
+                .addMovie("tt0000002", "Western", 5.0, 100)
+                .addMovie("tt0000003", "Western", 6.0, 100)
+                .addMovie("tt0000004", "Horror", 5.0, 100)
+                .addActor("tt0000002", "nm0000007")
+                .addActor("tt0000002", "nm0000007")
+                .addActor("tt0000003", "nm0000007")
+                .addActor("tt0000003", "nm0000001")
+                .addActor("tt0000004", "nm0000002")
+                .addActor("tt0000099", "nm0000007")
+                .addActor("tt0000001", "not-an-nconst")
+                .build();
+
+        List<ScoredMovie> recommended = catalog.recommend(Set.of(), Set.of("nm0000007", "nm0000404"), Map.of(),
+                Set.of(), 10);
+
+        assertThat(recommended).extracting(ScoredMovie::tconst).containsExactly("tt0000003", "tt0000002");
+        assertThat(recommended.get(0).score()).isEqualTo(3 * (6.0 * 0.1));
+    }
+
+    @Test
+    void addsCoLikeScoresAndSkipsExcludedMovies() {
+        RecommendationCatalog catalog = new RecommendationCatalog.Builder()
+                .addMovie("tt0000001", "Drama", 5.0, 100)
+                .addMovie("tt0000002", "Comedy", 5.0, 100)
+                .addMovie("tt0000003", "Comedy", 5.0, 100)
+                .build();
+
+        List<ScoredMovie> recommended = catalog.recommend(Set.of("Drama"), Set.of(),
+                Map.of("tt0000002", 4.0, "tt0000003", 9.0, "tt0000404", 1.0), Set.of("tt0000003"), 10);
+
+        assertThat(recommended).extracting(ScoredMovie::tconst).containsExactly("tt0000002", "tt0000001");
+    }
+
+    @Test
+    void returnsNothingWithoutAnyLikedFeature() {
+        RecommendationCatalog catalog = CatalogFixture.catalog(CatalogFixture.movies(1, 100, 10, 2));
+
+        assertThat(catalog.recommend(Set.of("Unknown"), Set.of("nm9999999"), Map.of(), Set.of(), 10)).isEmpty();
+        assertThat(catalog.recommend(Set.of("Drama"), Set.of(), Map.of(), Set.of(), 0)).isEmpty();
+    }
+
+    @Test
+    void rejectsMoviesOutOfTconstOrder() {
+        RecommendationCatalog.Builder builder = new RecommendationCatalog.Builder().addMovie("tt0000002", null, 5.0, 1);
+
+        assertThatThrownBy(() -> builder.addMovie("tt0000001", null, 5.0, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,124 @@
+package com.integrated.imdb.service;
+
+import com.integrated.imdb.model.LikedMovieFeatures;
+import com.integrated.imdb.model.ScoredMovie;
+import com.integrated.imdb.support.Latency;
+import com.integrated.imdb.support.TestDatabase;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the SQL and the in-memory engines rank the same movies in the same order. Needs a
+ * PostgreSQL database, given by IMDB_TEST_DATABASE_URL (with IMDB_TEST_DATABASE_USER and
+ * IMDB_TEST_DATABASE_PASSWORD); the test works in a schema of its own and drops it afterwards.
+ */
+@EnabledIfEnvironmentVariable(named = TestDatabase.URL_VARIABLE, matches = ".+")
+class RecommendationEngineParityTest {
+
+    private static final int MIN_VOTES = 1_000;
+
+    private static TestDatabase database;
+    private static JdbcTemplate jdbcTemplate;
+    private static List<CatalogFixture.Movie> movies;
+    private static RecommendationCatalog catalog;
+    private static SqlRecommendationEngine sqlEngine;
+
+    @BeforeAll
+    static void setUp() {
+        database = TestDatabase.empty("recommendation_parity");
+        jdbcTemplate = database.jdbcTemplate();
+        jdbcTemplate.execute("""
+            CREATE TABLE title_basics (tconst TEXT PRIMARY KEY, title_type TEXT, genres TEXT,
+                                       genre_mask BIGINT NOT NULL DEFAULT 0);
+            CREATE TABLE title_ratings (tconst TEXT PRIMARY KEY, average_rating FLOAT, num_votes INTEGER);
+            CREATE TABLE title_principals (tconst TEXT, ordering INTEGER, nconst TEXT, category TEXT);
+            """);
+        // The genre dictionary and its functions exactly as the application defines them
+        database.runSchemaSection("-- Genre bits; every IMDb genre", "-- Row trigger on title_basics");
+
+        movies = CatalogFixture.movies(11, 3_000, 400, 3);
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO title_basics (tconst, title_type, genres, genre_mask) VALUES (?, 'movie', ?, genre_mask_of(?))",
+                movies.stream().map(m -> new Object[] {m.tconst(), m.genres(), m.genres()}).toList());
+        jdbcTemplate.batchUpdate("INSERT INTO title_ratings (tconst, average_rating, num_votes) VALUES (?, ?, ?)",
+                movies.stream().map(m -> new Object[] {m.tconst(), m.rating(), m.votes()}).toList());
+        List<Object[]> cast = new ArrayList<>();
+        for (CatalogFixture.Movie movie : movies) {
+            for (int i = 0; i < movie.actors().size(); i++) {
+                cast.add(new Object[] {movie.tconst(), i + 1, movie.actors().get(i)});
+            }
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO title_principals (tconst, ordering, nconst, category) VALUES (?, ?, ?, 'actor')", cast);
+        jdbcTemplate.execute("CREATE INDEX ON title_principals (nconst)");
+        jdbcTemplate.execute("ANALYZE");
+
+        // Movies at the vote threshold are left out by both engines
+        catalog = CatalogFixture.catalog(movies.stream().filter(m -> m.votes() > MIN_VOTES).toList());
+        sqlEngine = new SqlRecommendationEngine(jdbcTemplate, MIN_VOTES);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (database != null) {
+            database.close();
+        }
+    }
+
+    @Test
+    void enginesReturnTheSameRanking() {
+        Map<String, CatalogFixture.Movie> byTconst = movies.stream()
+                .collect(Collectors.toMap(CatalogFixture.Movie::tconst, Function.identity()));
+        for (int query = 0; query < 20; query++) {
+            LikedMovieFeatures features = features(query);
+            Map<String, Double> coLikes = coLikes(query);
+            Set<String> excluded = Set.of(movies.get(query).tconst(), movies.get(query * 7 + 1).tconst());
+
+            List<ScoredMovie> fromSql = sqlEngine.recommend(features, coLikes, excluded, 60);
+            List<ScoredMovie> fromMemory = catalog.recommend(features.genres(), features.actors().keySet(), coLikes,
+                    excluded, 60);
+
+            assertThat(fromMemory).as("query %d", query).isEqualTo(fromSql);
+            assertThat(fromSql).as("query %d", query).isNotEmpty()
+                    .allMatch(movie -> byTconst.get(movie.tconst()).votes() > MIN_VOTES);
+        }
+    }
+
+    @Test
+    void latency() {
+        Latency.measure("sql engine, 3000 movies", 20, 200,
+                round -> sqlEngine.recommend(features(round), coLikes(round), Set.of(), 60));
+        Latency.measure("memory engine, 3000 movies", 200, 2_000,
+                round -> catalog.recommend(features(round).genres(), features(round).actors().keySet(), coLikes(round),
+                        Set.of(), 60));
+    }
+
+    private static LikedMovieFeatures features(int query) {
+        Set<String> genres = Set.of(CatalogFixture.GENRES.get(query % CatalogFixture.GENRES.size()),
+                CatalogFixture.GENRES.get((query * 3 + 1) % CatalogFixture.GENRES.size()));
+        Map<String, String> actors = new HashMap<>();
+        for (int i = 0; i < 3; i++) {
+            String nconst = CatalogFixture.nconst((query * 37 + i * 101) % 400);
+            actors.put(nconst, nconst);
+        }
+        return new LikedMovieFeatures(genres, actors);
+    }
+
+    private static Map<String, Double> coLikes(int query) {
+        return Map.of(movies.get(query * 13 % movies.size()).tconst(), 0.75,
+                movies.get((query * 29 + 1) % movies.size()).tconst(), 2.0);
+    }
+}
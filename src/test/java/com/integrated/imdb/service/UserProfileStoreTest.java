@@ -0,0 +1,131 @@
+package com.integrated.imdb.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.integrated.imdb.model.FeedbackChange;
+import com.integrated.imdb.model.LikedMovieFeatures;
+import com.integrated.imdb.model.UserProfile;
+import com.integrated.imdb.repository.FeedbackRepository;
+import com.integrated.imdb.repository.MovieRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserProfileStoreTest {
+
+    private static final String USER = "user-1";
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final FeedbackRepository feedbackRepository = mock(FeedbackRepository.class);
+    private final MovieRepository movieRepository = mock(MovieRepository.class);
+    private UserProfileStore store;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        UserProfile stored = new UserProfile("space", Map.of("Drama", 2.0), Map.of(), List.of("tt2"), true, 3, null);
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq(USER)))
+                .thenReturn(List.of(new ObjectMapper().writeValueAsString(stored)));
+        when(movieRepository.findFeaturesByMovie(any(), anyInt())).thenReturn(Map.of(
+                "tt1", new LikedMovieFeatures(Set.of("Sci-Fi"), Map.of("nm1", "Actor One")),
+                "tt2", new LikedMovieFeatures(Set.of("Drama"), Map.of())));
+        Map<String, Boolean> ratings = new LinkedHashMap<>();
+        ratings.put("tt2", true);
+        ratings.put("tt3", true);
+        when(feedbackRepository.findRatings(USER)).thenReturn(ratings);
+        when(feedbackRepository.hasRatings(USER)).thenReturn(true);
+
+        store = new UserProfileStore(jdbcTemplate, new ObjectMapper(), feedbackRepository, movieRepository,
+                new SimpleMeterRegistry(), 100, 60_000, 10, 0.5, 200, 50);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void appliesTheDifferenceOfEachRating() {
+        store.applyFeedback(List.of(
+                new FeedbackChange(USER, "tt1", null, true),
+                new FeedbackChange(USER, "tt2", true, false)));
+
+        UserProfile profile = store.get(USER);
+        assertThat(profile.genreWeights()).containsOnly(Map.entry("Sci-Fi", 1.0), Map.entry("Drama", 0.5));
+        assertThat(profile.actors()).containsOnlyKeys("nm1");
+        assertThat(profile.recentLikes()).containsExactly("tt1");
+        assertThat(profile.version()).isEqualTo(4);
+    }
+
+    @Test
+    void ignoresRatingsThatDidNotChange() {
+        store.applyFeedback(List.of(new FeedbackChange(USER, "tt2", true, true)));
+
+        assertThat(store.get(USER).version()).isEqualTo(3);
+    }
+
+    @Test
+    void keepsTheDeltasWhenTheTransactionCommits() {
+        TransactionSynchronizationManager.initSynchronization();
+        store.applyFeedback(List.of(new FeedbackChange(USER, "tt1", null, true)));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(store.get(USER).genreWeights()).containsEntry("Sci-Fi", 1.0);
+    }
+
+    @Test
+    void rebuildsTheWeightsWhenTheTransactionRollsBack() {
+        TransactionSynchronizationManager.initSynchronization();
+        store.applyFeedback(List.of(new FeedbackChange(USER, "tt1", null, true)));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // The rolled back like of tt1 is gone; the weights follow the stored ratings again
+        UserProfile profile = store.get(USER);
+        assertThat(profile.aggregated()).isTrue();
+        assertThat(profile.genreWeights()).containsOnly(Map.entry("Drama", 1.0));
+        assertThat(profile.recentLikes()).containsExactly("tt2", "tt3");
+        assertThat(profile.version()).isGreaterThan(4);
+    }
+
+    @Test
+    void aRetryAfterARollbackCountsTheRatingsOnce() {
+        FeedbackChange like = new FeedbackChange(USER, "tt1", null, true);
+        TransactionSynchronizationManager.initSynchronization();
+        store.applyFeedback(List.of(like));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // The retried transaction stored tt1 as well, so the backfill reads it from the history
+        Map<String, Boolean> ratings = new LinkedHashMap<>();
+        ratings.put("tt1", true);
+        ratings.put("tt2", true);
+        when(feedbackRepository.findRatings(USER)).thenReturn(ratings);
+        TransactionSynchronizationManager.initSynchronization();
+        store.applyFeedback(List.of(like));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(store.get(USER).genreWeights()).containsOnly(Map.entry("Sci-Fi", 1.0), Map.entry("Drama", 1.0));
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+}
@@ -0,0 +1,45 @@
+package com.integrated.imdb.support;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.IntConsumer;
+
+/**
+ * Minimal latency harness for the benchmarks under src/test. They are not picked up by the
+ * default test run; run one with {@code mvn test -Dtest=<Benchmark class>}.
+ */
+public final class Latency {
+
+    private Latency() {
+    }
+
+    /**
+     * Runs {@code task} for {@code warmup} untimed and {@code iterations} timed rounds and prints
+     * the latency percentiles.
+     *
+     * @param name Printed with the results
+     * @param task Receives the round number, e.g. to vary the input
+     * @return Median latency in microseconds
+     */
+    public static double measure(String name, int warmup, int iterations, IntConsumer task) {
+        for (int i = 0; i < warmup; i++) {
+            task.accept(i);
+        }
+        long[] nanos = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            task.accept(warmup + i);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        double p50 = percentile(nanos, 0.50);
+        System.out.printf(Locale.ROOT, "%-48s p50 %10.1f us   p95 %10.1f us   p99 %10.1f us   (%d runs)%n",
+                name, p50, percentile(nanos, 0.95), percentile(nanos, 0.99), iterations);
+        return p50;
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1_000d;
+    }
+}
@@ -0,0 +1,81 @@
+package com.integrated.imdb.support;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Fills the IMDb tables of a {@link TestDatabase} with generated rows for the benchmarks.
+ * Movie {@code i} is {@code tt} followed by {@code i} padded to seven digits, person {@code i}
+ * likewise {@code nm…} and named "Person i." (the dot keeps one name from being a prefix of
+ * another). Titles are one to four of the {@link #word words}. Every tenth title is a short;
+ * ratings and votes vary with the title number.
+ */
+public final class SyntheticImdb {
+
+    public static final String[] GENRES = {"Action", "Adventure", "Comedy", "Crime", "Documentary", "Drama",
+            "Family", "Fantasy", "Horror", "Mystery", "Romance", "Sci-Fi", "Thriller", "War"};
+
+    /** Title words are two of these syllables, giving 400 distinct words */
+    private static final String[] SYLLABLES = {"ka", "lo", "mi", "ren", "sa", "tor", "vel", "do", "ar", "bel",
+            "cor", "fin", "gal", "hul", "ist", "jor", "mon", "nar", "pel", "quin"};
+
+    private SyntheticImdb() {
+    }
+
+    /**
+     * @param titles Number of titles, each with one to three genres and a rating
+     * @param people Number of people
+     * @param principalsPerTitle Credits per title: a director first, then alternating actors and actresses
+     */
+    public static void load(JdbcTemplate jdbcTemplate, int titles, int people, int principalsPerTitle) {
+        jdbcTemplate.update("""
+            INSERT INTO title_basics (tconst, title_type, primary_title, start_year, runtime_minutes, genres)
+            SELECT 'tt' || lpad(i::text, 7, '0'), CASE WHEN i % 10 = 0 THEN 'short' ELSE 'movie' END,
+                   (SELECT string_agg(initcap(g.syllables[1 + (w % 20)::int] || g.syllables[1 + (w / 20 % 20)::int]), ' ')
+                    FROM (SELECT (i::bigint * 104729 + k * 7919) % 400 AS w FROM generate_series(1, 1 + i % 4) k) words),
+                   1920 + i % 100, 80 + i % 70,
+                   (SELECT string_agg(DISTINCT g.genres[1 + ((i::bigint * k * 7919) / 13) % array_length(g.genres, 1)], ',')
+                    FROM generate_series(1, 1 + i % 3) k)
+            FROM generate_series(1, ?) i, (SELECT ?::text[] AS genres, ?::text[] AS syllables) g
+            """, titles, GENRES, SYLLABLES);
+        jdbcTemplate.update("""
+            INSERT INTO title_ratings (tconst, average_rating, num_votes)
+            SELECT 'tt' || lpad(i::text, 7, '0'), 1 + (i * 37 % 90) / 10.0, (i::bigint * 7919) % 20000
+            FROM generate_series(1, ?) i
+            """, titles);
+        jdbcTemplate.update("""
+            INSERT INTO name_basics (nconst, primary_name)
+            SELECT 'nm' || lpad(i::text, 7, '0'), 'Person ' || i || '.'
+            FROM generate_series(1, ?) i
+            """, people);
+        jdbcTemplate.update("""
+            INSERT INTO title_principals (tconst, ordering, nconst, category)
+            SELECT 'tt' || lpad(m::text, 7, '0'), o,
+                   'nm' || lpad((1 + (m::bigint * 7919 + o * 104729) % ?)::text, 7, '0'),
+                   CASE WHEN o = 1 THEN 'director' WHEN o % 2 = 0 THEN 'actor' ELSE 'actress' END
+            FROM generate_series(1, ?) m, generate_series(1, ?) o
+            ON CONFLICT DO NOTHING
+            """, people, titles, principalsPerTitle);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    public static String tconst(int title) {
+        return String.format("tt%07d", title);
+    }
+
+    public static String nconst(int person) {
+        return String.format("nm%07d", person);
+    }
+
+    /**
+     * @param word 0 to 399
+     * @return The title word with that number, e.g. "Kaka" for 0
+     */
+    public static String word(int word) {
+        String text = SYLLABLES[word % 20] + SYLLABLES[word / 20 % 20];
+        return Character.toUpperCase(text.charAt(0)) + text.substring(1);
+    }
+
+    public static String name(int person) {
+        return "Person " + person + ".";
+    }
+}
@@ -0,0 +1,86 @@
+package com.integrated.imdb.support;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A schema of its own in the PostgreSQL database given by IMDB_TEST_DATABASE_URL (with
+ * IMDB_TEST_DATABASE_USER and IMDB_TEST_DATABASE_PASSWORD), dropped again on close. Tests using
+ * it are enabled with {@code @EnabledIfEnvironmentVariable(named = TestDatabase.URL_VARIABLE, matches = ".+")}.
+ */
+public final class TestDatabase implements AutoCloseable {
+
+    public static final String URL_VARIABLE = "IMDB_TEST_DATABASE_URL";
+
+    private final SingleConnectionDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final String schema;
+
+    private TestDatabase(String name) {
+        schema = name + "_" + ProcessHandle.current().pid();
+        dataSource = new SingleConnectionDataSource(System.getenv(URL_VARIABLE),
+                System.getenv("IMDB_TEST_DATABASE_USER"), System.getenv("IMDB_TEST_DATABASE_PASSWORD"), true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE SCHEMA " + schema);
+        jdbcTemplate.execute("SET search_path TO " + schema);
+    }
+
+    /**
+     * An empty schema
+     *
+     * @param name Prefix of the schema name, which gets the process ID appended
+     */
+    public static TestDatabase empty(String name) {
+        return new TestDatabase(name);
+    }
+
+    /**
+     * A schema with the application's tables and functions, created from schema.sql
+     *
+     * @param name Prefix of the schema name, which gets the process ID appended
+     */
+    public static TestDatabase withSchema(String name) {
+        TestDatabase database = new TestDatabase(name);
+        database.jdbcTemplate.execute(database.schemaSql());
+        return database;
+    }
+
+    /**
+     * The part of schema.sql from the line starting with {@code from} up to the line starting with
+     * {@code to}, e.g. to create only some functions on hand-made tables
+     */
+    public void runSchemaSection(String from, String to) {
+        String sql = schemaSql();
+        jdbcTemplate.execute(sql.substring(sql.indexOf(from), sql.indexOf(to)));
+    }
+
+    public SingleConnectionDataSource dataSource() {
+        return dataSource;
+    }
+
+    public JdbcTemplate jdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    @Override
+    public void close() {
+        try {
+            jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + schema + " CASCADE");
+        } finally {
+            dataSource.destroy();
+        }
+    }
+
+    private String schemaSql() {
+        try {
+            return new ClassPathResource("schema.sql").getContentAsString(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}